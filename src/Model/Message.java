@@ -1,7 +1,7 @@
 package Model;
 
 import java.io.Serializable;
-import java.util.HashSet;
+import java.util.Arrays;
 
 /**
  * A Message is an object that is transferred between routers in a network topology. It has a
@@ -22,7 +22,11 @@ public class Message implements Serializable{
 	private Router source;
 	private Router destination;
 	private Router previousDestination;
-	private HashSet<Router> routersPassedThrough;
+	// the ids of the routers the message has passed through, one bit per id, only allocated
+	// once a router is added, which only flooding does
+	private long[] passedThroughIds;
+	// the last step the message was sent on in, see markSent
+	private transient int sentStamp;
 
 	/**
 	 * Constructor for a Message
@@ -36,7 +40,19 @@ public class Message implements Serializable{
 		this.destination = destination;
 		steps = 0;
 		previousDestination = null;
-		routersPassedThrough = new HashSet<Router>();
+	}
+
+	/**
+	 * Constructor for a Message that has already taken some jumps, such as a message put back
+	 * by step back
+	 * @param id the ID of the message
+	 * @param source the router the message starts at
+	 * @param destination the router the message is trying to get to
+	 * @param steps the number of jumps the message has taken
+	 */
+	public Message(int id, Router source, Router destination, int steps) {
+		this(id, source, destination);
+		this.steps = steps;
 	}
 
 	/**
@@ -94,19 +110,87 @@ public class Message implements Serializable{
 	}
 
 	/**
-	 * Adds a router to the set of routers the message has passed through
+	 * Marks the message as sent during a step. A flooded message is sent from many routers in
+	 * the same step, but only counts one jump.
+	 * @param stamp a number identifying the step, greater than any given before
+	 * @return true if the message had not been sent yet during the step
+	 */
+	public boolean markSent(int stamp) {
+		if (sentStamp == stamp) {
+			return false;
+		}
+		sentStamp = stamp;
+		return true;
+	}
+
+	/**
+	 * Adds a router to the set of routers the message has passed through. Routers are
+	 * recorded by id, so only routers that are in a topology can be added.
 	 * @param router the router to add to the set
+	 * @return true if the router had not been passed through yet
+	 */
+	public boolean addRouter(Router router) {
+		if (router == null || router.getId() < 0) {
+			return false;
+		}
+		int id = router.getId();
+		int word = id >>> 6;
+		if (passedThroughIds == null) {
+			passedThroughIds = new long[word + 1];
+		} else if (word >= passedThroughIds.length) {
+			passedThroughIds = Arrays.copyOf(passedThroughIds, Math.max(word + 1, passedThroughIds.length * 2));
+		}
+		long bit = 1L << id;
+		if ((passedThroughIds[word] & bit) != 0) {
+			return false;
+		}
+		passedThroughIds[word] |= bit;
+		return true;
+	}
+
+	/**
+	 * Forgets that the message passed through the router with the given id, for when the
+	 * router is removed and its id may be given to a new router
+	 * @param id the id of the removed router
+	 */
+	public void forgetRouter(int id) {
+		if (passedThroughIds != null && id >= 0 && (id >>> 6) < passedThroughIds.length) {
+			passedThroughIds[id >>> 6] &= ~(1L << id);
+		}
+	}
+
+	/**
+	 * @param router a router
+	 * @return true if the message has passed through the router
 	 */
-	public void addRouter(Router router) {
-		if (router != null ) routersPassedThrough.add(router);
+	public boolean hasPassedThrough(Router router) {
+		if (router == null || router.getId() < 0 || passedThroughIds == null) {
+			return false;
+		}
+		int word = router.getId() >>> 6;
+		return word < passedThroughIds.length && (passedThroughIds[word] & (1L << router.getId())) != 0;
 	}
 
 	/**
-	 * The set of routers the message has already passed through
-	 * @return a HashSet of routers
+	 * The ids of the routers the message has passed through
+	 * @return the ids in increasing order, or null if no router was added
 	 */
-	public HashSet<Router> getRoutersPassedThrough() {
-		return routersPassedThrough;
+	public int[] getPassedThroughIds() {
+		if (passedThroughIds == null) {
+			return null;
+		}
+		int count = 0;
+		for (long word : passedThroughIds) {
+			count += Long.bitCount(word);
+		}
+		int[] ids = new int[count];
+		int i = 0;
+		for (int word = 0; word < passedThroughIds.length; word++) {
+			for (long bits = passedThroughIds[word]; bits != 0; bits &= bits - 1) {
+				ids[i++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+			}
+		}
+		return ids;
 	}
 
 	@Override
@@ -0,0 +1,333 @@
+package Model;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * The messages stored in a router, in the order they were added. The messages are kept in
+ * a ring buffer, with an index from message id to slot so that a message can be removed
+ * without searching for it. A removed message leaves an empty slot behind, and the empty
+ * slots are only closed up when the buffer is full or the messages are read by position.
+ *
+ * Message ids are expected to be unique within a queue, if a message is added twice only
+ * the one added last can be removed by its id.
+ */
+public class MessageQueue implements Serializable {
+
+	private static final long serialVersionUID = -1887250416271458934L;
+	private static final int INITIAL_CAPACITY = 8;
+	private static final Message[] NO_SLOTS = new Message[0];
+
+	// the ring buffer, the messages are in slots head up to (excluding) head + end,
+	// with null for the slots of removed messages
+	private transient Message[] slots;
+	private transient int head;
+	private transient int end;
+	private transient int size;
+
+	// open addressing index from message id to slot, an entry is in use only if
+	// its stamp is the current one, so the index is cleared by changing the stamp
+	private transient int[] indexIds;
+	private transient int[] indexSlots;
+	private transient int[] indexStamps;
+	private transient int indexStamp;
+
+	private transient List<Message> view;
+
+	/**
+	 * Creates an empty queue, the buffer is only allocated once a message is added
+	 */
+	public MessageQueue() {
+		slots = NO_SLOTS;
+		indexStamp = 1;
+	}
+
+	/**
+	 * @return the number of messages in the queue
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if there are no messages in the queue
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds a message at the end of the queue
+	 * @param message - the message to be added
+	 */
+	public void add(Message message) {
+		if (end == slots.length) {
+			// close up the empty slots if that frees enough room, otherwise grow the buffer
+			if (end - size > slots.length / 2) {
+				compact();
+			} else {
+				grow();
+			}
+		}
+		int slot = (head + end) & (slots.length - 1);
+		slots[slot] = message;
+		putIndex(message.getID(), slot);
+		end++;
+		size++;
+	}
+
+	/**
+	 * Removes the message with the given id
+	 * @param id - the id of the message to be removed
+	 * @return true if a message was removed
+	 */
+	public boolean remove(int id) {
+		int entry = findIndex(id);
+		if (entry < 0) {
+			return false;
+		}
+		int mask = slots.length - 1;
+		slots[indexSlots[entry]] = null;
+		removeIndex(entry);
+		size--;
+		// drop the empty slots at both ends so that they are not kept around
+		while (end > 0 && slots[head] == null) {
+			head = (head + 1) & mask;
+			end--;
+		}
+		while (end > 0 && slots[(head + end - 1) & mask] == null) {
+			end--;
+		}
+		return true;
+	}
+
+	/**
+	 * @param id - the id of a message
+	 * @return true if a message with the id is in the queue
+	 */
+	public boolean contains(int id) {
+		return findIndex(id) >= 0;
+	}
+
+	/**
+	 * Removes every message from the queue, keeping the buffer to be filled again
+	 */
+	public void clear() {
+		int mask = slots.length - 1;
+		for (int i = 0; i < end; i++) {
+			slots[(head + i) & mask] = null;
+		}
+		head = 0;
+		end = 0;
+		size = 0;
+		clearIndex();
+	}
+
+	/**
+	 * Returns the message at a position in the queue
+	 * @param position - the position from the start of the queue
+	 * @return the message
+	 */
+	public Message get(int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+		}
+		if (end != size) {
+			compact();
+		}
+		return slots[(head + position) & (slots.length - 1)];
+	}
+
+	/**
+	 * A read-only list of the messages in the queue, which follows the changes made to the queue
+	 * @return the list of messages
+	 */
+	public List<Message> asList() {
+		if (view == null) {
+			view = new MessageList();
+		}
+		return view;
+	}
+
+	/**
+	 * Moves the messages to the front of the slots they take up, closing the empty slots
+	 */
+	private void compact() {
+		int mask = slots.length - 1;
+		int written = 0;
+		for (int i = 0; i < end; i++) {
+			Message message = slots[(head + i) & mask];
+			if (message != null) {
+				int slot = (head + written++) & mask;
+				slots[slot] = message;
+				putIndex(message.getID(), slot);
+			}
+		}
+		for (int i = written; i < end; i++) {
+			slots[(head + i) & mask] = null;
+		}
+		end = written;
+	}
+
+	/**
+	 * Doubles the number of slots, copying the messages to the start of the new buffer
+	 */
+	private void grow() {
+		Message[] oldSlots = slots;
+		int mask = oldSlots.length - 1;
+		slots = new Message[Math.max(INITIAL_CAPACITY, oldSlots.length * 2)];
+		indexIds = new int[slots.length * 2];
+		indexSlots = new int[slots.length * 2];
+		indexStamps = new int[slots.length * 2];
+		indexStamp = 1;
+		int written = 0;
+		for (int i = 0; i < end; i++) {
+			Message message = oldSlots[(head + i) & mask];
+			if (message != null) {
+				slots[written] = message;
+				putIndex(message.getID(), written++);
+			}
+		}
+		head = 0;
+		end = written;
+	}
+
+	/**
+	 * @param id - the id of a message
+	 * @return the entry of the index at which the search for the id starts
+	 */
+	private int hash(int id) {
+		int hash = id * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & (indexIds.length - 1);
+	}
+
+	/**
+	 * @param id - the id of a message
+	 * @return the entry of the index holding the id, or -1 if it is not in the index
+	 */
+	private int findIndex(int id) {
+		if (size == 0) {
+			return -1;
+		}
+		int mask = indexIds.length - 1;
+		for (int entry = hash(id); indexStamps[entry] == indexStamp; entry = (entry + 1) & mask) {
+			if (indexIds[entry] == id) {
+				return entry;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Records the slot of a message id, replacing the slot it had before
+	 * @param id - the id of the message
+	 * @param slot - the slot of the message
+	 */
+	private void putIndex(int id, int slot) {
+		int mask = indexIds.length - 1;
+		int entry = hash(id);
+		while (indexStamps[entry] == indexStamp && indexIds[entry] != id) {
+			entry = (entry + 1) & mask;
+		}
+		indexIds[entry] = id;
+		indexSlots[entry] = slot;
+		indexStamps[entry] = indexStamp;
+	}
+
+	/**
+	 * Empties an entry of the index, moving back the entries after it that would no longer
+	 * be found since the search for them went through this entry
+	 * @param entry - the entry to empty
+	 */
+	private void removeIndex(int entry) {
+		int mask = indexIds.length - 1;
+		int next = entry;
+		while (true) {
+			next = (next + 1) & mask;
+			if (indexStamps[next] != indexStamp) {
+				break;
+			}
+			int start = hash(indexIds[next]);
+			// the entry stays where it is if its search starts after the empty entry
+			boolean reachable = entry <= next ? entry < start && start <= next : entry < start || start <= next;
+			if (!reachable) {
+				indexIds[entry] = indexIds[next];
+				indexSlots[entry] = indexSlots[next];
+				entry = next;
+			}
+		}
+		indexStamps[entry] = 0;
+	}
+
+	/**
+	 * Empties the index by moving to the next stamp
+	 */
+	private void clearIndex() {
+		if (indexStamps == null) {
+			return;
+		}
+		indexStamp++;
+		if (indexStamp == 0) {
+			Arrays.fill(indexStamps, 0);
+			indexStamp = 1;
+		}
+	}
+
+	/**
+	 * Saves the messages in order, the slots and index are built again when read
+	 * @param out - the stream to write to
+	 * @throws IOException if the messages can't be written
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		int mask = slots.length - 1;
+		for (int i = 0; i < end; i++) {
+			Message message = slots[(head + i) & mask];
+			if (message != null) {
+				out.writeObject(message);
+			}
+		}
+	}
+
+	/**
+	 * Reads the messages saved by writeObject
+	 * @param in - the stream to read from
+	 * @throws IOException if the messages can't be read
+	 * @throws ClassNotFoundException if a class of the messages is not found
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		slots = NO_SLOTS;
+		indexStamp = 1;
+		int count = in.readInt();
+		for (int i = 0; i < count; i++) {
+			// only the id of the message is needed, which is read before the rest of the message
+			add((Message) in.readObject());
+		}
+	}
+
+	/**
+	 * A read-only view of the queue as a list
+	 */
+	private class MessageList extends AbstractList<Message> implements RandomAccess, Serializable {
+
+		private static final long serialVersionUID = 4915104536224930622L;
+
+		@Override
+		public Message get(int index) {
+			return MessageQueue.this.get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+}
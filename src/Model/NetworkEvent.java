@@ -19,6 +19,11 @@ public class NetworkEvent extends EventObject {
 	private ShapesContainer shapesContainer;
 	private int messageCount;
 	private int baseMessageCount;
+	private long undoHeapBytes;
+	private long undoSpillBytes;
+	private int timelineFirstStep;
+	private int timelineLastStep;
+	private int step;
 
 	private boolean isRestoreEvent;
 
@@ -79,6 +84,63 @@ public class NetworkEvent extends EventObject {
 		this.baseMessageCount = messageCount;
 	}
 
+	/**
+	 * @return roughly the number of bytes of step back history kept in memory
+	 */
+	public long getUndoHeapBytes() {
+		return undoHeapBytes;
+	}
+
+	/**
+	 * @return the number of bytes of step back history written to disk
+	 */
+	public long getUndoSpillBytes() {
+		return undoSpillBytes;
+	}
+
+	/**
+	 * sets the size of the step back history of the model
+	 * @param heapBytes the bytes kept in memory
+	 * @param spillBytes the bytes written to disk
+	 */
+	public void setUndoHistorySize(long heapBytes, long spillBytes) {
+		this.undoHeapBytes = heapBytes;
+		this.undoSpillBytes = spillBytes;
+	}
+
+	/**
+	 * @return the first step the timeline of the model can go to, or -1 if there is none
+	 */
+	public int getTimelineFirstStep() {
+		return timelineFirstStep;
+	}
+
+	/**
+	 * @return the last step the timeline of the model can go to, or -1 if there is none
+	 */
+	public int getTimelineLastStep() {
+		return timelineLastStep;
+	}
+
+	/**
+	 * @return the step the model is at
+	 */
+	public int getStep() {
+		return step;
+	}
+
+	/**
+	 * sets the steps the timeline of the model can go to, and the step it is at
+	 * @param firstStep the first step of the timeline, or -1 if there is none
+	 * @param lastStep the last step of the timeline, or -1 if there is none
+	 * @param step the step the model is at
+	 */
+	public void setTimeline(int firstStep, int lastStep, int step) {
+		this.timelineFirstStep = firstStep;
+		this.timelineLastStep = lastStep;
+		this.step = step;
+	}
+
 	/**
 	 * @return the topology
 	 */
@@ -1,6 +1,9 @@
 package Model;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,9 +22,25 @@ public class NetworkTopology implements Serializable{
 	private static final String LAMBDA = " -> ";
 	private static final String NEW_LINE = "\n";
 	private static final String COMMA_SPACE = ", ";
+	public static final double DEFAULT_LINK_WEIGHT = 1;
 	private Map<Router, List<Router>> routerNeighbours;
+	// the weight (cost or latency) of the link to each neighbour, in the same order as routerNeighbours
+	private Map<Router, List<Double>> linkWeights;
+
+	// registry of the routers in the topology, indexed both by name and by a dense integer id.
+	// ids are handed out from freeRouterIds before growing routersById, so an id never changes
+	// while its router stays in the topology
+	private Map<String, Router> routersByName;
+	private List<Router> routersById;
+	private Deque<Integer> freeRouterIds;
+
+	// incremented on every structural change, the snapshot is rebuilt when it is out of date
+	private long version;
+	private transient TopologySnapshot snapshot;
 	private boolean isNeighboursChanged;
 	private boolean isRoutersChanged;
+	// true while links are added without checking for duplicates, see beginBulkInsert()
+	private transient boolean bulkInsert;
 
 	// variables used for metrics (total packets transmitted and average hops)
 	private int totalPacketsTransmittedMetric;
@@ -33,6 +52,10 @@ public class NetworkTopology implements Serializable{
 	 */
 	public NetworkTopology() {
 		routerNeighbours = new HashMap<Router, List<Router>>();
+		linkWeights = new HashMap<Router, List<Double>>();
+		routersByName = new HashMap<String, Router>();
+		routersById = new ArrayList<Router>();
+		freeRouterIds = new ArrayDeque<Integer>();
 		isNeighboursChanged = false;
 		isRoutersChanged = false;
 		totalPacketsTransmittedMetric = 0;
@@ -41,11 +64,25 @@ public class NetworkTopology implements Serializable{
 	}
 
 	/**
-	 * Add a router to the topology
+	 * Add a router to the topology and assign it an id. A router with a name
+	 * that already exists in the topology is ignored.
 	 * @param router - the router to be added
 	 */
 	public void addRouter(Router router) {
+		if (router == null || routersByName.containsKey(router.getName())) return;
+		int id;
+		if (freeRouterIds.isEmpty()) {
+			id = routersById.size();
+			routersById.add(router);
+		} else {
+			id = freeRouterIds.pop();
+			routersById.set(id, router);
+		}
+		router.setId(id);
+		routersByName.put(router.getName(), router);
 		routerNeighbours.put(router, new ArrayList<Router>());
+		linkWeights.put(router, new ArrayList<Double>());
+		version++;
 		isRoutersChanged = true;
 	}
 
@@ -58,13 +95,24 @@ public class NetworkTopology implements Serializable{
 		Router target = getRouter(name);
 		if (target != null) {
 			routerNeighbours.remove(target);
+			linkWeights.remove(target);
+			routersByName.remove(name);
+			routersById.set(target.getId(), null);
+			freeRouterIds.push(target.getId());
+			version++;
 			isRoutersChanged = true;
 			for (Router router : routerNeighbours.keySet()) {
 				List<Router> neighbours = routerNeighbours.get(router);
-				if (neighbours.contains(target)) {
-					neighbours.remove(target);
+				int index = neighbours.indexOf(target);
+				if (index >= 0) {
+					neighbours.remove(index);
+					linkWeights.get(router).remove(index);
 					isNeighboursChanged = true;
 				}
+				// the id can be given to a new router, which the flooded messages have not passed through
+				for (Message message : router.getStoredMessages()) {
+					message.forgetRouter(target.getId());
+				}
 			}
 		}
 	}
@@ -75,10 +123,26 @@ public class NetworkTopology implements Serializable{
 	 * @return the router with the same name, otherwise null
 	 */
 	public Router getRouter(String name){
-		for (Router router : routerNeighbours.keySet()){
-			if (router.getName().equals(name)) return router;
-		}
-		return null;
+		return routersByName.get(name);
+	}
+
+	/**
+	 * Returns the router that was assigned the given id
+	 * @param id - the id of the router
+	 * @return the router with the id, otherwise null
+	 */
+	public Router getRouter(int id) {
+		if (id < 0 || id >= routersById.size()) return null;
+		return routersById.get(id);
+	}
+
+	/**
+	 * Router ids are always lower than this value, but ids of removed routers
+	 * may be unused until a new router is added.
+	 * @return one more than the highest router id that has been handed out
+	 */
+	public int getRouterIdCapacity() {
+		return routersById.size();
 	}
 
 	/**
@@ -102,6 +166,31 @@ public class NetworkTopology implements Serializable{
 		return null;
 	}
 
+	/**
+	 * @return the version of the topology, which changes every time a router or neighbour is added or removed
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns a frozen adjacency view of the current version of the topology. The snapshot
+	 * is only rebuilt after the topology has changed.
+	 * @return the snapshot of the current version
+	 */
+	public TopologySnapshot getSnapshot() {
+		if (snapshot == null || snapshot.getVersion() != version) {
+			List<List<Router>> neighbours = new ArrayList<List<Router>>(routersById.size());
+			List<List<Double>> weights = new ArrayList<List<Double>>(routersById.size());
+			for (Router router : routersById) {
+				neighbours.add(router == null ? null : routerNeighbours.get(router));
+				weights.add(router == null ? null : linkWeights.get(router));
+			}
+			snapshot = new TopologySnapshot(version, routersById, neighbours, weights);
+		}
+		return snapshot;
+	}
+
 	/**
 	 * Checks if the neighbors map has been updated and resets the flag to false
 	 * @return true if the map of neighbors has changed, otherwise false
@@ -129,23 +218,37 @@ public class NetworkTopology implements Serializable{
 	 * @return true if the neighbour is added, otherwise false
 	 */
 	public boolean setRouterNeighbour(String routerName, String routerNeighbourName) {
+		return setRouterNeighbour(routerName, routerNeighbourName, DEFAULT_LINK_WEIGHT);
+	}
+
+	/**
+	 * Adds a neighbour to a router from the given router names, through a link with the given weight
+	 * @param routerName the name of the router to add a neighbour to
+	 * @param routerNeighbourName the name of the neighbour to be added
+	 * @param weight the cost of sending a message over the link, must be positive
+	 * @return true if the neighbour is added, otherwise false
+	 */
+	public boolean setRouterNeighbour(String routerName, String routerNeighbourName, double weight) {
 		Router router = getRouter(routerName);
 		Router neighbour = getRouter(routerNeighbourName);
-		return setRouterNeighbour(router, neighbour);
+		return setRouterNeighbour(router, neighbour, weight);
 	}
 
 	/**
 	 * Sets a neighbour to the router
 	 * @param router - the router to gain a neighbour
 	 * @param neighbour - the neighbour to be added
+	 * @param weight - the cost of sending a message over the link
 	 * @return true if the neighbour is added successfully, otherwise false
 	 */
-	private boolean setRouterNeighbour(Router router, Router neighbour) {
-		if(router != null && neighbour != null) {
+	private boolean setRouterNeighbour(Router router, Router neighbour, double weight) {
+		if(router != null && neighbour != null && isValidWeight(weight)) {
 			if(routerNeighbours.containsKey(router)) {
 				List<Router> routers = routerNeighbours.get(router);
-				if(!routers.contains(neighbour)) {
+				if(bulkInsert || !routers.contains(neighbour)) {
 					routerNeighbours.get(router).add(neighbour);
+					linkWeights.get(router).add(weight);
+					version++;
 					isNeighboursChanged = true;
 					return true;
 				}
@@ -154,6 +257,50 @@ public class NetworkTopology implements Serializable{
 		return false;
 	}
 
+	/**
+	 * Starts adding many links at once. Until endBulkInsert() is called, setRouterNeighbour()
+	 * adds links without searching the neighbours of the router for the same link, which
+	 * takes time in the number of neighbours for every link added.
+	 */
+	public void beginBulkInsert() {
+		bulkInsert = true;
+	}
+
+	/**
+	 * Ends adding many links at once, and removes the links that were added more than once,
+	 * keeping the first of them with its weight
+	 */
+	public void endBulkInsert() {
+		if (!bulkInsert) {
+			return;
+		}
+		bulkInsert = false;
+		// lastRouter[id] is the id of the last router found to have the router with that id as a neighbour
+		int[] lastRouter = new int[routersById.size()];
+		Arrays.fill(lastRouter, -1);
+		for (Router router : routersById) {
+			if (router == null) {
+				continue;
+			}
+			List<Router> neighbours = routerNeighbours.get(router);
+			List<Double> weights = linkWeights.get(router);
+			int kept = 0;
+			for (int i = 0; i < neighbours.size(); i++) {
+				Router neighbour = neighbours.get(i);
+				if (lastRouter[neighbour.getId()] != router.getId()) {
+					lastRouter[neighbour.getId()] = router.getId();
+					neighbours.set(kept, neighbour);
+					weights.set(kept++, weights.get(i));
+				}
+			}
+			if (kept < neighbours.size()) {
+				neighbours.subList(kept, neighbours.size()).clear();
+				weights.subList(kept, weights.size()).clear();
+				version++;
+			}
+		}
+	}
+
 	/**
 	 * Removes the neighbor from the router's set of neighbors if it was found
 	 * @param routerName the name of the router to lose a neighbor
@@ -164,13 +311,64 @@ public class NetworkTopology implements Serializable{
 		Router router = getRouter(routerName);
 		Router neighbour = getRouter(routerNeighbourName);
 		if (router != null && neighbour != null && routerNeighbours.get(router).contains(neighbour)){
-			routerNeighbours.get(router).remove(neighbour);
+			int index = routerNeighbours.get(router).indexOf(neighbour);
+			routerNeighbours.get(router).remove(index);
+			linkWeights.get(router).remove(index);
+			version++;
 			isNeighboursChanged = true;
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the weight of the link from a router to one of its neighbours
+	 * @param routerName the name of the router the link starts from
+	 * @param routerNeighbourName the name of the neighbour the link goes to
+	 * @return the weight of the link, or NaN if there is no such link
+	 */
+	public double getLinkWeight(String routerName, String routerNeighbourName) {
+		Router router = getRouter(routerName);
+		Router neighbour = getRouter(routerNeighbourName);
+		if (router != null && neighbour != null) {
+			int index = routerNeighbours.get(router).indexOf(neighbour);
+			if (index >= 0) {
+				return linkWeights.get(router).get(index);
+			}
+		}
+		return Double.NaN;
+	}
+
+	/**
+	 * Changes the weight of the link from a router to one of its neighbours
+	 * @param routerName the name of the router the link starts from
+	 * @param routerNeighbourName the name of the neighbour the link goes to
+	 * @param weight the new cost of sending a message over the link, must be positive
+	 * @return true if the weight was changed, otherwise false
+	 */
+	public boolean setLinkWeight(String routerName, String routerNeighbourName, double weight) {
+		Router router = getRouter(routerName);
+		Router neighbour = getRouter(routerNeighbourName);
+		if (router != null && neighbour != null && isValidWeight(weight)) {
+			int index = routerNeighbours.get(router).indexOf(neighbour);
+			if (index >= 0) {
+				linkWeights.get(router).set(index, weight);
+				version++;
+				isNeighboursChanged = true;
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param weight - the weight of a link
+	 * @return true if the weight is a positive, finite number
+	 */
+	private static boolean isValidWeight(double weight) {
+		return weight > 0 && !Double.isInfinite(weight);
+	}
+
 	/**
 	 * Returns a comma separated string of the give list of routers
 	 * 	ie. "a, b, c, d"
@@ -205,8 +403,7 @@ public class NetworkTopology implements Serializable{
 	 * @return true if the router exists
 	 */
 	public boolean contains(String routerName) {
-		Router target = getRouter(routerName);
-		return getRouters().contains(target);
+		return routersByName.containsKey(routerName);
 	}
 
 	/**
@@ -245,6 +442,21 @@ public class NetworkTopology implements Serializable{
 		totalPacketsTransmittedMetric++;
 	}
 
+	/**
+	 * Adds to the total packets transmitted metric
+	 * @param count the number of packets transmitted
+	 */
+	public void incrementTotalPacketsTransmittedMetric(int count) {
+		totalPacketsTransmittedMetric += count;
+	}
+
+	/**
+	 * @return the number of messages that have reached their destination
+	 */
+	public int getNumMessagesReachedDest() {
+		return numMessagesReachedDest;
+	}
+
 	/**
 	 * Increments the total packets that have reached their destination counter.
 	 * This is used for the average hops metric.
@@ -253,6 +465,25 @@ public class NetworkTopology implements Serializable{
 		numMessagesReachedDest++;
 	}
 
+	/**
+	 * Adds to the total packets that have reached their destination counter.
+	 * @param count the number of packets that reached their destination
+	 */
+	public void incrementNumMessagesReachedDest(int count) {
+		numMessagesReachedDest += count;
+	}
+
+	/**
+	 * Sets the metrics back to earlier values, and works out the average hops from them
+	 * @param totalPacketsTransmitted the total packets transmitted metric
+	 * @param numMessagesReachedDest the number of messages that reached their destination
+	 */
+	public void restoreMetrics(int totalPacketsTransmitted, int numMessagesReachedDest) {
+		totalPacketsTransmittedMetric = totalPacketsTransmitted;
+		this.numMessagesReachedDest = numMessagesReachedDest;
+		calculateAverageHopsMetric();
+	}
+
 	/**
 	 * Resets the variables used for metrics (total packets and average hops)
 	 */
@@ -280,6 +511,36 @@ public class NetworkTopology implements Serializable{
 		return averageHopsMetric;
 	}
 
+	/**
+	 * Rebuilds the router registry for topologies that were saved before routers
+	 * had ids, and gives the links of topologies saved before links had weights the
+	 * default weight (called by the serializers after the fields have been read)
+	 * @return this topology
+	 */
+	private Object readResolve() {
+		if (linkWeights == null) {
+			linkWeights = new HashMap<Router, List<Double>>();
+			for (Map.Entry<Router, List<Router>> entry : routerNeighbours.entrySet()) {
+				List<Double> weights = new ArrayList<Double>();
+				for (int i = 0; i < entry.getValue().size(); i++) {
+					weights.add(DEFAULT_LINK_WEIGHT);
+				}
+				linkWeights.put(entry.getKey(), weights);
+			}
+		}
+		if (routersByName == null) {
+			routersByName = new HashMap<String, Router>();
+			routersById = new ArrayList<Router>();
+			freeRouterIds = new ArrayDeque<Integer>();
+			for (Router router : routerNeighbours.keySet()) {
+				router.setId(routersById.size());
+				routersById.add(router);
+				routersByName.put(router.getName(), router);
+			}
+		}
+		return this;
+	}
+
 	/**
 	 * Sets both the routers and neighbours changed flags to true
 	 */
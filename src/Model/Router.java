@@ -1,8 +1,7 @@
 package Model;
-import java.util.HashMap;
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.List;
 
 /**
  *  A Router is a node in a network topology which stores messages, has neighbors,
@@ -14,17 +13,28 @@ import java.util.HashSet;
 public class Router implements Serializable{
 
 	private static final long serialVersionUID = 6288937073120421539L;
-	private HashMap<Router, HashSet<Router>> routingTable;
+	private RoutingTable routingTable;
+	private MessageQueue storedMessages;
+	// the messages sent to this router during a step, stored once the step is over
+	private transient MessageQueue incomingMessages;
+	// the stored messages of routers saved before they were kept in a queue, only set while loading
 	private ArrayList<Message> messages;
 	private String name;
+	private int id;
+	// the hash code of the name, kept in a primitive field since those are read before the
+	// messages when a router is deserialized, and the messages may hold sets of routers
+	// that are rebuilt before the name of this router is read
+	private int nameHash;
 
 	/**
 	 * Constructor for the Router
 	 * @param name the name of the new router
 	 */
 	public Router(String name) {
-		messages = new ArrayList<Message>();
+		storedMessages = new MessageQueue();
 		this.name = name;
+		nameHash = name == null ? 0 : name.hashCode();
+		id = -1;
 	}
 
 	/**
@@ -35,48 +45,96 @@ public class Router implements Serializable{
 		return name;
 	}
 
+	/**
+	 * Get the id the topology assigned to this router. Ids are dense (from 0 up to
+	 * the topology's id capacity) and do not change while the router is in the topology.
+	 * @return the id, or -1 if the router was never added to a topology
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Sets the id of the router, only the topology assigns ids
+	 * @param id - the id of the router
+	 */
+	void setId(int id) {
+		this.id = id;
+	}
+
 	/**
 	 * Adds a message in the router
 	 * @param message - the message to be stored
 	 */
 	public void storeMessage(Message message) {
 		if (message != null) {
-			messages.add(message);
+			storedMessages.add(message);
+		}
+	}
+
+	/**
+	 * Receives a message sent from another router during a step. The message is only
+	 * stored in the router once swapMessages() is called at the end of the step.
+	 * @param message - the message sent to this router
+	 */
+	public void receiveMessage(Message message) {
+		if (incomingMessages == null) {
+			incomingMessages = new MessageQueue();
 		}
+		incomingMessages.add(message);
+	}
+
+	/**
+	 * Ends a step: the messages received during the step become the stored messages, and the
+	 * messages stored before the step are dropped since each of them was sent on, or reached its destination.
+	 * The two queues are swapped rather than copied, so nothing is allocated once both have grown.
+	 */
+	public void swapMessages() {
+		MessageQueue sentMessages = storedMessages;
+		storedMessages = incomingMessages == null ? new MessageQueue() : incomingMessages;
+		sentMessages.clear();
+		incomingMessages = sentMessages;
 	}
 
 	/**
 	 * Returns all the messages in the router
-	 * @return	a list of the messages in the router
+	 * @return	a read-only list of the messages in the router
 	 */
-	public ArrayList<Message> getStoredMessages() {
-		return messages;
+	public List<Message> getStoredMessages() {
+		return storedMessages.asList();
 	}
 
 	/**
-	 * Removes a message from the router with the sane Id
+	 * Removes a message from the router with the same Id
 	 * @param message - the message to be removed
 	 */
 	public void removeMessage(Message message) {
 		if(message != null) {
-			for (int i =0; i < messages.size();i++){
-				if (messages.get(i).getID() == message.getID()) messages.remove(i);
-			}
+			storedMessages.remove(message.getID());
 		}
 	}
 
+	/**
+	 * @param message - a message
+	 * @return true if a message with the same Id is stored in the router
+	 */
+	public boolean containsMessage(Message message) {
+		return message != null && storedMessages.contains(message.getID());
+	}
+
 	/**
 	 * Removes all the messages currently in the router
 	 */
 	public void removeAllMessages(){
-		messages = new ArrayList<Message>();
+		storedMessages = new MessageQueue();
+		incomingMessages = null;
 	}
 
 	/**
 	 * Returns the routing table of this router
 	 * @return - the routing table
 	 */
-	public HashMap<Router, HashSet<Router>> getRoutingTable() {
+	public RoutingTable getRoutingTable() {
 		return routingTable;
 	}
 
@@ -84,7 +142,7 @@ public class Router implements Serializable{
 	 * Sets the routing table of this router
 	 * @param routingTable - the routingTable to be set
 	 */
-	public void setRoutingTable(HashMap<Router, HashSet<Router>> routingTable) {
+	public void setRoutingTable(RoutingTable routingTable) {
 		this.routingTable = routingTable;
 	}
 
@@ -106,6 +164,37 @@ public class Router implements Serializable{
 		}
 
 		Router router = (Router) o;
-		return this.getName().equals(router.getName());
+		// a router that is still being deserialized has no name yet, and is only equal to itself
+		if (name == null || router.name == null) {
+			return false;
+		}
+		return nameHash == router.nameHash && name.equals(router.name);
+	}
+
+	/**
+	 * Hash code is based on the name, consistent with equals()
+	 */
+	public int hashCode() {
+		return nameHash;
+	}
+
+	/**
+	 * Works out the hash code of the name and moves the messages into a queue for routers saved
+	 * before those were kept
+	 * (called by the serializers after the fields have been read)
+	 * @return this router
+	 */
+	private Object readResolve() {
+		nameHash = name == null ? 0 : name.hashCode();
+		if (storedMessages == null) {
+			storedMessages = new MessageQueue();
+		}
+		if (messages != null) {
+			for (Message message : messages) {
+				storedMessages.add(message);
+			}
+			messages = null;
+		}
+		return this;
 	}
 }
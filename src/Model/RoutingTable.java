@@ -0,0 +1,26 @@
+package Model;
+
+import java.io.Serializable;
+
+/**
+ * A routing table tells a router which of its neighbours a message should be
+ * forwarded to in order to reach its destination. Routing tables are set on every
+ * router by a routing algorithm.
+ */
+public interface RoutingTable extends Serializable {
+
+	/**
+	 * Returns the number of routers a message for the given destination is forwarded to
+	 * @param destination - the router the message is trying to reach
+	 * @return the number of next routers, 0 if the message does not go anywhere
+	 */
+	int getNextHopCount(Router destination);
+
+	/**
+	 * Returns one of the routers a message for the given destination is forwarded to
+	 * @param destination - the router the message is trying to reach
+	 * @param index - the index of the next router, from 0 to getNextHopCount(destination) - 1
+	 * @return the next router
+	 */
+	Router getNextHop(Router destination, int index);
+}
@@ -0,0 +1,185 @@
+package Model;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A frozen, compressed sparse row (CSR) view of a network topology. Routers are
+ * indexed by their id; the neighbours of router i are the ids stored in
+ * neighbourIds[offsets[i]] up to (but excluding) neighbourIds[offsets[i + 1]], in the
+ * same order as the topology's neighbour list, and weights[j] is the weight of the link
+ * to neighbourIds[j]. A snapshot is built once per version
+ * of the topology (see NetworkTopology.getSnapshot()) and is never modified, so it can be
+ * shared between routing algorithms and threads.
+ */
+public final class TopologySnapshot implements Serializable {
+
+	private static final long serialVersionUID = 5302818311651129427L;
+
+	private final long version;
+	private final Router[] routers;
+	private final int[] routerIds;
+	private final int[] offsets;
+	private final int[] neighbourIds;
+	private final double[] weights;
+	// the rows again with the neighbour ids in ascending order, to find a link by binary search
+	private final int[] sortedNeighbourIds;
+	private final double[] sortedWeights;
+
+	/**
+	 * Builds the snapshot from the router registry and adjacency lists of a topology
+	 * @param version - the version of the topology being frozen
+	 * @param routersById - the routers indexed by id, null for ids not in use
+	 * @param neighbours - the neighbour list of each router, indexed by router id
+	 * @param linkWeights - the weights of the links to the neighbours of each router, indexed by router id
+	 */
+	TopologySnapshot(long version, List<Router> routersById, List<List<Router>> neighbours, List<List<Double>> linkWeights) {
+		this.version = version;
+		int capacity = routersById.size();
+		routers = routersById.toArray(new Router[capacity]);
+		offsets = new int[capacity + 1];
+
+		int numberOfRouters = 0;
+		int numberOfLinks = 0;
+		for (int id = 0; id < capacity; id++) {
+			if (routers[id] != null) {
+				numberOfRouters++;
+				numberOfLinks += neighbours.get(id).size();
+			}
+		}
+
+		routerIds = new int[numberOfRouters];
+		neighbourIds = new int[numberOfLinks];
+		weights = new double[numberOfLinks];
+		int routerIndex = 0;
+		int linkIndex = 0;
+		for (int id = 0; id < capacity; id++) {
+			offsets[id] = linkIndex;
+			if (routers[id] != null) {
+				routerIds[routerIndex++] = id;
+				List<Double> routerWeights = linkWeights.get(id);
+				for (int i = 0; i < routerWeights.size(); i++) {
+					neighbourIds[linkIndex] = neighbours.get(id).get(i).getId();
+					weights[linkIndex++] = routerWeights.get(i);
+				}
+			}
+		}
+		offsets[capacity] = linkIndex;
+
+		// each link is sorted within its row as its neighbour id followed by its index
+		long[] links = new long[numberOfLinks];
+		for (int i = 0; i < numberOfLinks; i++) {
+			links[i] = ((long) neighbourIds[i] << 32) | i;
+		}
+		sortedNeighbourIds = new int[numberOfLinks];
+		sortedWeights = new double[numberOfLinks];
+		for (int id = 0; id < capacity; id++) {
+			Arrays.sort(links, offsets[id], offsets[id + 1]);
+		}
+		for (int i = 0; i < numberOfLinks; i++) {
+			int link = (int) links[i];
+			sortedNeighbourIds[i] = neighbourIds[link];
+			sortedWeights[i] = weights[link];
+		}
+	}
+
+	/**
+	 * @return the version of the topology this snapshot was built from
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return the number of router ids (used or not), all ids are lower than this value
+	 */
+	public int getIdCapacity() {
+		return routers.length;
+	}
+
+	/**
+	 * @return the number of routers in the snapshot
+	 */
+	public int numberOfRouters() {
+		return routerIds.length;
+	}
+
+	/**
+	 * @return the number of (directed) links in the snapshot
+	 */
+	public int numberOfLinks() {
+		return neighbourIds.length;
+	}
+
+	/**
+	 * Returns the router with the given id
+	 * @param id - the id of the router
+	 * @return the router, or null if the id is not in use
+	 */
+	public Router getRouter(int id) {
+		return routers[id];
+	}
+
+	/**
+	 * The table of routers indexed by id. The returned array is shared and must not be modified.
+	 * @return the routers indexed by id, with null for unused ids
+	 */
+	public Router[] getRouters() {
+		return routers;
+	}
+
+	/**
+	 * The ids of the routers in the snapshot in ascending order. The returned array is shared
+	 * and must not be modified.
+	 * @return the ids in use
+	 */
+	public int[] getRouterIds() {
+		return routerIds;
+	}
+
+	/**
+	 * The row offsets of the adjacency block. The returned array is shared and must not be modified.
+	 * @return the offsets, of length getIdCapacity() + 1
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * The neighbour ids of every router, one row after the other. The returned array is shared
+	 * and must not be modified.
+	 * @return the neighbour ids
+	 */
+	public int[] getNeighbourIds() {
+		return neighbourIds;
+	}
+
+	/**
+	 * The weights of the links, in the same order as getNeighbourIds(). The returned array is
+	 * shared and must not be modified.
+	 * @return the link weights
+	 */
+	public double[] getWeights() {
+		return weights;
+	}
+
+	/**
+	 * Finds the weight of the link between two routers by binary search of the row of the first
+	 * @param from - the id of the router the link starts at
+	 * @param to - the id of the router the link ends at
+	 * @return the weight of the link, or NaN if there is no such link
+	 */
+	public double getLinkWeight(int from, int to) {
+		int link = Arrays.binarySearch(sortedNeighbourIds, offsets[from], offsets[from + 1], to);
+		return link >= 0 ? sortedWeights[link] : Double.NaN;
+	}
+
+	/**
+	 * @param id - the id of the router
+	 * @return the number of neighbours of the router
+	 */
+	public int degree(int id) {
+		return offsets[id + 1] - offsets[id];
+	}
+}
@@ -1,34 +1,25 @@
 package Routing;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Queue;
+import java.util.Arrays;
 
-import Model.NetworkTopology;
-import Model.Router;
+import Model.TopologySnapshot;
 
 /**
  * A BreadthFirstSearchRoutingAlgorithm is a routing algorithm which directs messages
  * from one router to a neighboring router in order to eventually
- * bring the message to its destination in the shortest amount of jumps. This algorithm sets 
- * the routing tables for each router in a network topology. The routing tables only need to 
+ * bring the message to its destination in the shortest amount of jumps. This algorithm sets
+ * the routing tables for each router in a network topology. The routing tables only need to
  * be set once and can be reevaluated if the topology is altered.
- * 
+ *
  * @author Jaspreet Sanghra
  * @version 1.0
  */
 public class BreadthFirstSearchRoutingAlgorithm extends RoutingAlgorithm {
 
 	public static final String NAME = "Breadth First Routing Algorithm";
-	private NetworkTopology currentTopology;
 
-	/**
-	 * key is the node in question, each node is only visited once
-	 * value is the parent it came from
-	 */
-	private HashMap<Router, Router> path;
+	// the distances and next routers of the tables last set, kept to update the tables after an edit
+	private transient ShortestPathTables tables;
 
 	/**
 	 * AKA Shortest Path
@@ -38,98 +29,191 @@ public class BreadthFirstSearchRoutingAlgorithm extends RoutingAlgorithm {
 	}
 
 	/**
-	 * Sets the routing tables for each router in a provided
-	 * network topology using the breadth first search routing algorithm. 
-	 * Needs to be called only once and any time there is a change to the 
-	 * topology.
+	 * Creates a builder which sets the routing table of a router using the
+	 * breadth first search routing algorithm. The tables need to be set only once
+	 * and any time there is a change to the topology. A single breadth first search
+	 * is run from each router, which gives the next router for every destination at once.
 	 *
-	 * @param topology - the network
+	 * @param snapshot - the frozen adjacency of the network
 	 */
 	@Override
-	protected void setTables(NetworkTopology topology) {
-		currentTopology = topology;
-		Router[] routers = topology.getRouters().toArray(new Router[]{});
-
-		for (Router router : routers) {
-			HashMap<Router, HashSet<Router>> routingTable = new HashMap<>();
-			Router fromRouter = router; //the routing table of the router being set
-
-			for (Router router1 : routers) {
-				path = new HashMap<Router, Router>();
-				Router toRouter = router1; //destination router
-				setRoute(fromRouter, toRouter);
-				HashSet<Router> set = getNextFromPath(toRouter);
-				routingTable.put(toRouter, set);
-			}
-			fromRouter.setRoutingTable(routingTable);
-		}
-		topology = null;
+	protected RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot) {
+		return new BreadthFirstSearchTableBuilder(snapshot, tables);
+	}
+
+	@Override
+	protected void setTables(TopologySnapshot snapshot) {
+		// lazy tables are cheap to set again, there are no distances to keep
+		tables = getLazyCacheSize() > 0 ? null : new ShortestPathTables(snapshot);
+		super.setTables(snapshot);
 	}
 
 	/**
-	 * Back tracks the path hashMap from destination as key, to find the
-	 * value of the routing table hash map.
-	 * @param destination the router trying to be reached via routing table
-	 * @return a hashset of the next router to go to under BFS, null if path is empty
+	 * Repairs the distances between the routers that the edits change, and looks up
+	 * the next routers again only where those distances changed. The tables are the same
+	 * as if every breadth first search was run again.
+	 *
+	 * @param snapshot - the frozen adjacency of the edited network
 	 */
-	private HashSet<Router> getNextFromPath(Router destination) {
-		if(path.isEmpty())
-			return null; //start and destination router are the same
-
-		Router next = destination;
-		//back track path
-		while(path.containsKey(path.get(next)))
-		{
-			next = path.get(next);
+	@Override
+	protected boolean updateTables(TopologySnapshot snapshot) {
+		if (tables == null || getLazyCacheSize() > 0 || !tables.update(snapshot)) {
+			return false;
 		}
+		for (int id : snapshot.getRouterIds()) {
+			snapshot.getRouter(id).setRoutingTable(new NextHopRoutingTable(snapshot.getRouters(), tables.getNextHops(id)));
+		}
+		return true;
+	}
 
-		HashSet<Router> set = new HashSet<>();
-		set.add(next);
-		return set;
+	/**
+	 * Creates a builder which runs a breadth first search backwards from a destination,
+	 * giving a shortest route to it from every router at once.
+	 *
+	 * @param snapshot - the frozen adjacency of the network
+	 */
+	@Override
+	protected DestinationTreeBuilder createTreeBuilder(TopologySnapshot snapshot) {
+		return new BreadthFirstSearchTreeBuilder(snapshot);
 	}
 
 	/**
-	 * Goes through a breadth first search of the topology from
-	 * router start to destination while setting the path (hashMap)
-	 * along the way, in order to back track it and find the 'next'/
-	 * value router in the routing table
-	 * @param start the router of which the routing table is being set
-	 * @param destination the router trying to be reached
+	 * Sets routing tables with a breadth first search from each source, keeping the search
+	 * state in arrays indexed by router id that are reused from one source to the next.
 	 */
-	private void setRoute(Router start, Router destination) {
-		if(start.equals(destination))
-			return; //already at destination
-
-		Queue<Router> queue = new LinkedList<Router>();
-		queue.add(start);
-		while(!queue.isEmpty()) {
-			Router parentRouter = queue.remove();
-			Router childRouter= null;
-			while((childRouter=getUnvisitedNeighbour(parentRouter, start))!=null) {
-				// a router can only be visited once, childRouter and its parent
-				// are added to the path
-				//
-				path.put(childRouter, parentRouter);
-				queue.add(childRouter);
-				if(childRouter == destination)
-					return; //don't need to continue traversing the topology
+	private static class BreadthFirstSearchTableBuilder implements RoutingTableBuilder {
+
+		private final TopologySnapshot snapshot;
+		private final ShortestPathTables tables;
+		private final int[] queue;
+		private final int[] firstHops;
+		private final int[] levels;
+		private final int[] visitedStamps;
+		private int stamp;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the network
+		 * @param tables - where the distances and next routers of each table are kept, or null
+		 */
+		BreadthFirstSearchTableBuilder(TopologySnapshot snapshot, ShortestPathTables tables) {
+			this.snapshot = snapshot;
+			this.tables = tables;
+			int capacity = snapshot.getIdCapacity();
+			queue = new int[capacity];
+			firstHops = new int[capacity];
+			levels = new int[capacity];
+			visitedStamps = new int[capacity];
+			stamp = 0;
+		}
+
+		@Override
+		public void setTable(int source) {
+			// a new stamp marks every router as unvisited without clearing the array
+			stamp++;
+			search(source);
+
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+			for (int destination : snapshot.getRouterIds()) {
+				if (destination != source && visitedStamps[destination] == stamp) {
+					nextHops[destination] = firstHops[destination];
+				}
+			}
+			snapshot.getRouter(source).setRoutingTable(new NextHopRoutingTable(snapshot.getRouters(), nextHops));
+
+			if (tables != null) {
+				int[] distances = new int[snapshot.getIdCapacity()];
+				Arrays.fill(distances, ShortestPathTables.UNREACHED);
+				for (int destination : snapshot.getRouterIds()) {
+					if (visitedStamps[destination] == stamp) {
+						distances[destination] = levels[destination];
+					}
+				}
+				tables.setRow(source, distances, nextHops);
+			}
+		}
+
+		/**
+		 * Goes through a breadth first search of the topology from the source router,
+		 * visiting the neighbours of each router in the order they were added. When a
+		 * router is reached for the first time, the neighbour of the source it was reached
+		 * through is recorded as its first hop, with the number of hops it took.
+		 * @param source the id of the router of which the routing table is being set
+		 */
+		private void search(int source) {
+			int[] offsets = snapshot.getOffsets();
+			int[] neighbourIds = snapshot.getNeighbourIds();
+
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = source;
+			visitedStamps[source] = stamp;
+			levels[source] = 0;
+			while (head < tail) {
+				int parent = queue[head++];
+				for (int i = offsets[parent]; i < offsets[parent + 1]; i++) {
+					int child = neighbourIds[i];
+					if (visitedStamps[child] != stamp) {
+						// a router can only be visited once, it is reached through
+						// the same first hop as its parent
+						visitedStamps[child] = stamp;
+						firstHops[child] = parent == source ? child : firstHops[parent];
+						levels[child] = levels[parent] + 1;
+						queue[tail++] = child;
+					}
+				}
 			}
 		}
-		path = new HashMap<Router, Router>(); //destination was never found, possible disconnected graph
 	}
 
 	/**
-	 * Returns an unvisited router that is a neighbour of currentRouter
-	 * @param currentRouter the router currently being looked at
-	 * @param start the router of which the routing table is being set
-	 * @return an unvisited router, null otherwise
+	 * Builds destination trees with a breadth first search that follows the links
+	 * backwards from the destination. A router reached this way first is one link
+	 * further from the destination than the router it was reached from, which is its
+	 * next router. Ties between routes of the same length may be broken differently
+	 * from the tables built per source, but every route is a shortest route.
 	 */
-	private Router getUnvisitedNeighbour(Router currentRouter, Router start) {
-		List<Router> neighbours = currentTopology.getNeighbours(currentRouter.getName());
-		for (Router router : neighbours) {
-			if(!path.containsKey(router) && router != start)
-				return router; //router is unvisited
+	private static class BreadthFirstSearchTreeBuilder implements DestinationTreeBuilder {
+
+		private static final long serialVersionUID = -3388618627950611839L;
+
+		private final TopologySnapshot snapshot;
+		private final ReverseAdjacency reverse;
+		private transient int[] queue;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the network
+		 */
+		BreadthFirstSearchTreeBuilder(TopologySnapshot snapshot) {
+			this.snapshot = snapshot;
+			this.reverse = new ReverseAdjacency(snapshot);
+		}
+
+		@Override
+		public int[] buildTree(int destination) {
+			int[] offsets = reverse.getOffsets();
+			int[] sourceIds = reverse.getSourceIds();
+			if (queue == null) {
+				queue = new int[snapshot.getIdCapacity()];
+			}
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+
+			int head = 0;
+			int tail = 0;
+			queue[tail++] = destination;
+			while (head < tail) {
+				int current = queue[head++];
+				for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+					int source = sourceIds[i];
+					// the destination itself never gets a next router, so it is checked apart
+					if (source != destination && nextHops[source] == NextHopRoutingTable.NO_NEXT_HOP) {
+						nextHops[source] = current;
+						queue[tail++] = source;
+					}
+				}
+			}
+			return nextHops;
 		}
-		return null; //no more unvisited routers
 	}
 }
@@ -1,154 +1,131 @@
 package Routing;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Stack;
+import java.util.Arrays;
+import java.util.BitSet;
 
-import Model.NetworkTopology;
-import Model.Router;
+import Model.TopologySnapshot;
 
 /**
  * A DepthFirstSearchRoutingAlgorithm is a routing algorithm which directs messages
  * from one router to a neighboring router in order to eventually
- * bring the message to its destination by using the least amount of memory. This algorithm sets 
- * the routing tables for each router in a network topology. The routing tables only need to 
- * be set once and can be reevaluated if the topology is altered.     
- * 
+ * bring the message to its destination by using the least amount of memory. This algorithm sets
+ * the routing tables for each router in a network topology. The routing tables only need to
+ * be set once and can be reevaluated if the topology is altered.
+ *
  * @author Shawn Morreau, Jaspreet
  * @version 1.0001
  */
 public class DepthFirstSearchRoutingAlgorithm extends RoutingAlgorithm {
 
 	public static final String NAME = "Depth First Routing Algorithm";
-	private NetworkTopology topology;
-	private Router source, destination;
-	private List<Router> visitedRouters;
-	private HashMap<Router, Router> backTrack;
 
 	/**
 	 * Default constructor. The topologyTables are only set once.
 	 */
 	public DepthFirstSearchRoutingAlgorithm() {
 		super(false);
-		visitedRouters = new ArrayList<Router>();
-		backTrack = new HashMap<Router, Router>();
 	}
 
 	/**
-	 * Sets up the routing tables for each router in the topology
-	 * @param topology - the current topology being used
+	 * Creates a builder which sets up the routing table of a router. A single depth first
+	 * search is run from each router and the next router for every destination is read
+	 * off the tree it discovers.
+	 * @param snapshot - the frozen adjacency of the current topology
 	 */
 	@Override
-	protected void setTables(NetworkTopology topology) {
-		this.topology = topology;
-		Router[] routers = topology.getRouters().toArray(new Router[] {});
-
-		HashMap<Router, HashSet<Router>> routingTable;
-		List<Router> neighbours;
-
-		for (int i = 0; i < routers.length; i++) {
-			routingTable = new HashMap<>();
-			neighbours = topology.getNeighbours(routers[i].getName());
-
-			source = routers[i];
-
-			for (int j = 0; j < routers.length; j++) {
-				backTrack = new HashMap<Router, Router>();
-				if (i == j || (neighbours.size()) == 0) {
-					// Current router is the message destination or current
-					// router has no neighbours, message does not go anywhere
-
-					routingTable.put(routers[j], null);
-				} else {
-					destination = routers[j];
-					//this is the actual DFS method
-					getRoute();
-					HashSet<Router> r = goBack();
-					// this router should send its message to this one.
-					routingTable.put(destination, r);
-
-				}
-
-			}
-			source.setRoutingTable(routingTable);
-		}
+	protected RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot) {
+		return new DepthFirstSearchTableBuilder(snapshot);
 	}
 
 	/**
-	 * Props to Jaspreet for helping me with this.
-	 * 
-	 * @return HashSet containing the router that the source router should forward it's message to.
+	 * Sets routing tables with a depth first search from each source, keeping the search
+	 * state in arrays and bit sets indexed by router id that are reused from one source to the next.
 	 */
-	private HashSet<Router> goBack() {
-		if(backTrack.isEmpty())
-			return null; //start and destination router are the same
-
-		Router next = destination;
-		//back track path
-		while(backTrack.containsKey(backTrack.get(next)))
-		{
-			next = backTrack.get(next);
+	private static class DepthFirstSearchTableBuilder implements RoutingTableBuilder {
+
+		private final TopologySnapshot snapshot;
+		private final int[] stack;
+		private final int[] lastParents;
+		private final int[] visitHops;
+		private final int[] destinationHops;
+		private final BitSet visited;
+		private final BitSet discovered;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the current topology
+		 */
+		DepthFirstSearchTableBuilder(TopologySnapshot snapshot) {
+			this.snapshot = snapshot;
+			int capacity = snapshot.getIdCapacity();
+			stack = new int[snapshot.numberOfLinks() + 1];
+			lastParents = new int[capacity];
+			visitHops = new int[capacity];
+			destinationHops = new int[capacity];
+			visited = new BitSet(capacity);
+			discovered = new BitSet(capacity);
 		}
 
-		HashSet<Router> set = new HashSet<>();
-		set.add(next);
-		return set;
-
-	}
-
-	/**
-	 * Goes through the network pushing and popping routers from the stack
-	 * The route will then be stored in an ArrayList named visitedRouters 
-	 */
-	private void getRoute() {
-		ArrayList<Router> children = new ArrayList<Router>();
-		if (source.equals(destination))
-			return;
-
-		Stack<Router> routerStack = new Stack<Router>();
-		visitedRouters = new ArrayList<Router>();
-		routerStack.add(source);
-		while (!routerStack.isEmpty()) {
-			Router current = routerStack.pop();
-			if(current.equals(destination)){
-				visitedRouters.add(current);
-				return;
-
+		@Override
+		public void setTable(int source) {
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+			boolean hasNeighbours = snapshot.degree(source) != 0;
+			if (hasNeighbours) {
+				getRoute(source);
 			}
-			if (!visitedRouters.contains(current)) {
-				visitedRouters.add(current);
-				children = getChildren(current);
-				if(children.contains(destination)) {
-					visitedRouters.add(destination);
-					backTrack.put(destination, current);
-					return;
-				}
-				routerStack.addAll(children);
-				for(Router r : children) {
-					backTrack.put(r, current);
-				}
 
+			for (int destination : snapshot.getRouterIds()) {
+				// Current router is the message destination, current router has no
+				// neighbours or the destination can't be reached: message does not go anywhere
+				if (destination != source && hasNeighbours && discovered.get(destination)) {
+					// this router should send its message to this one.
+					nextHops[destination] = destinationHops[destination];
+				}
 			}
+			snapshot.getRouter(source).setRoutingTable(new NextHopRoutingTable(snapshot.getRouters(), nextHops));
 		}
-		backTrack = new HashMap<Router, Router>();
-	}
 
-	/**
-	 * Gets a list of the neighbours of the given router that have not been visited yet
-	 * @param current : the router to look at
-	 * @return a list of children that have not been visited
-	 */
-	private ArrayList<Router> getChildren(Router current) {
-		List<Router> children = topology.getNeighbours(current.getName());
-		ArrayList<Router> unidentifiedChildren = new ArrayList<Router>();
-		for (Router router : children) {
-			if (!visitedRouters.contains(router)) {
-				unidentifiedChildren.add(router);
+		/**
+		 * Goes through the network from the source, pushing and popping routers from the stack.
+		 *
+		 * A search towards a single destination stops at the first visited router that has the
+		 * destination as an unvisited neighbour, so the route to a destination is the path to
+		 * that router followed by the destination itself. A visited router is reached from the
+		 * last router that pushed it onto the stack. Both are recorded here as the id of the
+		 * neighbour of the source the route starts with, which lets one search give the routes
+		 * to every destination.
+		 *
+		 * @param source the id of the router of which the routing table is being set
+		 */
+		private void getRoute(int source) {
+			int[] offsets = snapshot.getOffsets();
+			int[] neighbourIds = snapshot.getNeighbourIds();
+			visited.clear();
+			discovered.clear();
+
+			int size = 0;
+			stack[size++] = source;
+			while (size > 0) {
+				int current = stack[--size];
+				if (visited.get(current)) continue;
+				visited.set(current);
+				if (current != source) {
+					int parent = lastParents[current];
+					visitHops[current] = parent == source ? current : visitHops[parent];
+				}
+
+				for (int i = offsets[current]; i < offsets[current + 1]; i++) {
+					int child = neighbourIds[i];
+					if (!visited.get(child)) {
+						if (!discovered.get(child)) {
+							discovered.set(child);
+							destinationHops[child] = current == source ? child : visitHops[current];
+						}
+						stack[size++] = child;
+						lastParents[child] = current;
+					}
+				}
 			}
 		}
-		return unidentifiedChildren;
 	}
-
 }
@@ -0,0 +1,19 @@
+package Routing;
+
+import java.io.Serializable;
+
+/**
+ * Builds the tree of routes towards a single destination for a routing algorithm
+ * that supports lazy routing tables. A builder may keep scratch space in fields,
+ * it is only used by the DestinationTreeCache that owns it, one tree at a time.
+ */
+interface DestinationTreeBuilder extends Serializable {
+
+	/**
+	 * Builds the routes from every router towards one destination
+	 * @param destination - the id of the destination router
+	 * @return the id of the next router towards the destination for each router id,
+	 * or NextHopRoutingTable.NO_NEXT_HOP if the destination is the router itself or can't be reached
+	 */
+	int[] buildTree(int destination);
+}
@@ -0,0 +1,139 @@
+package Routing;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import Model.Router;
+import Model.TopologySnapshot;
+
+/**
+ * Keeps the most recently used destination trees of a topology snapshot. A tree is
+ * built the first time a message needs its destination, and the least recently used
+ * tree is dropped once more than maxTrees are kept, so the memory used grows with the
+ * number of destinations in use rather than with the square of the number of routers.
+ * 
+ * The trees are not saved with the routers, a copied or loaded cache starts empty
+ * and builds its trees again as they are needed.
+ * 
+ * Routers of different partitions look up their next hops at the same time, so a tree
+ * that is kept is found without locking. Only building a tree is done one at a time, as
+ * the builder keeps its scratch space in fields.
+ */
+public class DestinationTreeCache implements Serializable {
+
+	private static final long serialVersionUID = 2975407180342181357L;
+
+	private final TopologySnapshot snapshot;
+	private final DestinationTreeBuilder builder;
+	private final int maxTrees;
+	private transient ConcurrentHashMap<Integer, Tree> trees;
+	// incremented each time a tree is built, trees are stamped with it when they are used
+	private transient volatile long clock;
+
+	/**
+	 * @param snapshot - the frozen adjacency of the network
+	 * @param builder - builds the trees of the routing algorithm
+	 * @param maxTrees - the number of trees kept at once, at least 1
+	 */
+	DestinationTreeCache(TopologySnapshot snapshot, DestinationTreeBuilder builder, int maxTrees) {
+		this.snapshot = snapshot;
+		this.builder = builder;
+		this.maxTrees = Math.max(1, maxTrees);
+		trees = new ConcurrentHashMap<Integer, Tree>();
+	}
+
+	/**
+	 * Returns the id of the next router a message goes to from a router, building
+	 * the tree of the destination if it is not cached
+	 * @param routerId - the id of the router the message is in
+	 * @param destination - the router the message is trying to reach
+	 * @return the id of the next router, or NextHopRoutingTable.NO_NEXT_HOP if the message does not go anywhere
+	 */
+	public int getNextHopId(int routerId, Router destination) {
+		int id = destination.getId();
+		// routers that were removed from the topology (or were never in it) have no route
+		if (id < 0 || id >= snapshot.getIdCapacity() || !destination.equals(snapshot.getRouter(id))) {
+			return NextHopRoutingTable.NO_NEXT_HOP;
+		}
+		return getTree(id)[routerId];
+	}
+
+	/**
+	 * @return the number of destination trees currently kept
+	 */
+	public int size() {
+		return trees.size();
+	}
+
+	/**
+	 * @return the snapshot the trees are built from
+	 */
+	public TopologySnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns the tree of a destination, building it if it is not cached and marking
+	 * it as used since the last tree was built
+	 * @param destination - the id of the destination router
+	 * @return the next router id of every router towards the destination
+	 */
+	private int[] getTree(int destination) {
+		Tree tree = trees.get(destination);
+		if (tree == null) {
+			tree = buildTree(destination);
+		}
+		tree.lastUsed = clock;
+		return tree.nextHops;
+	}
+
+	/**
+	 * Builds the tree of a destination, dropping the least recently used tree if the cache
+	 * is full. Trees used since the same tree was built are as recently used as each other.
+	 * @param destination - the id of the destination router
+	 * @return the tree of the destination
+	 */
+	private synchronized Tree buildTree(int destination) {
+		// another router may have built the tree while this one waited
+		Tree tree = trees.get(destination);
+		if (tree != null) {
+			return tree;
+		}
+		if (trees.size() >= maxTrees) {
+			Map.Entry<Integer, Tree> eldest = null;
+			for (Map.Entry<Integer, Tree> entry : trees.entrySet()) {
+				if (eldest == null || entry.getValue().lastUsed < eldest.getValue().lastUsed) {
+					eldest = entry;
+				}
+			}
+			trees.remove(eldest.getKey());
+		}
+		tree = new Tree(builder.buildTree(destination));
+		tree.lastUsed = ++clock;
+		trees.put(destination, tree);
+		return tree;
+	}
+
+	/**
+	 * Gives a copied or loaded cache its own empty trees (called by the serializers after
+	 * the fields have been read)
+	 * @return a cache of the same snapshot with no trees
+	 */
+	private Object readResolve() {
+		return new DestinationTreeCache(snapshot, builder, maxTrees);
+	}
+
+	/**
+	 * The next hops towards one destination, with the time it was last used
+	 */
+	private static class Tree {
+
+		private final int[] nextHops;
+		private volatile long lastUsed;
+
+		private Tree(int[] nextHops) {
+			this.nextHops = nextHops;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package Routing;
+
+import java.util.Arrays;
+
+import Model.TopologySnapshot;
+
+/**
+ * A DijkstraRoutingAlgorithm is a link state routing algorithm which directs messages
+ * from one router to a neighbouring router along the route with the lowest total link
+ * weight to the destination. The weights can model the cost or latency of each link, so
+ * the route taken may go through more routers than the shortest route by hops. This
+ * algorithm sets the routing tables for each router in a network topology. The routing
+ * tables only need to be set once and can be reevaluated if the topology is altered.
+ */
+public class DijkstraRoutingAlgorithm extends RoutingAlgorithm {
+
+	public static final String NAME = "Dijkstra Routing Algorithm";
+
+	/**
+	 * Lowest total link weight
+	 */
+	public DijkstraRoutingAlgorithm() {
+		super(false); // generate the routing tables once
+	}
+
+	/**
+	 * Creates a builder which sets the routing table of a router with Dijkstra's algorithm.
+	 * A single search is run from each router, which gives the next router for every
+	 * destination at once.
+	 *
+	 * @param snapshot - the frozen adjacency of the network
+	 */
+	@Override
+	protected RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot) {
+		return new DijkstraTableBuilder(snapshot);
+	}
+
+	/**
+	 * Creates a builder which runs Dijkstra's algorithm backwards from a destination,
+	 * giving the lowest weight route to it from every router at once.
+	 *
+	 * @param snapshot - the frozen adjacency of the network
+	 */
+	@Override
+	protected DestinationTreeBuilder createTreeBuilder(TopologySnapshot snapshot) {
+		return new DijkstraTreeBuilder(snapshot);
+	}
+
+	/**
+	 * Sets routing tables with a search from each source. A router's next router is recorded
+	 * whenever a lower route weight to it is found, as the first hop of the route it was
+	 * found through.
+	 */
+	private static class DijkstraTableBuilder implements RoutingTableBuilder {
+
+		private final TopologySnapshot snapshot;
+		private final RouterHeap heap;
+		private final int[] firstHops;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the network
+		 */
+		DijkstraTableBuilder(TopologySnapshot snapshot) {
+			this.snapshot = snapshot;
+			heap = new RouterHeap(snapshot.getIdCapacity());
+			firstHops = new int[snapshot.getIdCapacity()];
+		}
+
+		@Override
+		public void setTable(int source) {
+			int[] offsets = snapshot.getOffsets();
+			int[] neighbourIds = snapshot.getNeighbourIds();
+			double[] weights = snapshot.getWeights();
+
+			heap.reset();
+			heap.decrease(source, 0);
+			while (!heap.isEmpty()) {
+				int router = heap.poll();
+				double distance = heap.distance(router);
+				for (int i = offsets[router]; i < offsets[router + 1]; i++) {
+					int neighbour = neighbourIds[i];
+					if (heap.decrease(neighbour, distance + weights[i])) {
+						firstHops[neighbour] = router == source ? neighbour : firstHops[router];
+					}
+				}
+			}
+
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+			for (int destination : snapshot.getRouterIds()) {
+				if (destination != source && heap.isReached(destination)) {
+					nextHops[destination] = firstHops[destination];
+				}
+			}
+			snapshot.getRouter(source).setRoutingTable(new NextHopRoutingTable(snapshot.getRouters(), nextHops));
+		}
+	}
+
+	/**
+	 * Builds destination trees with Dijkstra's algorithm following the links backwards
+	 * from the destination. The next router of a router is the one its lowest weight
+	 * route to the destination continues through.
+	 */
+	private static class DijkstraTreeBuilder implements DestinationTreeBuilder {
+
+		private static final long serialVersionUID = 6841290712534009863L;
+
+		private final TopologySnapshot snapshot;
+		private final ReverseAdjacency reverse;
+		private transient RouterHeap heap;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the network
+		 */
+		DijkstraTreeBuilder(TopologySnapshot snapshot) {
+			this.snapshot = snapshot;
+			this.reverse = new ReverseAdjacency(snapshot);
+		}
+
+		@Override
+		public int[] buildTree(int destination) {
+			int[] offsets = reverse.getOffsets();
+			int[] sourceIds = reverse.getSourceIds();
+			int[] linkIndices = reverse.getLinkIndices();
+			double[] weights = snapshot.getWeights();
+			if (heap == null) {
+				heap = new RouterHeap(snapshot.getIdCapacity());
+			}
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+
+			heap.reset();
+			heap.decrease(destination, 0);
+			while (!heap.isEmpty()) {
+				int router = heap.poll();
+				double distance = heap.distance(router);
+				for (int i = offsets[router]; i < offsets[router + 1]; i++) {
+					int source = sourceIds[i];
+					if (heap.decrease(source, distance + weights[linkIndices[i]])) {
+						nextHops[source] = router;
+					}
+				}
+			}
+			return nextHops;
+		}
+	}
+}
@@ -1,10 +1,6 @@
 package Routing;
 
-import Model.NetworkTopology;
-import Model.Router;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import Model.TopologySnapshot;
 
 /**
  * A FloodingRoutingAlgorithm is a routing algorithm which directs messages
@@ -31,42 +27,20 @@ public class FloodingRoutingAlgorithm extends RoutingAlgorithm{
 	}
 
 	/**
-	 * Sets the routing tables for each router in a provided
-	 * network topology using the flooding routing algorithm. Needs to be
-	 * called only once and any time there is a change to the topology.
+	 * Creates a builder which sets the routing table of a router using
+	 * the flooding routing algorithm. Needs to be called only once and any
+	 * time there is a change to the topology. Every destination other than the
+	 * router itself is sent to all the neighbours, so the table shares its row of
+	 * the snapshot adjacency instead of storing anything per destination.
 	 *
-	 * @param topology - the network
+	 * @param snapshot - the frozen adjacency of the network
 	 */
 	@Override
-	protected void setTables(NetworkTopology topology) {
-
-		Router[] routers = topology.getRouters().toArray(new Router[]{});
-
-		// Set the routing table of each router in network topology
-		for (int i = 0; i < routers.length ; i++) {
-			HashMap<Router, HashSet<Router>> routingTable = new HashMap<>();
-			List<Router> neighbours = topology.getNeighbours(routers[i].getName());
-			int neighboursSize = neighbours.size();
-
-			// Build routing table, adding all routers from topology as "To"
-			// (message destination), and all neighbour routers as "Next"
-			// (next router message should be transferred to)
-			//
-			for (int j = 0 ; j < routers.length ; j++) {
-				if (i == j || neighboursSize == 0) {
-					// Current router is the message destination or current
-					// router has no neighbours, message does not go anywhere
-					//
-					routingTable.put(routers[j], null);
-				} else {
-					routingTable.put(routers[j], new HashSet<>(neighbours));
-				}
-			}
-
-			// Set the completed routing table to the router
-			//
-			routers[i].setRoutingTable(routingTable);
-		}
-
+	protected RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot) {
+		return source -> {
+			int[] offsets = snapshot.getOffsets();
+			snapshot.getRouter(source).setRoutingTable(new FloodingRoutingTable(snapshot.getRouters(), source,
+					snapshot.getNeighbourIds(), offsets[source], offsets[source + 1]));
+		};
 	}
 }
@@ -0,0 +1,52 @@
+package Routing;
+
+import Model.Router;
+import Model.RoutingTable;
+
+/**
+ * A routing table that forwards a message to every neighbour of the router, unless
+ * the router is the destination of the message. Every destination shares the same row
+ * of neighbour ids, which is a slice of the adjacency of the topology snapshot, so the
+ * table takes no memory per destination.
+ */
+public class FloodingRoutingTable implements RoutingTable {
+
+	private static final long serialVersionUID = 4377158032164693521L;
+
+	private final Router[] routers;
+	private final int routerId;
+	private final int[] neighbourIds;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Creates a flooding routing table for a router
+	 * @param routers - the routers indexed by id, shared with the topology snapshot
+	 * @param routerId - the id of the router the table belongs to
+	 * @param neighbourIds - the array containing the ids of the neighbours of the router
+	 * @param from - the index of the first neighbour id (inclusive)
+	 * @param to - the index of the last neighbour id (exclusive)
+	 */
+	public FloodingRoutingTable(Router[] routers, int routerId, int[] neighbourIds, int from, int to) {
+		this.routers = routers;
+		this.routerId = routerId;
+		this.neighbourIds = neighbourIds;
+		this.from = from;
+		this.to = to;
+	}
+
+	@Override
+	public int getNextHopCount(Router destination) {
+		int id = destination.getId();
+		// the message has arrived, or was sent to a router no longer in the topology
+		if (id == routerId || id < 0 || id >= routers.length || !destination.equals(routers[id])) {
+			return 0;
+		}
+		return to - from;
+	}
+
+	@Override
+	public Router getNextHop(Router destination, int index) {
+		return routers[neighbourIds[from + index]];
+	}
+}
@@ -0,0 +1,35 @@
+package Routing;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, used for the router ids collected while updating routing tables
+ */
+class IntList {
+
+	private int[] values = new int[8];
+	private int size;
+
+	void add(int value) {
+		if (size == values.length) {
+			values = Arrays.copyOf(values, size * 2);
+		}
+		values[size++] = value;
+	}
+
+	int get(int index) {
+		return values[index];
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	int[] toArray() {
+		return Arrays.copyOf(values, size);
+	}
+}
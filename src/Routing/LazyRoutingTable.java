@@ -0,0 +1,42 @@
+package Routing;
+
+import Model.Router;
+import Model.RoutingTable;
+
+/**
+ * A routing table that stores nothing per destination. The next router is read from the
+ * tree of the destination kept by a DestinationTreeCache shared by every router of the topology.
+ */
+public class LazyRoutingTable implements RoutingTable {
+
+	private static final long serialVersionUID = -6404853219476218377L;
+
+	private final DestinationTreeCache cache;
+	private final int routerId;
+
+	/**
+	 * @param cache - the trees shared by the routers of the topology
+	 * @param routerId - the id of the router the table belongs to
+	 */
+	public LazyRoutingTable(DestinationTreeCache cache, int routerId) {
+		this.cache = cache;
+		this.routerId = routerId;
+	}
+
+	/**
+	 * @return the trees shared by the routers of the topology
+	 */
+	public DestinationTreeCache getCache() {
+		return cache;
+	}
+
+	@Override
+	public int getNextHopCount(Router destination) {
+		return cache.getNextHopId(routerId, destination) == NextHopRoutingTable.NO_NEXT_HOP ? 0 : 1;
+	}
+
+	@Override
+	public Router getNextHop(Router destination, int index) {
+		return cache.getSnapshot().getRouter(cache.getNextHopId(routerId, destination));
+	}
+}
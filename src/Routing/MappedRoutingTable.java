@@ -0,0 +1,67 @@
+package Routing;
+
+import java.nio.IntBuffer;
+
+import Model.Router;
+import Model.RoutingTable;
+
+/**
+ * A routing table that forwards a message to at most one router, like NextHopRoutingTable,
+ * but reads the next router of each destination from a buffer mapped from a saved file.
+ * The table is not copied onto the heap: the pages of the file are read by the operating
+ * system when a destination is looked up, and dropped again when memory is needed.
+ */
+public class MappedRoutingTable implements RoutingTable {
+
+	private static final long serialVersionUID = 4611920117270683409L;
+
+	private final Router[] routers;
+	private final transient IntBuffer nextHops;
+
+	/**
+	 * Creates a routing table reading the ids of the next routers from a buffer
+	 * @param routers - the routers indexed by id
+	 * @param nextHops - the id of the next router for each destination id, or NextHopRoutingTable.NO_NEXT_HOP
+	 */
+	public MappedRoutingTable(Router[] routers, IntBuffer nextHops) {
+		this.routers = routers;
+		this.nextHops = nextHops;
+	}
+
+	/**
+	 * Returns the id of the next router for a destination
+	 * @param destination - the router the message is trying to reach
+	 * @return the id of the next router, or NextHopRoutingTable.NO_NEXT_HOP if the message does not go anywhere
+	 */
+	public int getNextHopId(Router destination) {
+		int id = destination.getId();
+		// routers that were removed from the topology (or were never in it) have no route
+		if (id < 0 || id >= nextHops.limit() || id >= routers.length || !destination.equals(routers[id])) {
+			return NextHopRoutingTable.NO_NEXT_HOP;
+		}
+		// the absolute get leaves the position alone, so tables can be read from several threads
+		int nextHop = nextHops.get(id);
+		return nextHop >= 0 && nextHop < routers.length ? nextHop : NextHopRoutingTable.NO_NEXT_HOP;
+	}
+
+	@Override
+	public int getNextHopCount(Router destination) {
+		return getNextHopId(destination) == NextHopRoutingTable.NO_NEXT_HOP ? 0 : 1;
+	}
+
+	@Override
+	public Router getNextHop(Router destination, int index) {
+		return routers[getNextHopId(destination)];
+	}
+
+	/**
+	 * The mapped buffer can't be written out, and copying it onto the heap would undo the point
+	 * of mapping it, so the table is left out when it is serialized, for instance when a copy of
+	 * the topology is kept for step back. The routing tables are built again once such a copy
+	 * is restored.
+	 * @return null, which is written in place of the table
+	 */
+	private Object writeReplace() {
+		return null;
+	}
+}
@@ -0,0 +1,56 @@
+package Routing;
+
+import Model.Router;
+import Model.RoutingTable;
+
+/**
+ * A routing table that forwards a message to at most one router. The next router
+ * of every destination is kept as a router id in an int array indexed by the id of
+ * the destination.
+ */
+public class NextHopRoutingTable implements RoutingTable {
+
+	private static final long serialVersionUID = -1207361598223117742L;
+
+	/**
+	 * Marks a destination that messages are not forwarded to
+	 */
+	public static final int NO_NEXT_HOP = -1;
+
+	private final Router[] routers;
+	private final int[] nextHops;
+
+	/**
+	 * Creates a routing table from the ids of the next routers
+	 * @param routers - the routers indexed by id, shared with the topology snapshot
+	 * @param nextHops - the id of the next router for each destination id, or NO_NEXT_HOP
+	 */
+	public NextHopRoutingTable(Router[] routers, int[] nextHops) {
+		this.routers = routers;
+		this.nextHops = nextHops;
+	}
+
+	/**
+	 * Returns the id of the next router for a destination
+	 * @param destination - the router the message is trying to reach
+	 * @return the id of the next router, or NO_NEXT_HOP if the message does not go anywhere
+	 */
+	public int getNextHopId(Router destination) {
+		int id = destination.getId();
+		// routers that were removed from the topology (or were never in it) have no route
+		if (id < 0 || id >= nextHops.length || id >= routers.length || !destination.equals(routers[id])) {
+			return NO_NEXT_HOP;
+		}
+		return nextHops[id];
+	}
+
+	@Override
+	public int getNextHopCount(Router destination) {
+		return getNextHopId(destination) == NO_NEXT_HOP ? 0 : 1;
+	}
+
+	@Override
+	public Router getNextHop(Router destination, int index) {
+		return routers[getNextHopId(destination)];
+	}
+}
@@ -1,11 +1,8 @@
 package Routing;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
 
-import Model.NetworkTopology;
-import Model.Router;
+import Model.TopologySnapshot;
 
 /**
  * A RandomRoutingAlgorithm is a routing algorithm which directs messages
@@ -23,6 +20,13 @@ public class RandomRoutingAlgorithm extends RoutingAlgorithm {
 
 	public static final String NAME = "Random Routing Algorithm";
 
+	// spreads the seeds of the random number generators of different routers apart
+	private static final long SEED_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private long tablesSeed;
+	// draws the seed of each set of tables once a seed was given, otherwise the time is used
+	private transient Random tablesSeeds;
+
 	/**
 	 * Sends message to any random neighbour router
 	 */
@@ -35,42 +39,54 @@ public class RandomRoutingAlgorithm extends RoutingAlgorithm {
 	 * network topology using the random routing algorithm. Must be called
 	 * before each simulation step or else a loop in the graph may exist and
 	 * it could be possible for a message to never reach its destination.
-	 * 
-	 * @param topology - the network
+	 *
+	 * @param snapshot - the frozen adjacency of the network
 	 */
 	@Override
-	protected void setTables(NetworkTopology topology) {
-		// Create a new random number generator with current time as the seed
-		Random random = new Random(System.currentTimeMillis());
+	protected void setTables(TopologySnapshot snapshot) {
+		// Use the current time as the seed of this set of tables, unless the algorithm was seeded
+		tablesSeed = tablesSeeds == null ? System.currentTimeMillis() : tablesSeeds.nextLong();
+		super.setTables(snapshot);
+	}
 
-		Router[] routers = topology.getRouters().toArray(new Router[]{});
+	@Override
+	public void setSeed(long seed) {
+		tablesSeeds = new Random(seed);
+	}
 
-		// Set the routing table of each router in network topology
-		for (int i = 0; i < routers.length ; i++) {
-			HashMap<Router, HashSet<Router>> routingTable = new HashMap<>();
-			List<Router> neighbours = topology.getNeighbours(routers[i].getName());
-			int neighboursSize = neighbours.size();
+	/**
+	 * Creates a builder which sets the routing table of a router using the
+	 * random routing algorithm. Every router draws from its own random number
+	 * generator, so the tables don't depend on which thread builds them.
+	 *
+	 * @param snapshot - the frozen adjacency of the network
+	 */
+	@Override
+	protected RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot) {
+		return source -> {
+			Random random = new Random(tablesSeed + SEED_MULTIPLIER * source);
+			int[] offsets = snapshot.getOffsets();
+			int[] neighbourIds = snapshot.getNeighbourIds();
+			int neighboursSize = snapshot.degree(source);
 
 			// Build routing table, adding all routers from topology as "To"
 			// (message destination), and a random neighbour router as "Next"
 			// (next router message should be transferred to)
-			for (int j = 0 ; j < routers.length ; j++) {
-				if (i == j || neighboursSize == 0) {
-					// Current router is the message destination or current
-					// router has no neighbours, message does not go anywhere
-					routingTable.put(routers[j], null);
-				} else {
+			int[] nextHops = new int[snapshot.getIdCapacity()];
+			Arrays.fill(nextHops, NextHopRoutingTable.NO_NEXT_HOP);
+			for (int destination : snapshot.getRouterIds()) {
+				// Current router is the message destination or current
+				// router has no neighbours, message does not go anywhere
+				if (destination != source && neighboursSize != 0) {
 					// Generate index of a random neighbour
 					int rndIndex = random.nextInt(neighboursSize);
-					HashSet<Router> randomNeighbourSet = new HashSet<>();
-					randomNeighbourSet.add(neighbours.get(rndIndex));
 					// Store random neighbour as next router
-					routingTable.put(routers[j], randomNeighbourSet);
+					nextHops[destination] = neighbourIds[offsets[source] + rndIndex];
 				}
 			}
 
 			// Set the completed routing table to the router
-			routers[i].setRoutingTable(routingTable);
-		}
+			snapshot.getRouter(source).setRoutingTable(new NextHopRoutingTable(snapshot.getRouters(), nextHops));
+		};
 	}
 }
@@ -0,0 +1,78 @@
+package Routing;
+
+import java.io.Serializable;
+
+import Model.TopologySnapshot;
+
+/**
+ * The links of a topology snapshot grouped by the router they point to. The routers
+ * linking to router i are the ids stored in sourceIds[offsets[i]] up to (but excluding)
+ * sourceIds[offsets[i + 1]]. Destination trees are built by searching backwards from
+ * the destination along these links.
+ */
+class ReverseAdjacency implements Serializable {
+
+	private static final long serialVersionUID = -4125873006641826620L;
+
+	private final int[] offsets;
+	private final int[] sourceIds;
+	private final int[] linkIndices;
+
+	/**
+	 * Builds the reverse links of a snapshot, keeping the routers linking to the same
+	 * router in ascending id order
+	 * @param snapshot - the frozen adjacency of the network
+	 */
+	ReverseAdjacency(TopologySnapshot snapshot) {
+		int capacity = snapshot.getIdCapacity();
+		int[] forwardOffsets = snapshot.getOffsets();
+		int[] neighbourIds = snapshot.getNeighbourIds();
+
+		// count the links pointing to each router, then turn the counts into offsets
+		offsets = new int[capacity + 1];
+		for (int neighbourId : neighbourIds) {
+			offsets[neighbourId + 1]++;
+		}
+		for (int id = 0; id < capacity; id++) {
+			offsets[id + 1] += offsets[id];
+		}
+
+		int[] next = new int[capacity];
+		System.arraycopy(offsets, 0, next, 0, capacity);
+		sourceIds = new int[neighbourIds.length];
+		linkIndices = new int[neighbourIds.length];
+		for (int source : snapshot.getRouterIds()) {
+			for (int i = forwardOffsets[source]; i < forwardOffsets[source + 1]; i++) {
+				int j = next[neighbourIds[i]]++;
+				sourceIds[j] = source;
+				linkIndices[j] = i;
+			}
+		}
+	}
+
+	/**
+	 * The row offsets of the reverse links. The returned array is shared and must not be modified.
+	 * @return the offsets, one more than the id capacity of the snapshot
+	 */
+	int[] getOffsets() {
+		return offsets;
+	}
+
+	/**
+	 * The ids of the routers linking to every router, one row after the other. The returned
+	 * array is shared and must not be modified.
+	 * @return the source ids
+	 */
+	int[] getSourceIds() {
+		return sourceIds;
+	}
+
+	/**
+	 * The index of each reverse link in the neighbour ids (and weights) of the snapshot. The
+	 * returned array is shared and must not be modified.
+	 * @return the link indices, in the same order as getSourceIds()
+	 */
+	int[] getLinkIndices() {
+		return linkIndices;
+	}
+}
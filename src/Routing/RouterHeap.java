@@ -0,0 +1,131 @@
+package Routing;
+
+/**
+ * An indexed binary min-heap of router ids keyed by their distance from the start of a
+ * search, kept in primitive arrays so a search allocates nothing. The distance of a router
+ * already in the heap can be lowered in place. A new stamp on reset() marks every router as
+ * not reached without clearing the arrays.
+ */
+class RouterHeap {
+
+	private final int[] heap;
+	private final int[] positions;
+	private final double[] distances;
+	private final int[] reachedStamps;
+	private int stamp;
+	private int size;
+
+	// position of a router that has been polled from the heap
+	private static final int POLLED = -1;
+
+	/**
+	 * @param capacity - the number of router ids
+	 */
+	RouterHeap(int capacity) {
+		heap = new int[capacity];
+		positions = new int[capacity];
+		distances = new double[capacity];
+		reachedStamps = new int[capacity];
+	}
+
+	/**
+	 * Empties the heap and marks every router as not reached
+	 */
+	void reset() {
+		stamp++;
+		size = 0;
+	}
+
+	/**
+	 * @return true if there are no routers left to poll
+	 */
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param router - the id of a router
+	 * @return true if a distance has been set for the router since the last reset
+	 */
+	boolean isReached(int router) {
+		return reachedStamps[router] == stamp;
+	}
+
+	/**
+	 * @param router - the id of a reached router
+	 * @return the lowest distance found for the router
+	 */
+	double distance(int router) {
+		return distances[router];
+	}
+
+	/**
+	 * Sets the distance of a router if it was not reached yet or the distance is lower than
+	 * the one it has. Routers that were already polled keep their distance.
+	 * @param router - the id of the router
+	 * @param distance - the distance found for the router
+	 * @return true if the distance of the router was set
+	 */
+	boolean decrease(int router, double distance) {
+		if (reachedStamps[router] != stamp) {
+			reachedStamps[router] = stamp;
+			distances[router] = distance;
+			positions[router] = size;
+			heap[size++] = router;
+		} else if (positions[router] != POLLED && distance < distances[router]) {
+			distances[router] = distance;
+		} else {
+			return false;
+		}
+		siftUp(positions[router]);
+		return true;
+	}
+
+	/**
+	 * Removes the router with the lowest distance from the heap
+	 * @return the id of the router
+	 */
+	int poll() {
+		int router = heap[0];
+		positions[router] = POLLED;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return router;
+	}
+
+	private void siftUp(int position) {
+		int router = heap[position];
+		double distance = distances[router];
+		while (position > 0) {
+			int parent = (position - 1) >>> 1;
+			if (distances[heap[parent]] <= distance) break;
+			heap[position] = heap[parent];
+			positions[heap[position]] = position;
+			position = parent;
+		}
+		heap[position] = router;
+		positions[router] = position;
+	}
+
+	private void siftDown(int position) {
+		int router = heap[position];
+		double distance = distances[router];
+		int half = size >>> 1;
+		while (position < half) {
+			int child = 2 * position + 1;
+			if (child + 1 < size && distances[heap[child + 1]] < distances[heap[child]]) {
+				child++;
+			}
+			if (distances[heap[child]] >= distance) break;
+			heap[position] = heap[child];
+			positions[heap[position]] = position;
+			position = child;
+		}
+		heap[position] = router;
+		positions[router] = position;
+	}
+}
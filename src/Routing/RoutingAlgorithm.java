@@ -1,8 +1,12 @@
 package Routing;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 import Model.NetworkTopology;
+import Model.TopologySnapshot;
 
 /**
  * A RoutingAlgorithm is used to determine the path a message must take to
@@ -15,17 +19,59 @@ import Model.NetworkTopology;
 public abstract class RoutingAlgorithm {
 
 	public static final Map<String, RoutingAlgorithm> INSTANCES;
+	// creates a new algorithm of each kind listed in INSTANCES, by name
+	private static final Map<String, Supplier<RoutingAlgorithm>> FACTORIES;
 
 	static {
 		INSTANCES = new HashMap<>();
-		INSTANCES.put(RandomRoutingAlgorithm.NAME, new RandomRoutingAlgorithm());
-		INSTANCES.put(FloodingRoutingAlgorithm.NAME, new FloodingRoutingAlgorithm());
-		INSTANCES.put(BreadthFirstSearchRoutingAlgorithm.NAME, new BreadthFirstSearchRoutingAlgorithm());
-		INSTANCES.put(DepthFirstSearchRoutingAlgorithm.NAME , new DepthFirstSearchRoutingAlgorithm());
+		FACTORIES = new HashMap<>();
+		register(RandomRoutingAlgorithm.NAME, RandomRoutingAlgorithm::new);
+		register(FloodingRoutingAlgorithm.NAME, FloodingRoutingAlgorithm::new);
+		register(BreadthFirstSearchRoutingAlgorithm.NAME, BreadthFirstSearchRoutingAlgorithm::new);
+		register(DepthFirstSearchRoutingAlgorithm.NAME, DepthFirstSearchRoutingAlgorithm::new);
+		register(DijkstraRoutingAlgorithm.NAME, DijkstraRoutingAlgorithm::new);
 	}
 
+	/**
+	 * Lists a kind of algorithm in INSTANCES, and keeps the way to create new ones
+	 * @param name - the name the algorithm is listed under
+	 * @param factory - creates a new algorithm of the kind
+	 */
+	private static void register(String name, Supplier<RoutingAlgorithm> factory) {
+		INSTANCES.put(name, factory.get());
+		FACTORIES.put(name, factory);
+	}
+
+	/**
+	 * @param algorithm - a routing algorithm
+	 * @return the name the kind of algorithm is listed under in INSTANCES, or null if it isn't listed
+	 */
+	public static String getName(RoutingAlgorithm algorithm) {
+		for (Map.Entry<String, RoutingAlgorithm> entry : INSTANCES.entrySet()) {
+			if (algorithm != null && entry.getValue().getClass() == algorithm.getClass()) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Creates a new algorithm of a listed kind, which sets the routing tables the first time it is used
+	 * @param name - the name the algorithm is listed under in INSTANCES
+	 * @return the new algorithm, or null if no algorithm is listed under the name
+	 */
+	public static RoutingAlgorithm newInstance(String name) {
+		Supplier<RoutingAlgorithm> factory = name == null ? null : FACTORIES.get(name);
+		return factory == null ? null : factory.get();
+	}
+
+	// below this many routers the tables are always built on the calling thread
+	private static final int PARALLEL_THRESHOLD = 64;
+
 	private boolean didSet;
 	private boolean isResettable;
+	private transient ForkJoinPool pool;
+	private transient int lazyCacheSize;
 
 	/**
 	 * Default constructor. The algorithm will only allow the
@@ -59,7 +105,7 @@ public abstract class RoutingAlgorithm {
 		// resettable algorithm or this is the first time setting
 		// the routing tables.
 		if (!didSet || isResettable) {
-			setTables(topology);
+			setTables(topology.getSnapshot());
 			didSet = true;
 		}
 	}
@@ -75,9 +121,184 @@ public abstract class RoutingAlgorithm {
 	}
 
 	/**
-	 * Sets the routing tables for each router in a provided
-	 * network topology using a specific algorithm.
+	 * Marks the routing tables as set after they were restored with the routers of a saved
+	 * file, so that an algorithm that can't be reset does not build them again.
+	 */
+	public void routingTablesRestored() {
+		didSet = true;
+	}
+
+	/**
+	 * Updates the routing tables after the topology was edited. Algorithms that can tell
+	 * which routing tables an edit changes only rebuild those, the others rebuild every table.
 	 * @param topology - the network
 	 */
-	protected abstract void setTables(NetworkTopology topology);
+	public void updateRoutingTables(NetworkTopology topology) {
+		TopologySnapshot snapshot = topology.getSnapshot();
+		if (!updateTables(snapshot)) {
+			setTables(snapshot);
+		}
+		didSet = true;
+	}
+
+	/**
+	 * Sets the pool used to build the routing tables of different routers in parallel.
+	 * @param pool - the pool to split the routers across, or null to build every table on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the pool the routing tables are built on, or null if they are built on the calling thread
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Seeds the random choices made when the routing tables are set, so that the same
+	 * tables are set every time. Algorithms that make no random choices ignore the seed.
+	 * @param seed - the seed of the random choices
+	 */
+	public void setSeed(long seed) {
+	}
+
+	/**
+	 * Sets how many destination trees are kept when the algorithm supports lazy routing tables.
+	 * Lazy tables only build the routes to a destination when a message needs them, which
+	 * saves memory when messages go to few destinations of a large topology. The setting
+	 * takes effect the next time the routing tables are set.
+	 * @param lazyCacheSize - the number of destination trees to keep, or 0 to build every table up front
+	 */
+	public void setLazyCacheSize(int lazyCacheSize) {
+		this.lazyCacheSize = Math.max(0, lazyCacheSize);
+	}
+
+	/**
+	 * @return the number of destination trees kept by lazy routing tables, 0 if they are not used
+	 */
+	public int getLazyCacheSize() {
+		return lazyCacheSize;
+	}
+
+	/**
+	 * Sets the routing tables for each router in a provided
+	 * network topology using a specific algorithm. The routers are split
+	 * across the pool if one was set. If a lazy cache size was set and the
+	 * algorithm can build destination trees, every router gets a lazy table
+	 * sharing one cache instead.
+	 * @param snapshot - the frozen adjacency of the network, built once per topology version
+	 */
+	protected void setTables(TopologySnapshot snapshot) {
+		DestinationTreeBuilder treeBuilder = lazyCacheSize > 0 ? createTreeBuilder(snapshot) : null;
+		if (treeBuilder != null) {
+			DestinationTreeCache cache = new DestinationTreeCache(snapshot, treeBuilder, lazyCacheSize);
+			for (int id : snapshot.getRouterIds()) {
+				snapshot.getRouter(id).setRoutingTable(new LazyRoutingTable(cache, id));
+			}
+		} else {
+			setTables(snapshot, snapshot.getRouterIds());
+		}
+	}
+
+	/**
+	 * Sets the routing tables of some of the routers in a snapshot, splitting them
+	 * across the pool if one was set.
+	 * @param snapshot - the frozen adjacency of the network
+	 * @param routerIds - the ids of the routers whose tables are set
+	 */
+	protected void setTables(TopologySnapshot snapshot, int[] routerIds) {
+		if (pool == null || routerIds.length < PARALLEL_THRESHOLD) {
+			setTables(createTableBuilder(snapshot), routerIds, 0, routerIds.length);
+		} else {
+			// invoke() only returns once every task has completed, which also makes the
+			// tables set by the worker threads visible to the calling thread
+			int batchSize = Math.max(1, routerIds.length / (pool.getParallelism() * 4));
+			pool.invoke(new SetTablesTask(snapshot, routerIds, 0, routerIds.length, batchSize));
+		}
+	}
+
+	/**
+	 * Updates the routing tables of the routers affected by the edits made since the
+	 * tables were last set or updated.
+	 * @param snapshot - the frozen adjacency of the edited network
+	 * @return true if the tables were updated, false if every table has to be set again
+	 */
+	protected boolean updateTables(TopologySnapshot snapshot) {
+		return false;
+	}
+
+	/**
+	 * Sets the routing tables of a range of routers with one builder
+	 * @param builder - the builder to set the tables with
+	 * @param routerIds - the ids of the routers
+	 * @param from - the index of the first router id (inclusive)
+	 * @param to - the index of the last router id (exclusive)
+	 */
+	private static void setTables(RoutingTableBuilder builder, int[] routerIds, int from, int to) {
+		for (int i = from; i < to; i++) {
+			builder.setTable(routerIds[i]);
+		}
+	}
+
+	/**
+	 * Creates a builder that sets routing tables using a specific algorithm. A new
+	 * builder is created for each thread that builds tables, so builders can keep
+	 * their scratch space in fields.
+	 * @param snapshot - the frozen adjacency of the network
+	 * @return a builder for the routing tables of the routers in the snapshot
+	 */
+	protected abstract RoutingTableBuilder createTableBuilder(TopologySnapshot snapshot);
+
+	/**
+	 * Creates a builder for the routes of every router towards one destination. Only
+	 * algorithms whose route to a destination does not depend on where the message
+	 * started can build these trees.
+	 * @param snapshot - the frozen adjacency of the network
+	 * @return a builder for destination trees, or null if the algorithm can't use lazy routing tables
+	 */
+	protected DestinationTreeBuilder createTreeBuilder(TopologySnapshot snapshot) {
+		return null;
+	}
+
+	/**
+	 * Splits a range of routers in half until it is small enough to be built by one builder
+	 */
+	private class SetTablesTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2938481027318455913L;
+
+		private final TopologySnapshot snapshot;
+		private final int[] routerIds;
+		private final int from;
+		private final int to;
+		private final int batchSize;
+
+		/**
+		 * @param snapshot - the frozen adjacency of the network
+		 * @param routerIds - the ids of the routers whose tables are set
+		 * @param from - the index of the first router id (inclusive)
+		 * @param to - the index of the last router id (exclusive)
+		 * @param batchSize - the number of routers below which the range is not split further
+		 */
+		SetTablesTask(TopologySnapshot snapshot, int[] routerIds, int from, int to, int batchSize) {
+			this.snapshot = snapshot;
+			this.routerIds = routerIds;
+			this.from = from;
+			this.to = to;
+			this.batchSize = batchSize;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= batchSize) {
+				setTables(createTableBuilder(snapshot), routerIds, from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SetTablesTask(snapshot, routerIds, from, middle, batchSize),
+						new SetTablesTask(snapshot, routerIds, middle, to, batchSize));
+			}
+		}
+	}
 }
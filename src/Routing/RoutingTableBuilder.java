@@ -0,0 +1,16 @@
+package Routing;
+
+/**
+ * Builds the routing tables of single routers for a routing algorithm. A builder
+ * owns whatever scratch space its algorithm needs and is only ever used by one
+ * thread, so algorithms can build the tables of different routers in parallel by
+ * giving each thread its own builder.
+ */
+interface RoutingTableBuilder {
+
+	/**
+	 * Builds and sets the routing table of one router
+	 * @param source - the id of the router whose routing table is set
+	 */
+	void setTable(int source);
+}
@@ -0,0 +1,456 @@
+package Routing;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import Model.TopologySnapshot;
+
+/**
+ * The hop distances and next routers between every pair of routers, kept so that
+ * breadth first routing tables can be updated after an edit instead of being set again.
+ *
+ * The next router a breadth first search from s picks for a destination d is the first
+ * neighbour of s, in the order the neighbours were added, that is one hop closer to d
+ * than s is. So after an edit only the distances to each destination that actually
+ * changed are repaired, and only the table entries of the routers whose distance, or
+ * whose neighbours' distance, changed are looked up again.
+ */
+class ShortestPathTables {
+
+	// the distance of a router that can't reach the destination
+	static final int UNREACHED = Integer.MAX_VALUE;
+
+	private TopologySnapshot snapshot;
+	private int[][] distances;
+	private int[][] nextHops;
+
+	// scratch space for the repairs
+	private ReverseAdjacency reverse;
+	private int[] affectedStamps;
+	private int[] lookedUpStamps;
+	private int stamp;
+	private final LevelQueue queue = new LevelQueue();
+	private final IntList lost = new IntList();
+	private final IntList changed = new IntList();
+
+	/**
+	 * Creates empty tables, each row is filled in by setRow()
+	 * @param snapshot - the frozen adjacency the rows are built from
+	 */
+	ShortestPathTables(TopologySnapshot snapshot) {
+		this.snapshot = snapshot;
+		distances = new int[snapshot.getIdCapacity()][];
+		nextHops = new int[snapshot.getIdCapacity()][];
+	}
+
+	/**
+	 * Stores the distances and next routers from one router. Rows of different routers
+	 * may be set from different threads.
+	 * @param source - the id of the router
+	 * @param sourceDistances - the hop distance to every router id, UNREACHED if it can't be reached
+	 * @param sourceNextHops - the next router for every router id, NextHopRoutingTable.NO_NEXT_HOP if there is none
+	 */
+	void setRow(int source, int[] sourceDistances, int[] sourceNextHops) {
+		distances[source] = sourceDistances;
+		nextHops[source] = sourceNextHops;
+	}
+
+	/**
+	 * @param source - the id of the router
+	 * @return the next router for every router id, NextHopRoutingTable.NO_NEXT_HOP if there is none
+	 */
+	int[] getNextHops(int source) {
+		return nextHops[source];
+	}
+
+	/**
+	 * Repairs the tables for the edits between the snapshot they were built from and a
+	 * new one. An added router starts with no links, its links are then added like any
+	 * other. The tables can't be repaired if a router was removed and another one added
+	 * under its id by the same edits, so they have to be built again.
+	 * @param after - the frozen adjacency of the edited network
+	 * @return true if the tables were repaired, false if they have to be built again
+	 */
+	boolean update(TopologySnapshot after) {
+		TopologySnapshot before = snapshot;
+		TopologyDiff diff = new TopologyDiff(before, after);
+		if (diff.isEmpty()) {
+			snapshot = after;
+			return true;
+		}
+		int[] removedRouterIds = diff.getRemovedRouterIds();
+		int[] addedRouterIds = diff.getAddedRouterIds();
+		int capacity = after.getIdCapacity();
+		boolean[] isAdded = new boolean[capacity];
+		for (int id : addedRouterIds) {
+			isAdded[id] = true;
+		}
+		for (int id : removedRouterIds) {
+			if (id < capacity && isAdded[id]) return false;
+		}
+
+		// a removed router takes the links to it away, the links from it can't be used any more anyway
+		IntList deletedLinks = new IntList();
+		IntList editedRouters = new IntList();
+		for (int link : diff.getRemovedLinks()) {
+			deletedLinks.add(link);
+		}
+		if (removedRouterIds.length > 0) {
+			ReverseAdjacency beforeReverse = new ReverseAdjacency(before);
+			for (int id : removedRouterIds) {
+				for (int i = beforeReverse.getOffsets()[id]; i < beforeReverse.getOffsets()[id + 1]; i++) {
+					int router = beforeReverse.getSourceIds()[i];
+					if (before.getRouter(router) == after.getRouter(router)) {
+						deletedLinks.add(router);
+						deletedLinks.add(id);
+					}
+				}
+			}
+		}
+		IntList insertedLinks = new IntList();
+		for (int link : diff.getAddedLinks()) {
+			insertedLinks.add(link);
+		}
+		for (int id : addedRouterIds) {
+			for (int i = after.getOffsets()[id]; i < after.getOffsets()[id + 1]; i++) {
+				insertedLinks.add(id);
+				insertedLinks.add(after.getNeighbourIds()[i]);
+			}
+			// the router has no route anywhere until its links are added
+			editedRouters.add(id);
+		}
+		Set<Long> insertedKeys = new HashSet<>();
+		for (int i = 0; i < insertedLinks.size(); i += 2) {
+			insertedKeys.add(linkKey(insertedLinks.get(i), insertedLinks.get(i + 1)));
+		}
+
+		snapshot = after;
+		reverse = new ReverseAdjacency(after);
+		if (distances.length < capacity) {
+			distances = Arrays.copyOf(distances, capacity);
+			nextHops = Arrays.copyOf(nextHops, capacity);
+		}
+		affectedStamps = new int[capacity];
+		lookedUpStamps = new int[capacity];
+		stamp = 0;
+		for (int id : addedRouterIds) {
+			int[] row = new int[capacity];
+			Arrays.fill(row, UNREACHED);
+			row[id] = 0;
+			distances[id] = row;
+			int[] hops = new int[capacity];
+			Arrays.fill(hops, NextHopRoutingTable.NO_NEXT_HOP);
+			nextHops[id] = hops;
+		}
+
+		// the rows of the removed routers are still in place, the links to them are checked against their old distance
+		int[] routerIds = after.getRouterIds();
+		for (int destination : routerIds) {
+			changed.clear();
+			repairDeletions(destination, deletedLinks, insertedKeys);
+			repairInsertions(destination, insertedLinks);
+			int lookedUp = ++stamp;
+			for (int c = 0; c < changed.size(); c++) {
+				int router = changed.get(c);
+				lookUpNextHop(router, destination, lookedUp);
+				for (int i = reverse.getOffsets()[router]; i < reverse.getOffsets()[router + 1]; i++) {
+					lookUpNextHop(reverse.getSourceIds()[i], destination, lookedUp);
+				}
+			}
+		}
+		for (int id : removedRouterIds) {
+			distances[id] = null;
+			nextHops[id] = null;
+			clearColumn(id);
+		}
+
+		// the routers that gained, lost or reordered neighbours may now pick another one for any destination
+		for (int i = 0; i < insertedLinks.size(); i += 2) {
+			editedRouters.add(insertedLinks.get(i));
+		}
+		for (int i = 0; i < deletedLinks.size(); i += 2) {
+			editedRouters.add(deletedLinks.get(i));
+		}
+		for (int id : diff.getReorderedRouterIds()) {
+			editedRouters.add(id);
+		}
+		int edited = ++stamp;
+		for (int e = 0; e < editedRouters.size(); e++) {
+			int router = editedRouters.get(e);
+			if (lookedUpStamps[router] == edited) continue;
+			lookedUpStamps[router] = edited;
+			for (int destination : routerIds) {
+				setNextHop(router, destination);
+			}
+		}
+		reverse = null;
+		affectedStamps = null;
+		lookedUpStamps = null;
+		return true;
+	}
+
+	/**
+	 * Finds the routers whose distance to a destination grows because of the deleted
+	 * links and works their distance out again. A router loses its distance when none of
+	 * its remaining neighbours is one hop closer; routers are checked closest first so
+	 * that the neighbours they rely on have already been checked.
+	 */
+	private void repairDeletions(int destination, IntList deletedLinks, Set<Long> insertedKeys) {
+		queue.clear();
+		for (int i = 0; i < deletedLinks.size(); i += 2) {
+			int router = deletedLinks.get(i);
+			int distance = distanceOf(router, destination);
+			if (router != destination && distance != UNREACHED
+					&& distance == distanceOf(deletedLinks.get(i + 1), destination) + 1) {
+				queue.addSeed(entry(distance, router));
+			}
+		}
+		if (queue.isEmpty()) return;
+
+		int affected = ++stamp;
+		int[] offsets = snapshot.getOffsets();
+		int[] neighbourIds = snapshot.getNeighbourIds();
+		lost.clear();
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int distance = (int) (entry >>> 32);
+			int router = (int) entry;
+			if (affectedStamps[router] == affected) continue;
+			boolean supported = false;
+			for (int i = offsets[router]; i < offsets[router + 1] && !supported; i++) {
+				int neighbour = neighbourIds[i];
+				supported = affectedStamps[neighbour] != affected && distanceOf(neighbour, destination) == distance - 1
+						&& !isInserted(insertedKeys, router, neighbour);
+			}
+			if (!supported) {
+				affectedStamps[router] = affected;
+				lost.add(router);
+				for (int i = reverse.getOffsets()[router]; i < reverse.getOffsets()[router + 1]; i++) {
+					int previous = reverse.getSourceIds()[i];
+					if (affectedStamps[previous] != affected && distanceOf(previous, destination) == distance + 1
+							&& !isInserted(insertedKeys, previous, router)) {
+						queue.push(entry(distance + 1, previous));
+					}
+				}
+			}
+		}
+
+		// the routers that lost their distance start from their best neighbour that kept its distance
+		for (int l = 0; l < lost.size(); l++) {
+			setDistance(lost.get(l), destination, UNREACHED);
+		}
+		queue.clear();
+		for (int l = 0; l < lost.size(); l++) {
+			int router = lost.get(l);
+			int best = UNREACHED;
+			for (int i = offsets[router]; i < offsets[router + 1]; i++) {
+				int neighbour = neighbourIds[i];
+				int distance = distanceOf(neighbour, destination);
+				if (distance != UNREACHED && distance + 1 < best && !isInserted(insertedKeys, router, neighbour)) {
+					best = distance + 1;
+				}
+			}
+			if (best != UNREACHED) {
+				setDistance(router, destination, best);
+				queue.addSeed(entry(best, router));
+			}
+		}
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int distance = (int) (entry >>> 32);
+			int router = (int) entry;
+			if (distance != distanceOf(router, destination)) continue;
+			for (int i = reverse.getOffsets()[router]; i < reverse.getOffsets()[router + 1]; i++) {
+				int previous = reverse.getSourceIds()[i];
+				if (affectedStamps[previous] == affected && distance + 1 < distanceOf(previous, destination)
+						&& !isInserted(insertedKeys, previous, router)) {
+					setDistance(previous, destination, distance + 1);
+					queue.push(entry(distance + 1, previous));
+				}
+			}
+		}
+		for (int l = 0; l < lost.size(); l++) {
+			changed.add(lost.get(l));
+		}
+	}
+
+	/**
+	 * Shortens the distances to a destination through the inserted links, then through
+	 * every router that can now reach the destination faster.
+	 */
+	private void repairInsertions(int destination, IntList insertedLinks) {
+		queue.clear();
+		for (int i = 0; i < insertedLinks.size(); i += 2) {
+			int router = insertedLinks.get(i);
+			int distance = distanceOf(insertedLinks.get(i + 1), destination);
+			if (router != destination && distance != UNREACHED && distance + 1 < distanceOf(router, destination)) {
+				setDistance(router, destination, distance + 1);
+				queue.addSeed(entry(distance + 1, router));
+			}
+		}
+		while (!queue.isEmpty()) {
+			long entry = queue.poll();
+			int distance = (int) (entry >>> 32);
+			int router = (int) entry;
+			if (distance != distanceOf(router, destination)) continue;
+			changed.add(router);
+			for (int i = reverse.getOffsets()[router]; i < reverse.getOffsets()[router + 1]; i++) {
+				int previous = reverse.getSourceIds()[i];
+				if (previous != destination && distance + 1 < distanceOf(previous, destination)) {
+					setDistance(previous, destination, distance + 1);
+					queue.push(entry(distance + 1, previous));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Looks up the next router of a router towards a destination again, unless it was
+	 * already looked up since the stamp was taken
+	 */
+	private void lookUpNextHop(int router, int destination, int lookedUp) {
+		if (lookedUpStamps[router] != lookedUp) {
+			lookedUpStamps[router] = lookedUp;
+			setNextHop(router, destination);
+		}
+	}
+
+	/**
+	 * Looks up the next router of a router towards a destination again: the first of its
+	 * neighbours that is one hop closer to the destination
+	 */
+	private void setNextHop(int router, int destination) {
+		int distance = distanceOf(router, destination);
+		int nextHop = NextHopRoutingTable.NO_NEXT_HOP;
+		if (router != destination && distance != UNREACHED) {
+			int[] offsets = snapshot.getOffsets();
+			int[] neighbourIds = snapshot.getNeighbourIds();
+			for (int i = offsets[router]; i < offsets[router + 1]; i++) {
+				int neighbour = neighbourIds[i];
+				if (neighbour != router && distanceOf(neighbour, destination) == distance - 1) {
+					nextHop = neighbour;
+					break;
+				}
+			}
+		}
+		int[] hops = nextHops[router];
+		if (destination >= hops.length) {
+			if (nextHop == NextHopRoutingTable.NO_NEXT_HOP) return;
+			hops = grow(hops, NextHopRoutingTable.NO_NEXT_HOP);
+			nextHops[router] = hops;
+		}
+		hops[destination] = nextHop;
+	}
+
+	/**
+	 * Marks the id of a removed router as unreachable in every row, so the id can be given to another router
+	 */
+	private void clearColumn(int id) {
+		for (int router : snapshot.getRouterIds()) {
+			if (id < distances[router].length) {
+				distances[router][id] = UNREACHED;
+			}
+			if (id < nextHops[router].length) {
+				nextHops[router][id] = NextHopRoutingTable.NO_NEXT_HOP;
+			}
+		}
+	}
+
+	private int distanceOf(int router, int destination) {
+		int[] row = distances[router];
+		return destination < row.length ? row[destination] : UNREACHED;
+	}
+
+	private void setDistance(int router, int destination, int distance) {
+		int[] row = distances[router];
+		if (destination >= row.length) {
+			if (distance == UNREACHED) return;
+			row = grow(row, UNREACHED);
+			distances[router] = row;
+		}
+		row[destination] = distance;
+	}
+
+	/**
+	 * Copies a row into one covering every id of the snapshot, filling the new ids with a value.
+	 * Some room is left for the routers added next so every row isn't copied for each one.
+	 */
+	private int[] grow(int[] row, int value) {
+		int capacity = snapshot.getIdCapacity();
+		int[] grown = Arrays.copyOf(row, capacity + capacity / 8 + 1);
+		Arrays.fill(grown, row.length, grown.length, value);
+		return grown;
+	}
+
+	private static boolean isInserted(Set<Long> insertedKeys, int router, int neighbour) {
+		return !insertedKeys.isEmpty() && insertedKeys.contains(linkKey(router, neighbour));
+	}
+
+	private static long linkKey(int router, int neighbour) {
+		return ((long) router << 32) | (neighbour & 0xffffffffL);
+	}
+
+	/**
+	 * Packs a distance and a router id so that entries sort by distance
+	 */
+	private static long entry(int distance, int router) {
+		return ((long) distance << 32) | router;
+	}
+
+	/**
+	 * Hands out entries closest first. The seeds can come in any order, but entries
+	 * pushed once polling has started must never be closer than the last entry polled,
+	 * which holds for distances that grow by one hop at a time. Both are merged without
+	 * a heap.
+	 */
+	private static class LevelQueue {
+
+		private long[] seeds = new long[16];
+		private int seedCount;
+		private int seedHead;
+		private boolean sorted;
+		private long[] pushed = new long[16];
+		private int pushedHead;
+		private int pushedTail;
+
+		void clear() {
+			seedCount = 0;
+			seedHead = 0;
+			sorted = false;
+			pushedHead = 0;
+			pushedTail = 0;
+		}
+
+		void addSeed(long entry) {
+			if (seedCount == seeds.length) {
+				seeds = Arrays.copyOf(seeds, seedCount * 2);
+			}
+			seeds[seedCount++] = entry;
+		}
+
+		void push(long entry) {
+			if (pushedTail == pushed.length) {
+				pushed = Arrays.copyOf(pushed, pushedTail * 2);
+			}
+			pushed[pushedTail++] = entry;
+		}
+
+		boolean isEmpty() {
+			return seedHead == seedCount && pushedHead == pushedTail;
+		}
+
+		long poll() {
+			if (!sorted) {
+				Arrays.sort(seeds, 0, seedCount);
+				sorted = true;
+			}
+			// only the distance part decides, entries of the same distance can come in any order
+			if (pushedHead == pushedTail
+					|| (seedHead < seedCount && (seeds[seedHead] >>> 32) <= (pushed[pushedHead] >>> 32))) {
+				return seeds[seedHead++];
+			}
+			return pushed[pushedHead++];
+		}
+	}
+}
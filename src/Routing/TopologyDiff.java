@@ -0,0 +1,151 @@
+package Routing;
+
+import Model.Router;
+import Model.TopologySnapshot;
+
+/**
+ * The edits between two snapshots of the same topology. A router id counts as the
+ * same router in both snapshots only if it holds the same router object, so a router
+ * that was removed and replaced by another one under its id is both a removed and an
+ * added router. Links from or to a removed router are not listed, they went away with it.
+ */
+class TopologyDiff {
+
+	private final IntList removedRouterIds = new IntList();
+	private final IntList addedRouterIds = new IntList();
+	private final IntList reorderedRouterIds = new IntList();
+	private final IntList addedLinks = new IntList();
+	private final IntList removedLinks = new IntList();
+
+	/**
+	 * Compares every router and neighbour list of two snapshots
+	 * @param before - the snapshot before the edits
+	 * @param after - the snapshot after the edits
+	 */
+	TopologyDiff(TopologySnapshot before, TopologySnapshot after) {
+		int capacity = Math.max(before.getIdCapacity(), after.getIdCapacity());
+		int[] beforeMarks = new int[capacity];
+		int[] afterMarks = new int[capacity];
+
+		for (int id = 0; id < capacity; id++) {
+			Router beforeRouter = routerOf(before, id);
+			Router afterRouter = routerOf(after, id);
+			if (beforeRouter != afterRouter) {
+				if (beforeRouter != null) removedRouterIds.add(id);
+				if (afterRouter != null) addedRouterIds.add(id);
+			} else if (beforeRouter != null) {
+				// ids are marked with the row they were seen in, id + 1 so that 0 means never seen
+				compareNeighbours(before, after, id, beforeMarks, afterMarks, id + 1);
+			}
+		}
+	}
+
+	/**
+	 * Compares the neighbour lists of a router that is in both snapshots. A list can only
+	 * grow at its end, so the neighbours kept are expected in the same order, ahead of
+	 * the neighbours added. Any other change is recorded as a reordered router.
+	 */
+	private void compareNeighbours(TopologySnapshot before, TopologySnapshot after, int id,
+			int[] beforeMarks, int[] afterMarks, int mark) {
+		int[] beforeOffsets = before.getOffsets();
+		int[] beforeNeighbours = before.getNeighbourIds();
+		int[] afterOffsets = after.getOffsets();
+		int[] afterNeighbours = after.getNeighbourIds();
+
+		for (int i = beforeOffsets[id]; i < beforeOffsets[id + 1]; i++) {
+			beforeMarks[beforeNeighbours[i]] = mark;
+		}
+		for (int i = afterOffsets[id]; i < afterOffsets[id + 1]; i++) {
+			afterMarks[afterNeighbours[i]] = mark;
+		}
+
+		// walk the neighbours kept in both lists side by side
+		int b = beforeOffsets[id];
+		boolean addedSeen = false;
+		boolean reordered = false;
+		for (int i = afterOffsets[id]; i < afterOffsets[id + 1]; i++) {
+			int neighbour = afterNeighbours[i];
+			if (beforeMarks[neighbour] == mark && isSameRouter(before, after, neighbour)) {
+				while (!isKept(before, after, beforeNeighbours[b], afterMarks, mark)) {
+					b++;
+				}
+				if (addedSeen || beforeNeighbours[b] != neighbour) {
+					reordered = true;
+				}
+				b++;
+			} else {
+				addedSeen = true;
+				addedLinks.add(id);
+				addedLinks.add(neighbour);
+			}
+		}
+		for (int i = beforeOffsets[id]; i < beforeOffsets[id + 1]; i++) {
+			int neighbour = beforeNeighbours[i];
+			if (afterMarks[neighbour] != mark && isSameRouter(before, after, neighbour)) {
+				removedLinks.add(id);
+				removedLinks.add(neighbour);
+			}
+		}
+		if (reordered) {
+			reorderedRouterIds.add(id);
+		}
+	}
+
+	/**
+	 * @return true if a neighbour of the row being compared is in both neighbour lists
+	 */
+	private static boolean isKept(TopologySnapshot before, TopologySnapshot after, int neighbour, int[] afterMarks, int mark) {
+		return afterMarks[neighbour] == mark && isSameRouter(before, after, neighbour);
+	}
+
+	private static boolean isSameRouter(TopologySnapshot before, TopologySnapshot after, int id) {
+		return routerOf(before, id) == routerOf(after, id);
+	}
+
+	private static Router routerOf(TopologySnapshot snapshot, int id) {
+		return id < snapshot.getIdCapacity() ? snapshot.getRouter(id) : null;
+	}
+
+	/**
+	 * @return the ids of the routers in the first snapshot that are not in the second
+	 */
+	int[] getRemovedRouterIds() {
+		return removedRouterIds.toArray();
+	}
+
+	/**
+	 * @return the ids of the routers in the second snapshot that are not in the first
+	 */
+	int[] getAddedRouterIds() {
+		return addedRouterIds.toArray();
+	}
+
+	/**
+	 * @return the ids of the routers whose remaining neighbours changed order
+	 */
+	int[] getReorderedRouterIds() {
+		return reorderedRouterIds.toArray();
+	}
+
+	/**
+	 * @return the links added between routers of both snapshots, as pairs of router and neighbour ids
+	 */
+	int[] getAddedLinks() {
+		return addedLinks.toArray();
+	}
+
+	/**
+	 * @return the links removed between routers of both snapshots, as pairs of router and neighbour ids
+	 */
+	int[] getRemovedLinks() {
+		return removedLinks.toArray();
+	}
+
+	/**
+	 * @return true if the snapshots hold the same routers and links
+	 */
+	boolean isEmpty() {
+		return removedRouterIds.size() == 0 && addedRouterIds.size() == 0 && reorderedRouterIds.size() == 0
+				&& addedLinks.size() == 0 && removedLinks.size() == 0;
+	}
+}
@@ -0,0 +1,311 @@
+package Simulator;
+
+import java.util.Arrays;
+
+import Model.Message;
+import Model.NetworkTopology;
+import Model.Router;
+import Model.RoutingTable;
+import Model.TopologySnapshot;
+
+/**
+ * Runs the simulation as a sequence of timed events instead of visiting every router at
+ * every step. An event is a message being ready to be sent on from the router it is stored
+ * in. Sending a message over a link schedules it to be ready at the next router once the
+ * weight of the link has passed, so the weight is the delay of the link. Step n of the step
+ * by step simulation ends at time n + 1: new messages are created at the end of the same
+ * steps, and are ready to be sent one unit of time later.
+ *
+ * Each call to advance() jumps to the time of the next event and handles every event at
+ * that time, so routers without messages are never visited and times without events are
+ * skipped. With every link at the default weight of 1, the messages move exactly as they
+ * do step by step.
+ */
+class EventScheduler {
+
+	// the number of generation periods searched for the next time a message is created,
+	// rates whose times don't come back within them only create the first message
+	private static final int CREATION_SEARCH_PERIODS = 16;
+
+	private final EventQueue events;
+	// the topology the events were scheduled on, the events are scheduled again if it is replaced
+	private NetworkTopology topology;
+	private double time;
+	private double nextCreationTime;
+
+	/**
+	 * Creates a scheduler with no events, which is started on the first call to advance()
+	 */
+	EventScheduler() {
+		events = new EventQueue();
+	}
+
+	/**
+	 * Drops every event, the events are scheduled again from the stored messages on the next call to advance()
+	 */
+	void reset() {
+		events.clear();
+		topology = null;
+	}
+
+	/**
+	 * @param topology the network the simulation runs on
+	 * @return true if the scheduler must be started again for the topology
+	 */
+	boolean isStale(NetworkTopology topology) {
+		return this.topology != topology;
+	}
+
+	/**
+	 * @return the time of the events last handled
+	 */
+	double getTime() {
+		return time;
+	}
+
+	/**
+	 * Schedules every message stored in the topology to be sent one unit of time after the
+	 * start, in the order of the routers of the topology
+	 * @param topology the network the simulation runs on
+	 * @param start the time the simulation starts from, which is the number of steps run
+	 * @param messageGenerationRate the number of time units between the times messages are created
+	 */
+	void start(NetworkTopology topology, int start, float messageGenerationRate) {
+		events.clear();
+		this.topology = topology;
+		time = start;
+		for (Router router : topology.getRouters()) {
+			for (Message message : router.getStoredMessages()) {
+				events.add(start + 1, router, message);
+			}
+		}
+		nextCreationTime = nextCreationStep(start - 1, messageGenerationRate) + 1;
+	}
+
+	/**
+	 * Jumps to the time of the next event and handles every event at that time
+	 * @param model the model whose messages are sent and created
+	 * @param flooding true if flooded messages are sent on to every router they haven't been to yet
+	 * @param stamp a number identifying the step, greater than any given before
+	 * @param messageGenerationRate the number of time units between the times messages are created
+	 * @return true if an event was handled, false if nothing is left to happen
+	 */
+	boolean advance(NetworkRoutingSimulatorModel model, boolean flooding, int stamp, float messageGenerationRate) {
+		double next = Math.min(events.isEmpty() ? Double.POSITIVE_INFINITY : events.peekTime(), nextCreationTime);
+		if (next == Double.POSITIVE_INFINITY) {
+			return false;
+		}
+		time = next;
+		TopologySnapshot snapshot = topology.getSnapshot();
+		while (!events.isEmpty() && events.peekTime() <= time) {
+			send(snapshot, events.peekRouter(), events.peekMessage(), flooding, stamp);
+			events.poll();
+		}
+		if (nextCreationTime <= time) {
+			// the new messages are scheduled by the model as they are stored
+			model.createStepMessages();
+			nextCreationTime = nextCreationStep(time - 1, messageGenerationRate) + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Schedules a message created at the current time to be sent one unit of time later
+	 * @param router the router the message was stored in
+	 * @param message the new message
+	 */
+	void schedule(Router router, Message message) {
+		events.add(time + 1, router, message);
+	}
+
+	/**
+	 * Sends a message on from the router it is stored in, or removes it if it reached its destination
+	 * @param snapshot the frozen adjacency of the network
+	 * @param router the router the message is stored in
+	 * @param message the message being sent
+	 * @param flooding true if the message is sent on to every router it hasn't been to yet
+	 * @param stamp a number identifying the step
+	 */
+	private void send(TopologySnapshot snapshot, Router router, Message message, boolean flooding, int stamp) {
+		// the router was removed or the message deleted since the event was scheduled
+		int id = router.getId();
+		if (id < 0 || id >= snapshot.getIdCapacity() || snapshot.getRouter(id) != router || !router.containsMessage(message)) {
+			return;
+		}
+		router.removeMessage(message);
+		Router destination = message.getDestination();
+		RoutingTable routingTable = router.getRoutingTable();
+		int nextRouterCount = routingTable.getNextHopCount(destination);
+		if (nextRouterCount == 0) {
+			//message is at destination
+			topology.incrementNumMessagesReachedDest();
+			return;
+		}
+		if (flooding) {
+			message.addRouter(router);
+		}
+		for (int i = 0; i < nextRouterCount; i++) {
+			Router nextRouter = routingTable.getNextHop(destination, i);
+			// a flooded message is never sent back to a router it went through
+			if (flooding && !message.addRouter(nextRouter)) {
+				continue;
+			}
+			nextRouter.storeMessage(message);
+			topology.incrementTotalPacketsTransmittedMetric();
+			double arrival = time + linkWeight(snapshot, id, nextRouter.getId());
+			// a very light link still takes the message to a later time
+			events.add(arrival > time ? arrival : Math.nextUp(time), nextRouter, message);
+		}
+		if (message.markSent(stamp)) {
+			message.incrementSteps();
+		}
+	}
+
+	/**
+	 * @param snapshot the frozen adjacency of the network
+	 * @param from the id of the router sending the message
+	 * @param to the id of the router the message is sent to
+	 * @return the weight of the link between the routers, or the default weight if there is no such link
+	 */
+	private static double linkWeight(TopologySnapshot snapshot, int from, int to) {
+		double weight = snapshot.getLinkWeight(from, to);
+		return Double.isNaN(weight) ? NetworkTopology.DEFAULT_LINK_WEIGHT : weight;
+	}
+
+	/**
+	 * Finds the next step after the given one at which the step by step simulation creates
+	 * a message: step 0 and every step that is a multiple of the rate
+	 * @param after the step after which a message is created
+	 * @param messageGenerationRate the number of steps between new messages
+	 * @return the next step creating a message, or infinity if no more messages are created
+	 */
+	private static double nextCreationStep(double after, float messageGenerationRate) {
+		double first = Math.max(0, Math.floor(after) + 1);
+		if (first == 0) {
+			return 0;
+		}
+		double last = first + (Math.ceil(messageGenerationRate) + 1) * CREATION_SEARCH_PERIODS;
+		for (double step = first; step <= last; step++) {
+			if ((int) step % messageGenerationRate == 0) {
+				return step;
+			}
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * A binary min-heap of events ordered by time, with the events of the same time kept in
+	 * the order they were added. The events are kept in parallel arrays.
+	 */
+	private static class EventQueue {
+
+		private double[] times = new double[16];
+		private long[] sequences = new long[16];
+		private Router[] routers = new Router[16];
+		private Message[] messages = new Message[16];
+		private int size;
+		private long sequence;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		double peekTime() {
+			return times[0];
+		}
+
+		Router peekRouter() {
+			return routers[0];
+		}
+
+		Message peekMessage() {
+			return messages[0];
+		}
+
+		/**
+		 * Adds an event
+		 * @param time the time of the event
+		 * @param router the router the message is stored in
+		 * @param message the message that is ready to be sent
+		 */
+		void add(double time, Router router, Message message) {
+			if (size == times.length) {
+				times = Arrays.copyOf(times, size * 2);
+				sequences = Arrays.copyOf(sequences, size * 2);
+				routers = Arrays.copyOf(routers, size * 2);
+				messages = Arrays.copyOf(messages, size * 2);
+			}
+			int child = size++;
+			long childSequence = sequence++;
+			while (child > 0) {
+				int parent = (child - 1) >>> 1;
+				if (!before(time, childSequence, parent)) {
+					break;
+				}
+				move(parent, child);
+				child = parent;
+			}
+			set(child, time, childSequence, router, message);
+		}
+
+		/**
+		 * Removes the earliest event
+		 */
+		void poll() {
+			int last = --size;
+			double time = times[last];
+			long lastSequence = sequences[last];
+			Router router = routers[last];
+			Message message = messages[last];
+			routers[last] = null;
+			messages[last] = null;
+			if (last == 0) {
+				return;
+			}
+			int parent = 0;
+			while (true) {
+				int child = 2 * parent + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && before(times[child + 1], sequences[child + 1], child)) {
+					child++;
+				}
+				if (!before(times[child], sequences[child], time, lastSequence)) {
+					break;
+				}
+				move(child, parent);
+				parent = child;
+			}
+			set(parent, time, lastSequence, router, message);
+		}
+
+		/**
+		 * Drops every event
+		 */
+		void clear() {
+			Arrays.fill(routers, 0, size, null);
+			Arrays.fill(messages, 0, size, null);
+			size = 0;
+		}
+
+		private boolean before(double time, long sequence, int index) {
+			return before(time, sequence, times[index], sequences[index]);
+		}
+
+		private static boolean before(double time, long sequence, double otherTime, long otherSequence) {
+			return time < otherTime || (time == otherTime && sequence < otherSequence);
+		}
+
+		private void move(int from, int to) {
+			set(to, times[from], sequences[from], routers[from], messages[from]);
+		}
+
+		private void set(int index, double time, long sequence, Router router, Message message) {
+			times[index] = time;
+			sequences[index] = sequence;
+			routers[index] = router;
+			messages[index] = message;
+		}
+	}
+}
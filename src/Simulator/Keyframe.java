@@ -0,0 +1,103 @@
+package Simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+
+import Model.NetworkTopology;
+import Routing.RoutingAlgorithm;
+
+/**
+ * A full copy of the state of the model, which step back goes back to. The topology is kept
+ * written out with Java serialization, which takes less room than the topology itself and
+ * gives the exact size of the copy. A new topology is read from it when it is restored.
+ */
+class Keyframe implements Serializable {
+
+	private static final long serialVersionUID = 7790829451320913566L;
+
+	private final byte[] topology;
+	private final float messageGenerationRate;
+	private final int messageCounter;
+	private final int stepCounter;
+	// the routing algorithm is shared with the model rather than copied, so it isn't written
+	// out with the keyframe
+	private transient RoutingAlgorithm routingAlgorithm;
+
+	/**
+	 * Copies the state of the model
+	 * @param topology the network of the model
+	 * @param routingAlgorithm the routing algorithm of the model
+	 * @param messageGenerationRate the message generation rate of the model
+	 * @param messageCounter the number of messages created
+	 * @param stepCounter the number of steps run
+	 * @throws UncheckedIOException if the topology can't be written out
+	 */
+	Keyframe(NetworkTopology topology, RoutingAlgorithm routingAlgorithm, float messageGenerationRate, int messageCounter, int stepCounter) {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		try {
+			ObjectOutputStream oos = new ObjectOutputStream(bos);
+			oos.writeObject(topology);
+			oos.close();
+		} catch (IOException e) {
+			// the topology is written to memory, so this only fails if part of it can't be serialized
+			throw new UncheckedIOException("Can't copy the topology", e);
+		}
+		this.topology = bos.toByteArray();
+		this.routingAlgorithm = routingAlgorithm;
+		this.messageGenerationRate = messageGenerationRate;
+		this.messageCounter = messageCounter;
+		this.stepCounter = stepCounter;
+	}
+
+	/**
+	 * @return a new copy of the topology
+	 * @throws UncheckedIOException if the copy can't be read back
+	 */
+	NetworkTopology readTopology() {
+		try {
+			return (NetworkTopology) new ObjectInputStream(new ByteArrayInputStream(topology)).readObject();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Can't read the copy of the topology", e);
+		} catch (ClassNotFoundException e) {
+			throw new IllegalStateException("Can't read the copy of the topology", e);
+		}
+	}
+
+	/**
+	 * @return the routing algorithm of the model, or null if the keyframe was read back from disk
+	 */
+	RoutingAlgorithm getRoutingAlgorithm() {
+		return routingAlgorithm;
+	}
+
+	/**
+	 * @param routingAlgorithm the routing algorithm of the model when the keyframe was taken
+	 */
+	void setRoutingAlgorithm(RoutingAlgorithm routingAlgorithm) {
+		this.routingAlgorithm = routingAlgorithm;
+	}
+
+	float getMessageGenerationRate() {
+		return messageGenerationRate;
+	}
+
+	int getMessageCounter() {
+		return messageCounter;
+	}
+
+	int getStepCounter() {
+		return stepCounter;
+	}
+
+	/**
+	 * @return roughly the number of bytes the keyframe takes up in memory
+	 */
+	long getSize() {
+		return topology.length + 64;
+	}
+}
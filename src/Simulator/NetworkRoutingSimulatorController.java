@@ -5,6 +5,7 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.io.File;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -14,6 +15,7 @@ import javax.swing.JFileChooser;
 import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import Model.Router;
@@ -23,6 +25,9 @@ import View.Connection;
 import View.Node;
 import View.ShapesContainer;
 import View.TopologyShape;
+import XML.BinaryStateSerializer;
+import XML.ProgressListener;
+import XML.XMLState;
 
 /**
  * This class is the Controller of the Network Routing Simulator.
@@ -35,14 +40,21 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 	private static final String SELECT_ROUTING_ALGORITHM_PROMPT_TITLE = "Routing Algorithm Selection";
 	private static final String SELECT_ROUTING_ALGORITHM_PROMPT = "Select a routing algorithm to use:";
 	private static final String MESSAGE_GENERATION_RATE_PROMPT = "Enter the desired Message Generation Rate. (create new message every 'x' steps)\n";
+	private static final String CONNECTION_WEIGHT_PROMPT = "Enter the weight (cost or latency) of the connection, a positive number.\n";
 	private static final String CURRENT_DIRECTORY = System.getProperty("user.dir");
+	private static final String SAVE_FAILED_PROMPT = "The network could not be saved to ";
+	private static final String RESTORE_FAILED_PROMPT = "The network could not be restored from ";
 	private static final FileNameExtensionFilter XML_FILENAME_FILTER = new FileNameExtensionFilter("eXtensible Markup Language file (*.xml)", "xml");
+	private static final FileNameExtensionFilter BINARY_FILENAME_FILTER = new FileNameExtensionFilter("Binary network file for large topologies (*."
+			+ BinaryStateSerializer.FILE_EXTENSION + ")", BinaryStateSerializer.FILE_EXTENSION);
 
 	private NetworkRoutingSimulatorModel model;
 	private NetworkRoutingSimulatorView view;
 	private JPanel viewPanel;
 	private String name;
 	private JButton buttonPressed;
+	// the save or restore running in the background, null if there is none
+	private FileWorker<?> fileWorker;
 
 	/**
 	 * Constructor for the MVC controller
@@ -65,6 +77,7 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 		if (view != null) {
 			this.view = view;
 			this.view.addAddRouterListener(new AddRouterListener());
+			this.view.addTimelineListener(e -> model.seekToStep(this.view.getTimelineStep()));
 		}
 	}
 
@@ -101,13 +114,20 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 		model.removeRouter(name);
 	}
 
+	/**
+	 * Keeps the new place of a node that was moved on the panel
+	 * @param name the name of the router of the node
+	 * @param x the new x coordinate of the node
+	 * @param y the new y coordinate of the node
+	 */
+	public void handleMoveRouter(String name, float x, float y) {
+		model.moveRouter(name, x, y);
+	}
+
 	/**
 	 * Simulates the topology to move/add messages
 	 */
 	private void simulateStep() {
-		if(model.getMessageCount()== model.getBaseMessageCounter()){
-			model.pushStateToStack();
-		}
 		model.step();
 	}
 
@@ -189,30 +209,55 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.RESTORE_MENU_NAME)) {
 			JFileChooser fc = new JFileChooser(CURRENT_DIRECTORY);
 			fc.setAcceptAllFileFilterUsed(false);
+			fc.addChoosableFileFilter(BINARY_FILENAME_FILTER);
 			fc.setFileFilter(XML_FILENAME_FILTER);
 			int returnVal = fc.showOpenDialog(view);
 
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
 				File file = fc.getSelectedFile();
-				model.restoreState(file);
+				restoreInBackground(file);
 			}
 		}
 		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.SAVE_MENU_NAME)) {
 			JFileChooser fc = new JFileChooser(CURRENT_DIRECTORY);
 			fc.setAcceptAllFileFilterUsed(false);
+			fc.addChoosableFileFilter(BINARY_FILENAME_FILTER);
 			fc.setFileFilter(XML_FILENAME_FILTER);
-			File file = new File(CURRENT_DIRECTORY + "/" + getRecommendedFileName());
+			// the file last saved or restored is suggested first, as saving it only writes the edits since
+			File file = model.getJournalFile();
+			if (file == null) {
+				file = new File(CURRENT_DIRECTORY + "/" + getRecommendedFileName());
+			} else if (BinaryStateSerializer.isBinaryFile(file)) {
+				fc.setFileFilter(BINARY_FILENAME_FILTER);
+			}
 			fc.setSelectedFile(file);
 			int returnVal = fc.showSaveDialog(view);
 
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
 				file = fc.getSelectedFile();
-				ShapesContainer sc = new ShapesContainer(view.getTopologyPanel().getNodes(), view.getTopologyPanel().getConnections());
-				model.saveState(file, sc);
+				// the format is chosen by the extension, so it follows the chosen filter
+				if (fc.getFileFilter() == BINARY_FILENAME_FILTER && !BinaryStateSerializer.isBinaryFile(file)) {
+					file = new File(file.getParentFile(), file.getName().replaceFirst("\\.xml$", "") + "." + BinaryStateSerializer.FILE_EXTENSION);
+				}
+				// steps and other changes the journal can't hold need the network to be saved whole
+				if (model.isJournaling(file) && !model.hasUnjournaledChanges()) {
+					model.flushJournal();
+					System.out.println("Saved the edits to " + file.getName());
+				} else {
+					ShapesContainer sc = new ShapesContainer(view.getTopologyPanel().getNodes(), view.getTopologyPanel().getConnections());
+					saveInBackground(file, sc);
+				}
+			}
+		}
+		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.CANCEL_FILE_NAME)) {
+			// stop the save or restore running in the background, the file and the network are left as they were
+			if (fileWorker != null) {
+				fileWorker.cancel(true);
 			}
 		}
 		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.EXIT_MENU_NAME)) {
 			// When user clicks the 'Exit' button on the view, exit the application
+			model.closeJournal();
 			System.exit(0);
 		}
 		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.USER_MANUAL_NAME)) {
@@ -240,6 +285,26 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 				ex.printStackTrace();
 			}
 		}
+		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.CONNECTION_WEIGHT)) {
+			// change the weight of the selected connection when the 'Weight' button is clicked
+			TopologyShape shape = view.getTopologyPanel().getSelected();
+			if (shape instanceof Connection) {
+				Connection c = (Connection) shape;
+				String weightString = JOptionPane.showInputDialog(CONNECTION_WEIGHT_PROMPT);
+				if (weightString == null || weightString.isEmpty()) return; // user clicks cancel or doesn't input anything
+
+				try {
+					double weight = Double.parseDouble(weightString);
+					if (model.setLinkWeight(c.getNode1().getName(), c.getNode2().getName(), weight)) {
+						System.out.println("Connection weight of " + c.getNode1().getName() + "<->" + c.getNode2().getName() + " set to " + weight);
+					} else {
+						System.out.println("Invalid Weight.");
+					}
+				} catch (NumberFormatException ex) {
+					System.out.println("Invalid Weight.");
+				}
+			}
+		}
 		else if (e.getActionCommand().equals(NetworkRoutingSimulatorView.REMOVE_ROUTER)) {
 			// remove a router from the view when the 'Remove' button is clicked
 			TopologyShape shape =  view.getTopologyPanel().getSelected();
@@ -256,6 +321,71 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 		}
 	}
 
+	/**
+	 * Saves a copy of the network on a background thread, so that the GUI can still be used
+	 * while the file is written
+	 * @param file the file to save to
+	 * @param sc the shapes of the view
+	 */
+	private void saveInBackground(File file, ShapesContainer sc) {
+		if (fileWorker != null) {
+			return;
+		}
+		XMLState snapshot = model.snapshotState(sc);
+		// the edits made while the copy is saved are kept in the journal of the file
+		model.beginJournal(file, sc);
+		view.showFileProgress("Saving " + file.getName());
+		fileWorker = new FileWorker<Boolean>() {
+			@Override
+			protected Boolean doInBackground() {
+				return NetworkRoutingSimulatorModel.writeState(file, snapshot, this);
+			}
+
+			@Override
+			protected void finished(Boolean saved) {
+				model.endJournal(saved);
+				if (!saved) {
+					JOptionPane.showMessageDialog(view, SAVE_FAILED_PROMPT + file.getName());
+				}
+			}
+
+			@Override
+			protected void cancelled() {
+				model.endJournal(false);
+			}
+		};
+		fileWorker.execute();
+	}
+
+	/**
+	 * Reads a file on a background thread, and sets the state of the model once the whole
+	 * file is read, so that the network shown is never partly restored
+	 * @param file the file to restore from
+	 */
+	private void restoreInBackground(File file) {
+		if (fileWorker != null) {
+			return;
+		}
+		view.showFileProgress("Restoring " + file.getName());
+		fileWorker = new FileWorker<XMLState>() {
+			@Override
+			protected XMLState doInBackground() {
+				return NetworkRoutingSimulatorModel.readState(file, this);
+			}
+
+			@Override
+			protected void finished(XMLState state) {
+				if (state != null) {
+					model.applyState(state);
+					model.openJournal(file, new ShapesContainer(view.getTopologyPanel().getNodes(), view.getTopologyPanel().getConnections()));
+				} else {
+					JOptionPane.showMessageDialog(view, RESTORE_FAILED_PROMPT + file.getName());
+				}
+			}
+		};
+		fileWorker.execute();
+	}
+
 	/**
 	 * @return a default file name suggestion consisting of the date and time
 	 */
@@ -264,6 +394,58 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 		return "topology" + timeStampPattern.format(java.time.LocalDateTime.now()) + ".xml";
 	}
 
+	/**
+	 * Saves or restores a file on a background thread, showing how much of the file was
+	 * written or read on the progress bar of the view. Cancelling the worker interrupts the
+	 * thread, which stops reading or writing the file.
+	 * @param <T> the result of the save or restore
+	 */
+	private abstract class FileWorker<T> extends SwingWorker<T, Void> implements ProgressListener {
+
+		FileWorker() {
+			addPropertyChangeListener(e -> {
+				if ("progress".equals(e.getPropertyName())) {
+					view.setFileProgress((Integer) e.getNewValue());
+				}
+			});
+		}
+
+		@Override
+		public void progressChanged(long done, long total) {
+			if (total > 0) {
+				setProgress((int) Math.max(0, Math.min(100, done * 100 / total)));
+			}
+		}
+
+		/**
+		 * Called on the event dispatch thread once the file was saved or restored, unless it was cancelled
+		 * @param result the result of doInBackground
+		 */
+		protected abstract void finished(T result);
+
+		/**
+		 * Called on the event dispatch thread if the save or restore was cancelled
+		 */
+		protected void cancelled() {
+		}
+
+		@Override
+		protected void done() {
+			fileWorker = null;
+			view.hideFileProgress();
+			if (isCancelled()) {
+				System.out.println("Cancelled");
+				cancelled();
+				return;
+			}
+			try {
+				finished(get());
+			} catch (InterruptedException | ExecutionException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	/**
 	 * This private class handles the addition of a new router to the topology.
 	 */
@@ -357,7 +539,7 @@ public class NetworkRoutingSimulatorController implements ActionListener {
 			viewPanel.removeMouseListener(this);
 			if (buttonPressed != null) buttonPressed.setEnabled(true);
 			Router router = new Router(name);
-			model.addRouter(router);
+			model.addRouter(router, x - Node.DEFAULT_DIAMETER/2, y - Node.DEFAULT_DIAMETER/2);
 		}
 		@Override
 		public void mouseReleased(MouseEvent e) {}
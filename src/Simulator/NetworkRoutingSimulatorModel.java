@@ -1,30 +1,33 @@
 package Simulator;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Observable;
 import java.util.Random;
 import java.util.Set;
-import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 import Model.Message;
 import Model.ModelContainer;
 import Model.NetworkEvent;
 import Model.NetworkTopology;
 import Model.Router;
+import Model.RoutingTable;
+import Model.TopologySnapshot;
 import Routing.FloodingRoutingAlgorithm;
 import Routing.RandomRoutingAlgorithm;
 import Routing.RoutingAlgorithm;
+import Traffic.TrafficGenerator;
 import View.ShapesContainer;
+import XML.BinaryStateSerializer;
+import XML.EditJournal;
+import XML.ProgressListener;
 import XML.XMLState;
 import XML.XMLStateSerializer;
 
@@ -39,6 +42,13 @@ import XML.XMLStateSerializer;
  */
 public class NetworkRoutingSimulatorModel extends Observable {
 
+	// the least number of routers for which a step is split across the step pool
+	private static final int PARALLEL_THRESHOLD = 64;
+	// added to the name of a file while it is being saved
+	private static final String PARTIAL_FILE_SUFFIX = ".part";
+	// the size of the journal above which the network is saved whole and the journal started again
+	private static final long DEFAULT_JOURNAL_COMPACTION_SIZE = 4 << 20;
+
 	private NetworkTopology topology;
 	private RoutingAlgorithm chosenRoutingAlgorithm;
 	private float messageGenerationRate;
@@ -46,8 +56,30 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	private int baseMessageCounter;
 	private int stepCounter;
 	private XMLState xmlState;
-	private Stack<ModelContainer> stackOfGoodies;
-	private boolean stepBackClicked, somethingRemoved, hasStepped;
+	private UndoHistory history;
+	private Timeline timeline;
+	private ForkJoinPool routingPool;
+	private int routingCacheSize;
+	// the routing tables being built in the background after a restore, null once they are built
+	private ForkJoinTask<?> routingTablesTask;
+	private int sentStamp;
+	private PartitionedForwarder forwarder;
+	private Random random;
+	private Long seed;
+	private EventScheduler scheduler;
+	private TrafficGenerator trafficGenerator;
+	private boolean somethingRemoved, hasStepped;
+	// the edits made since the network was saved to journalFile, null if they are not kept
+	private EditJournal journal;
+	private File journalFile;
+	private ShapesContainer journalShapes;
+	// the edits made since a copy of the network was taken to be saved to pendingFile
+	private EditJournal pendingJournal;
+	private File pendingFile;
+	private ShapesContainer pendingShapes;
+	// true once the network changed in a way a journal can't hold, such as a step or step back
+	private boolean journalStale, pendingStale;
+	private long journalCompactionSize;
 
 	/**
 	 * Constructor for the MVC Model
@@ -58,10 +90,11 @@ public class NetworkRoutingSimulatorModel extends Observable {
 		stepCounter = 0;
 		chosenRoutingAlgorithm = new RandomRoutingAlgorithm(); // initial chosen routing algorithm
 		topology = new NetworkTopology();
+		random = new Random();
 		xmlState = new XMLState();
-		stackOfGoodies = new Stack<ModelContainer>();
-		stackOfGoodies.push(new ModelContainer(new NetworkTopology(), chosenRoutingAlgorithm, 
-				messageGenerationRate, messageCounter, stepCounter));
+		history = new UndoHistory();
+		timeline = new Timeline(history);
+		journalCompactionSize = DEFAULT_JOURNAL_COMPACTION_SIZE;
 	}
 
 	/**
@@ -87,7 +120,15 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	public void setMessageGenerationRate(float messageGenerationRate) {
 		if (messageGenerationRate > 0) {
 			this.messageGenerationRate = messageGenerationRate;
+			if (stepCounter != 0) {
+				// the journal only holds the rate, not the counter it restarts
+				markJournalsStale();
+			}
 			stepCounter = 0;
+			if (scheduler != null) {
+				scheduler.reset();
+			}
+			journal(journal -> journal.setMessageGenerationRate(messageGenerationRate));
 		}
 	}
 
@@ -98,10 +139,46 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @return true if the neighbour connection was added successfully, otherwise false
 	 */
 	public boolean attachNeighbour(String routerName, String neighbourName) {
-		if (topology.setRouterNeighbour(routerName, neighbourName) && topology.setRouterNeighbour(neighbourName, routerName)) {
+		return attachNeighbour(routerName, neighbourName, NetworkTopology.DEFAULT_LINK_WEIGHT);
+	}
+
+	/**
+	 * Adds a neighbour to a router through a link with the given weight in both directions
+	 * @param routerName - the name of the first router to gain a neighbour(neighbourName)
+	 * @param neighbourName - the name of the second router to gain a neighbour(routerName)
+	 * @param weight - the cost of sending a message over the link, must be positive
+	 * @return true if the neighbour connection was added successfully, otherwise false
+	 */
+	public boolean attachNeighbour(String routerName, String neighbourName, double weight) {
+		awaitRoutingTables();
+		Keyframe before = copyStateForEdit();
+		if (topology.setRouterNeighbour(routerName, neighbourName, weight) && topology.setRouterNeighbour(neighbourName, routerName, weight)) {
+			pushEdit(before);
+			baseMessageCounter = messageCounter;
+			notifyView(topology);
+			chosenRoutingAlgorithm.updateRoutingTables(topology);
+			journal(journal -> journal.attach(routerName, neighbourName, weight));
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Changes the weight of the connection between two routers, in both directions
+	 * @param routerName the name of the first router
+	 * @param neighbourName the name of the second router
+	 * @param weight the new cost of sending a message over the link, must be positive
+	 * @return true if the weight was changed, otherwise false
+	 */
+	public boolean setLinkWeight(String routerName, String neighbourName, double weight) {
+		awaitRoutingTables();
+		Keyframe before = copyStateForEdit();
+		if (topology.setLinkWeight(routerName, neighbourName, weight) && topology.setLinkWeight(neighbourName, routerName, weight)) {
+			pushEdit(before);
 			baseMessageCounter = messageCounter;
 			notifyView(topology);
-			chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+			chosenRoutingAlgorithm.updateRoutingTables(topology);
+			journal(journal -> journal.attach(routerName, neighbourName, weight));
 			return true;
 		}
 		return false;
@@ -114,11 +191,13 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @return true if the connection is deleted successfully, otherwise false
 	 */
 	public boolean deleteNeighbour(String routerName, String neighbourName){
+		awaitRoutingTables();
 		if(topology.removeNeighbour(routerName, neighbourName) && topology.removeNeighbour(neighbourName, routerName)) {
 			somethingRemoved = true;
 			baseMessageCounter = messageCounter;
 			notifyView(topology);
-			chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+			chosenRoutingAlgorithm.updateRoutingTables(topology);
+			journal(journal -> journal.detach(routerName, neighbourName));
 			return true;
 		} else {
 			return false;
@@ -130,11 +209,26 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @param router the router to be added
 	 */
 	public void addRouter(Router router) {
+		addRouter(router, Float.NaN, Float.NaN);
+	}
+
+	/**
+	 * Adds a router to the topology, placed at the given coordinates of the panel. The
+	 * coordinates are only kept in the journal, so that the node of the router is shown
+	 * where it was placed once the journal is replayed.
+	 * @param router the router to be added
+	 * @param x the x coordinate of the node of the router
+	 * @param y the y coordinate of the node of the router
+	 */
+	public void addRouter(Router router, float x, float y) {
+		awaitRoutingTables();
 		if (router != null && !containsRouter(router.getName())){
+			pushEdit(copyStateForEdit());
 			topology.addRouter(router);
 			baseMessageCounter = messageCounter;
 			notifyView(topology);
-			chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+			chosenRoutingAlgorithm.updateRoutingTables(topology);
+			journal(journal -> journal.addRouter(router.getName(), x, y));
 		} 
 	}
 
@@ -143,33 +237,216 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @param name the name of the router to be removed
 	 */
 	public void removeRouter(String name) {
+		awaitRoutingTables();
 		if (name.length() > 0){
+			boolean removed = containsRouter(name);
 			topology.removeRouter(name);
 			somethingRemoved = true;
 			baseMessageCounter = messageCounter;
 			notifyView(topology);
-			chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+			chosenRoutingAlgorithm.updateRoutingTables(topology);
+			if (removed) {
+				journal(journal -> journal.removeRouter(name));
+			}
 		} 
 	}
 
+	/**
+	 * Keeps the new place of the node of a router that was moved on the panel in the journal,
+	 * so that saving through the journal keeps the move. The topology is left as it was.
+	 * @param name the name of the router
+	 * @param x the new x coordinate of the node of the router
+	 * @param y the new y coordinate of the node of the router
+	 */
+	public void moveRouter(String name, float x, float y) {
+		if (containsRouter(name)) {
+			journal(journal -> journal.moveRouter(name, x, y));
+		}
+	}
+
 	/**
 	 * Creates a message if the set rate demands it and forwards all the messages to
 	 * 	the next router
 	 */
 	public void step() {
+		timeline.sync(topology, stepCounter, messageCounter);
+		StepDelta delta = new StepDelta(topology, stepCounter, messageCounter);
+		advance();
+		//enable stepback
+		hasStepped = true;
+		history.pushStep(delta);
+		countStep();
+		markJournalsStale();
+		timeline.append(topology, stepCounter, messageCounter, chosenRoutingAlgorithm instanceof FloodingRoutingAlgorithm);
+		notifyView(topology);
+	}
+
+	/**
+	 * Runs a number of steps without notifying the view or printing anything in between.
+	 * The view is notified once when the steps are done, and one keyframe is saved so that
+	 * step back goes to the state before the steps were run. The steps are not kept on the
+	 * timeline, so seeking can't go to them.
+	 * @param steps the number of steps to run
+	 */
+	public void runSteps(int steps) {
+		runSteps(steps, 0);
+	}
+
+	/**
+	 * Runs a number of steps without saving a state for step back in between. The view is
+	 * notified every sampleInterval steps, and once when the steps are done.
+	 * @param steps the number of steps to run
+	 * @param sampleInterval the number of steps between notifications of the view, or 0 to only notify at the end
+	 */
+	public void runSteps(int steps, int sampleInterval) {
+		runUntil(null, steps, sampleInterval);
+	}
+
+	/**
+	 * Runs steps until the condition holds for the topology, or the given number of steps
+	 * have been run. The condition is checked before each step, and the view is only notified
+	 * once at the end.
+	 * @param condition the condition on the topology to stop at
+	 * @param maxSteps the most steps to run
+	 * @return the number of steps that were run
+	 */
+	public int runUntil(Predicate<NetworkTopology> condition, int maxSteps) {
+		return runUntil(condition, maxSteps, 0);
+	}
+
+	/**
+	 * Runs steps until the condition holds for the topology, or the given number of steps
+	 * have been run, notifying the view every sampleInterval steps and once at the end.
+	 * @param condition the condition on the topology to stop at, or null to run every step
+	 * @param maxSteps the most steps to run
+	 * @param sampleInterval the number of steps between notifications of the view, or 0 to only notify at the end
+	 * @return the number of steps that were run
+	 */
+	public int runUntil(Predicate<NetworkTopology> condition, int maxSteps, int sampleInterval) {
+		int steps = 0;
+		while (steps < maxSteps && (condition == null || !condition.test(topology))) {
+			if (steps == 0) {
+				// a keyframe takes less room than a delta for every step of the batch
+				pushStateToStack();
+				// nor are the steps of the batch kept on the timeline, which starts again from the next step
+				timeline.clear();
+			}
+			advance();
+			countStep();
+			steps++;
+			if (sampleInterval > 0 && steps % sampleInterval == 0 && steps < maxSteps) {
+				publish(topology);
+			}
+		}
+		if (steps > 0) {
+			hasStepped = true;
+			markJournalsStale();
+			notifyView(topology);
+		}
+		return steps;
+	}
+
+	/**
+	 * Forwards the messages and creates a new one if the rate demands it, without
+	 * notifying the view or counting the step
+	 */
+	private void advance() {
+		awaitRoutingTables();
 		chosenRoutingAlgorithm.setRoutingTables(topology);
-		if(topology.getRouters().size() > 0){
+		if (scheduler != null) {
+			if (scheduler.isStale(topology)) {
+				scheduler.start(topology, stepCounter, getCreationRate());
+			}
+			scheduler.advance(this, chosenRoutingAlgorithm instanceof FloodingRoutingAlgorithm, ++sentStamp, getCreationRate());
+		} else if(topology.getRouters().size() > 0){
 			forwardMessages();
-			if(messageGenerationRate != 0 && (stepCounter % messageGenerationRate == 0 || stepCounter == 0) ){
-				Message message = createMessage(getRandomRouter(), getRandomRouter());
-				injectMessage(message);
+			float rate = getCreationRate();
+			if(rate != 0 && (stepCounter % rate == 0 || stepCounter == 0) ){
+				createStepMessages();
 			}
 		}
 		topology.calculateAverageHopsMetric();
-		//enable stepback
-		hasStepped = true;
-		notifyView(topology);
-		stepCounter++;
+	}
+
+	/**
+	 * Moves the step counter past the step that was just run. When the simulation is event
+	 * driven, steps without events are skipped, and the counter follows the time of the events.
+	 */
+	private void countStep() {
+		stepCounter = scheduler == null ? stepCounter + 1 : (int) Math.floor(scheduler.getTime());
+	}
+
+	/**
+	 * @return the number of steps between the steps that create messages, the traffic generator
+	 * decides how many messages are created at every step
+	 */
+	private float getCreationRate() {
+		return trafficGenerator == null ? messageGenerationRate : 1;
+	}
+
+	/**
+	 * Creates the messages of a step that creates messages: those of the traffic generator,
+	 * or a single message between two random routers if there is none
+	 */
+	void createStepMessages() {
+		if (topology.numberOfRouters() == 0) {
+			return;
+		}
+		if (trafficGenerator == null) {
+			Router source = getRandomRouter();
+			injectMessage(source, createMessage(source, getRandomRouter()));
+		} else {
+			TopologySnapshot snapshot = topology.getSnapshot();
+			trafficGenerator.generate(snapshot, random, (sourceId, destinationId) -> {
+				Router source = snapshot.getRouter(sourceId);
+				injectMessage(source, createMessage(source, snapshot.getRouter(destinationId)));
+			});
+		}
+	}
+
+	/**
+	 * Sets what creates the messages at each step. Without a traffic generator, one message
+	 * is created between two random routers every time the message generation rate demands it.
+	 * @param trafficGenerator the generator of the messages, or null to use the message generation rate
+	 */
+	public void setTrafficGenerator(TrafficGenerator trafficGenerator) {
+		this.trafficGenerator = trafficGenerator;
+		if (scheduler != null) {
+			scheduler.reset();
+		}
+	}
+
+	/**
+	 * @return the generator of the messages, or null if the message generation rate is used
+	 */
+	public TrafficGenerator getTrafficGenerator() {
+		return trafficGenerator;
+	}
+
+	/**
+	 * Chooses between the step by step simulation and the event driven one. When event driven,
+	 * a step jumps to the next time a message is sent or created, only routers holding messages
+	 * do any work, and a message takes the weight of a link as the time to go over it. With
+	 * every link at the default weight, both simulations move the messages the same way.
+	 * @param eventDriven true to run the event driven simulation
+	 */
+	public void setEventDriven(boolean eventDriven) {
+		scheduler = eventDriven ? new EventScheduler() : null;
+	}
+
+	/**
+	 * @return true if the simulation is event driven
+	 */
+	public boolean isEventDriven() {
+		return scheduler != null;
+	}
+
+	/**
+	 * @return the time of the simulation, which is the number of steps run unless the simulation is
+	 * event driven and skipped some steps, or the links have other weights than the default
+	 */
+	public double getSimulationTime() {
+		return scheduler == null ? stepCounter : scheduler.getTime();
 	}
 
 	public int getBaseMessageCounter() {
@@ -181,12 +458,16 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 */
 	public void deleteAllMessages() {
 		topology.clearMessages();
-		stackOfGoodies.push(new ModelContainer(new NetworkTopology(), chosenRoutingAlgorithm, 
-				messageGenerationRate, messageCounter, stepCounter));
+		history.clear();
+		timeline.clear();
 		topology.resetMetrics();
 		messageCounter = 0;
 		baseMessageCounter = 0;
 		stepCounter = 0;
+		if (scheduler != null) {
+			scheduler.reset();
+		}
+		markJournalsStale();
 
 		//disable step-back
 		hasStepped = false;
@@ -197,15 +478,11 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @return a random router from the network topology
 	 */
 	private Router getRandomRouter() {
-		Set<Router> routers = topology.getRouters();
-		Iterator<Router> routersIterator = routers.iterator();
-		int numberOfRouters = routers.size();
-		Random randomGenerator = new Random();
-		int randomRouterIndex = randomGenerator.nextInt(numberOfRouters); // stores a random index that's within the routers set range.
-		for (int i = 0; i < randomRouterIndex; i++) {
-			routersIterator.next();
-		}
-		return routersIterator.next();
+		// the snapshot lists the ids of the routers, so a random one is picked without going through them
+		TopologySnapshot snapshot = topology.getSnapshot();
+		int[] routerIds = snapshot.getRouterIds();
+		int randomRouterIndex = random.nextInt(routerIds.length); // stores a random index that's within the routers range.
+		return snapshot.getRouter(routerIds[randomRouterIndex]);
 	}
 
 	/**
@@ -221,222 +498,248 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	}
 
 	/**
-	 * Store the provided message in the source router.
+	 * Store the provided message in its source router, and schedule it to be sent if the
+	 * simulation is event driven.
+	 * @param router - the source router of the message
 	 * @param message - the message to be added to the source router
 	 */
-	private void injectMessage(Message message) {
-		Set<Router> routers = topology.getRouters();
-
-		// Loop through each router, and store the message in the router
-		// with the same name as the name of the source router in the message.
-		//
-		for (Router router: routers) {
-			if(message.getSource().getName().equals(router.getName())) {
-				router.storeMessage(message);
-				message.addRouter(router);
-				message.getRoutersPassedThrough().add(router);
-			}
+	private void injectMessage(Router router, Message message) {
+		router.storeMessage(message);
+		if (scheduler != null && !scheduler.isStale(topology)) {
+			scheduler.schedule(router, message);
 		}
 	}
 
 	/**
 	 * Forward all the messages in each router to the next router using the routing table in
-	 * each router.
+	 * each router. Every stored message leaves its router during a step, either to the next
+	 * routers or because it reached its destination, so the messages a router receives are
+	 * kept apart until the end of the step and then replace the ones it stored.
 	 */
 	private void forwardMessages() {
 		Set<Router> routers = topology.getRouters();
-		HashMap<Message,HashSet<Router>> newMessageLocations = new HashMap<Message,HashSet<Router>>();
-		HashMap<Message, HashSet<Router>> messagesToBeRemoved = new HashMap<Message, HashSet<Router>>();
-		HashSet<Message> incrementedMessages = new HashSet<Message>(); 
+		boolean flooding = chosenRoutingAlgorithm instanceof FloodingRoutingAlgorithm;
+		int stamp = ++sentStamp;
+		if (forwarder != null && !flooding && routers.size() >= PARALLEL_THRESHOLD) {
+			forwarder.forward(topology, stamp);
+			return;
+		}
 
 		// Loop through each router, and get every message that each router has.
 		//
 		for (Router router: routers) {
 
-			// remove every message from the current router and store it in
-			// the next router.
+			// send every message from the current router to the next routers.
 			//
-			ArrayList<Message> messages = router.getStoredMessages();
-			for (Message message: messages) {
+			RoutingTable routingTable = router.getRoutingTable();
+			List<Message> messages = router.getStoredMessages();
+			for (int m = 0; m < messages.size(); m++) {
+				Message message = messages.get(m);
 				Router destination = message.getDestination();
 
-				HashSet<Router> nextRouterSet = router.getRoutingTable().get(destination);
-				if (nextRouterSet != null) {
-					if (nextRouterSet.isEmpty()) {
-						addRouterToMessageHashMap(router, messagesToBeRemoved, message);
-						break;
+				int nextRouterCount = routingTable.getNextHopCount(destination);
+				if (nextRouterCount != 0) {
+					if (flooding) {
+						message.addRouter(router);
 					}
-					for (Router nextRouter : nextRouterSet) {
-						if (nextRouter != null) {
-							if (chosenRoutingAlgorithm instanceof FloodingRoutingAlgorithm) {
-								if (!message.getRoutersPassedThrough().contains(nextRouter)) {
-
-									message.getRoutersPassedThrough().add(nextRouter);
-								}
-								else {
-									continue;
-								}
-							}
-							addRouterToMessageHashMap(nextRouter, newMessageLocations, message);
-							addRouterToMessageHashMap(router, messagesToBeRemoved, message);
-							topology.incrementTotalPacketsTransmittedMetric();
+					for (int i = 0; i < nextRouterCount; i++) {
+						Router nextRouter = routingTable.getNextHop(destination, i);
+						// a flooded message is never sent back to a router it went through
+						if (flooding && !message.addRouter(nextRouter)) {
+							continue;
 						}
+						nextRouter.receiveMessage(message);
+						topology.incrementTotalPacketsTransmittedMetric();
 					}
-					if (!incrementedMessages.contains(message)) {
+					if (message.markSent(stamp)) {
 						message.incrementSteps();
-						incrementedMessages.add(message);
-					}
-					if (chosenRoutingAlgorithm instanceof  FloodingRoutingAlgorithm && router.getStoredMessages().contains(message)) {
-						addRouterToMessageHashMap(router, messagesToBeRemoved, message);
 					}
 				} else {
 					//message is at destination
 					topology.incrementNumMessagesReachedDest();
-					addRouterToMessageHashMap(router, messagesToBeRemoved, message);
 				}
 			}
 		}
-		deleteMessages(messagesToBeRemoved);
-		addMessages(newMessageLocations);
+		for (Router router: routers) {
+			router.swapMessages();
+		}
 	}
 
 	/**
-	 * Adds a router to the HashSet of a message, and updates the entry in the HashMap
-	 * @param router the router needing to have its message list updated
-	 * @param messageHashMap the HashMap to be updated
-	 * @param message the message whose location needs to be updated
+	 * @return the number of routers in the topology
 	 */
-	private void addRouterToMessageHashMap(Router router, HashMap<Message, HashSet<Router>> messageHashMap, Message message) {
-		HashSet<Router> routerHashSet;
-		if (messageHashMap.get(message) == null ){
-			routerHashSet = new HashSet<>();
-		}
-		else {
-			routerHashSet = messageHashMap.get(message);
-		}
-		routerHashSet.add(router);
-		messageHashMap.put(message, routerHashSet);
+	public int numberOfRouters() {
+		return topology.numberOfRouters();
 	}
 
 	/**
-	 * Deletes the messages from the given routers
-	 * @param messagesToBeRemoved - a map of messages and the router they will deleted from
+	 * Undo the latest step or change, and display the previous topology.
 	 */
-	private void deleteMessages(HashMap<Message,HashSet<Router>> messagesToBeRemoved) {
-		for(Map.Entry<Message,HashSet<Router>> routerSet : messagesToBeRemoved.entrySet()) {
-			for (Router router : routerSet.getValue()) {
-				router.removeMessage(routerSet.getKey());
+	public void stepBack(){
+		if (history.undo(this)) {
+			if (scheduler != null) {
+				scheduler.reset();
 			}
+			notifyView(topology);
 		}
 	}
 
 	/**
-	 * Adds the messages to the given routers
-	 * @param newMessageLocations - a map of messages and the router they will be added to
+	 * Shows the simulation as it was at a step that was run, or at a later step if step back
+	 * or an earlier seek went back from it. The timeline keeps the steps run since routers or
+	 * links last changed. Step back returns to the state from before the seek, and stepping
+	 * on from an earlier step drops the steps that came after it.
+	 * @param step the step to go to, the first or last step kept if it is out of range
 	 */
-	private void addMessages(HashMap<Message,HashSet<Router>> newMessageLocations) {
-		for (Map.Entry<Message,HashSet<Router>> routerSet : newMessageLocations.entrySet()) {
-			for (Router router : routerSet.getValue()) {
-				router.storeMessage(routerSet.getKey());
-				routerSet.getKey().addRouter(router);
+	public void seekToStep(int step) {
+		timeline.sync(topology, stepCounter, messageCounter);
+		StepDelta before = new StepDelta(topology, stepCounter, messageCounter);
+		if (timeline.seek(topology, step)) {
+			history.pushStep(before);
+			stepCounter = timeline.getStep();
+			messageCounter = timeline.getMessageCounter();
+			markJournalsStale();
+			if (scheduler != null) {
+				scheduler.reset();
 			}
+			notifyView(topology);
 		}
 	}
 
 	/**
-	 * @return the number of routers in the topology
+	 * Sets how often the timeline keeps a full copy of the messages, and how many steps it keeps.
+	 * A seek goes through at most keyframeInterval steps. The timeline starts again from the next step.
+	 * @param keyframeInterval the number of steps from one copy of the messages to the next
+	 * @param maxSteps the most steps kept, the oldest are dropped first
 	 */
-	public int numberOfRouters() {
-		return topology.numberOfRouters();
+	public void setTimelineSize(int keyframeInterval, int maxSteps) {
+		timeline.setSize(keyframeInterval, maxSteps);
 	}
 
 	/**
-	 * Display the previous topology.
+	 * @return the first step the timeline can go to, or -1 if no step was run
 	 */
-	public void stepBack(){
-		ModelContainer lastState = null;
-		setStepBackClicked();
-		try{
-			stackOfGoodies.pop();
-			//makes it so the first message is always available
-			if(stackOfGoodies.isEmpty()){
-				stackOfGoodies.push(lastState);
-			}
-			lastState = stackOfGoodies.peek();
-
-			
-			//restore everything.
-			chosenRoutingAlgorithm = lastState.getChosenRoutingAlgorithm();
-			messageCounter = lastState.getMessageCounter();
-			messageGenerationRate = lastState.getMessageGenerationRate();
-			topology = lastState.getTopology();
-			stepCounter = lastState.getStepCounter();
-			notifyView(topology);
-
-		}catch(Exception e){
+	public int getTimelineFirstStep() {
+		return timeline.getFirstStep();
+	}
 
-		}
+	/**
+	 * @return the last step the timeline can go to, or -1 if no step was run
+	 */
+	public int getTimelineLastStep() {
+		return timeline.getLastStep();
+	}
 
+	/**
+	 * @return the number of steps run, or the step the simulation went back to
+	 */
+	public int getStepCounter() {
+		return stepCounter;
 	}
 
 	/**
-	 * push the current state of the network onto a stack
+	 * Puts the messages, metrics and counters back to what they were before a step
+	 * @param delta the state of the messages before the step
 	 */
-	public void pushStateToStack(){
-		if(!stepBackClicked)
-		{
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			ObjectOutputStream oos;
-			try {
-				oos = new ObjectOutputStream(bos);
-				oos.writeObject(topology);
-				oos.flush();
-				oos.close();
-				bos.close();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} 
-			byte[] byteData = bos.toByteArray();
+	void undoStep(StepDelta delta) {
+		delta.undo(topology);
+		messageCounter = delta.getMessageCounter();
+		stepCounter = delta.getStepCounter();
+		markJournalsStale();
+	}
 
+	/**
+	 * Goes back to a full copy of an earlier state
+	 * @param keyframe the copy of the state
+	 */
+	void restoreKeyframe(Keyframe keyframe) {
+		awaitRoutingTables();
+		NetworkTopology copyTopology = keyframe.readTopology();
+		if (keyframe.getRoutingAlgorithm() != null) {
+			chosenRoutingAlgorithm = keyframe.getRoutingAlgorithm();
+		}
+		messageCounter = keyframe.getMessageCounter();
+		messageGenerationRate = keyframe.getMessageGenerationRate();
+		topology = copyTopology;
+		stepCounter = keyframe.getStepCounter();
+		// the keyframe may undo edits, which the journals can't hold
+		markJournalsStale();
+		if (!hasRoutingTables(topology)) {
+			// mapped routing tables are left out of the copy
+			buildRoutingTablesInBackground();
+		}
+	}
 
-			ByteArrayInputStream bais = new ByteArrayInputStream(byteData);
-			NetworkTopology copyTopology = null;
-			try {
-				copyTopology = (NetworkTopology) new ObjectInputStream(bais).readObject();
-			} catch (ClassNotFoundException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+	/**
+	 * Saves a keyframe of the current state of the network, which step back goes back to
+	 */
+	public void pushStateToStack(){
+		history.pushKeyframe(copyState());
+	}
 
+	/**
+	 * Copies the state before an edit of the topology. Edits can only be undone once a step was run.
+	 * @return a copy of the current state, or null if the edit can't be undone
+	 */
+	private Keyframe copyStateForEdit() {
+		return hasStepped ? copyState() : null;
+	}
 
+	/**
+	 * Saves the state from before an edit of the topology, so that step back undoes the edit
+	 * @param before the copy of the state before the edit, or null if the edit can't be undone
+	 */
+	private void pushEdit(Keyframe before) {
+		if (before != null) {
+			history.pushKeyframe(before);
+		}
+	}
 
+	/**
+	 * Copies the current state of the network
+	 * @return the copy, with the topology written out
+	 */
+	private Keyframe copyState() {
+		awaitRoutingTables();
+		return new Keyframe(topology, chosenRoutingAlgorithm, messageGenerationRate, messageCounter, stepCounter);
+	}
 
-			RoutingAlgorithm copyAlgorithm = chosenRoutingAlgorithm;
+	/**
+	 * Sets how much of the step back history is kept in memory. Once the history is over
+	 * budget, the oldest changes are compressed and written to a file, and read back when
+	 * step back reaches them. The timeline keeps what the history leaves of the budget.
+	 * @param maxBytes the most bytes of history kept in memory
+	 * @param maxSteps the most steps and other changes kept in memory
+	 */
+	public void setUndoBudget(long maxBytes, int maxSteps) {
+		history.setBudget(maxBytes, maxSteps);
+	}
 
-			stackOfGoodies.push(new ModelContainer(copyTopology, copyAlgorithm, 
-					messageGenerationRate, messageCounter, stepCounter));
-		}
-		stepBackClicked = false;
+	/**
+	 * @return roughly the number of bytes of step back history kept in memory
+	 */
+	public long getUndoHeapBytes() {
+		return history.getHeapBytes();
+	}
 
+	/**
+	 * @return the number of bytes of step back history written to disk
+	 */
+	public long getUndoSpillBytes() {
+		return history.getSpillBytes();
 	}
+
 	/**
 	 * If either of the remove buttons are pressed, a new stack is produced to prevent errors.
 	 */
 	public void clearStack(){
-		while(!stackOfGoodies.isEmpty()){
-			stackOfGoodies.pop();
-		}
+		history.clear();
 		somethingRemoved = false;
 	}
 
 	/**
 	 * Notify the view of a network topology change, if the case that something has been removed
 	 * the stack is cleared and any previous messages are deleted.
-	 * Only when a step has occured can someone step back.
 	 * 
 	 * @param topology the current network
 	 */
@@ -444,12 +747,20 @@ public class NetworkRoutingSimulatorModel extends Observable {
 		if(somethingRemoved) {
 			clearStack();
 		}
-		if(hasStepped){
-			pushStateToStack();
-		}
-		setChanged();
-		notifyObservers(new NetworkEvent(this, topology, messageCounter, baseMessageCounter));
+		publish(topology);
+	}
 
+	/**
+	 * Notify the view of the current network without clearing the stack
+	 *
+	 * @param topology the current network
+	 */
+	private void publish(NetworkTopology topology) {
+		NetworkEvent event = new NetworkEvent(this, topology, messageCounter, baseMessageCounter);
+		event.setUndoHistorySize(history.getHeapBytes(), history.getSpillBytes());
+		event.setTimeline(timeline.getFirstStep(), timeline.getLastStep(), stepCounter);
+		setChanged();
+		notifyObservers(event);
 	}
 
 	/**
@@ -462,10 +773,6 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 */
 	private void notifyView(NetworkTopology topology, ShapesContainer sc) {
 		clearStack();
-		stackOfGoodies.push(new ModelContainer(new NetworkTopology(), new RandomRoutingAlgorithm(), 
-				1, 0, 0));
-		stackOfGoodies.push(new ModelContainer(topology, chosenRoutingAlgorithm, 
-				messageGenerationRate, messageCounter, stepCounter));
 		hasStepped = false;
 		setChanged();
 		notifyObservers(new NetworkEvent(this, topology, sc, true, messageCounter, baseMessageCounter));
@@ -475,45 +782,413 @@ public class NetworkRoutingSimulatorModel extends Observable {
 	 * @param routingAlgorithm the chosen RoutingAlgorithm to be set
 	 */
 	public void setRoutingAlgorithm(RoutingAlgorithm routingAlgorithm) {
+		awaitRoutingTables();
 		chosenRoutingAlgorithm = routingAlgorithm;
+		chosenRoutingAlgorithm.setPool(routingPool);
+		if (seed != null) {
+			chosenRoutingAlgorithm.setSeed(seed);
+		}
+		chosenRoutingAlgorithm.setLazyCacheSize(routingCacheSize);
 		chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+		markJournalsStale();
+	}
+
+	/**
+	 * Sets the pool the routing tables are built on. The routers of the topology are
+	 * split across the threads of the pool when the tables are set.
+	 * @param routingPool the pool to use, or null to build the tables on the calling thread
+	 */
+	public void setRoutingPool(ForkJoinPool routingPool) {
+		awaitRoutingTables();
+		this.routingPool = routingPool;
+		chosenRoutingAlgorithm.setPool(routingPool);
 	}
 
 	/**
-	 * Exports the state of the model and panel into an xml
+	 * Sets the pool the steps are run on. The routers are split across the threads of
+	 * the pool, which gives the same messages and metrics as a step on the calling thread.
+	 * Flooding steps are always run on the calling thread.
+	 * @param stepPool the pool to use, or null to run the steps on the calling thread
+	 */
+	public void setStepPool(ForkJoinPool stepPool) {
+		forwarder = stepPool == null ? null : new PartitionedForwarder(stepPool);
+	}
+
+	/**
+	 * Seeds the choice of the source and destination of new messages, and the random
+	 * choices of the routing algorithm, so that a simulation can be run again with the same results
+	 * @param seed the seed of the random choices
+	 */
+	public void setSeed(long seed) {
+		awaitRoutingTables();
+		this.seed = seed;
+		random = new Random(seed);
+		chosenRoutingAlgorithm.setSeed(seed);
+	}
+
+	/**
+	 * Sets how many destination trees are kept by the routing algorithms that can build
+	 * their routing tables lazily. The routes to a destination are then only worked out
+	 * once a message is sent to it, and the least recently used ones are dropped.
+	 * @param routingCacheSize the number of destinations to keep routes for, or 0 to build full routing tables
+	 */
+	public void setLazyRoutingCacheSize(int routingCacheSize) {
+		awaitRoutingTables();
+		this.routingCacheSize = routingCacheSize;
+		chosenRoutingAlgorithm.setLazyCacheSize(routingCacheSize);
+		chosenRoutingAlgorithm.forceSetRoutingTables(topology);
+	}
+
+	/**
+	 * Exports the state of the model and panel into an xml of the compact schema, or into
+	 * the binary format if the file has its extension
 	 * @param file the location to save the xml to, including file name and extension
 	 * @param panel the current panel to be saved
 	 */
 	public void saveState(File file, ShapesContainer sc) {
+		awaitRoutingTables();
 		xmlState.setModelContainer(new ModelContainer(topology, chosenRoutingAlgorithm, 
 				messageGenerationRate, messageCounter, stepCounter));
 		xmlState.setShapesContainer(sc);
-		XMLStateSerializer stateSerializer = new XMLStateSerializer();
-		stateSerializer.serialize(file, xmlState);
+		writeState(file, xmlState, null);
+	}
+
+	/**
+	 * Copies the state of the model and panel, so that the copy can be saved on another
+	 * thread while the network is stepped and edited
+	 * @param sc the shapes of the panel
+	 * @return a state holding a copy of the network and of the shapes
+	 */
+	public XMLState snapshotState(ShapesContainer sc) {
+		Keyframe keyframe = copyState();
+		XMLState snapshot = new XMLState();
+		// the routing algorithm is only saved by name, so it isn't copied
+		snapshot.setModelContainer(new ModelContainer(keyframe.readTopology(), chosenRoutingAlgorithm,
+				messageGenerationRate, messageCounter, stepCounter));
+		snapshot.setShapesContainer(sc.copy());
+		return snapshot;
+	}
+
+	/**
+	 * Writes a state into an xml of the compact schema, or into the binary format if the file
+	 * has its extension. The state is written to a file next to the given one, which replaces
+	 * it once the whole state is written, so a save that fails or is cancelled leaves the file
+	 * as it was. This can run on any thread, and is cancelled by interrupting the thread.
+	 * @param file the location to save to, including file name and extension
+	 * @param state the state to save, which must not be changed while it is written
+	 * @param progressListener the listener told how much of the state was written, or null
+	 * @return true if the file was saved
+	 */
+	public static boolean writeState(File file, XMLState state, ProgressListener progressListener) {
+		File partial = new File(file.getAbsoluteFile().getParentFile(), file.getName() + PARTIAL_FILE_SUFFIX);
+		boolean written;
+		if (BinaryStateSerializer.isBinaryFile(file)) {
+			BinaryStateSerializer serializer = new BinaryStateSerializer();
+			serializer.setProgressListener(progressListener);
+			written = serializer.serialize(partial, state);
+		} else {
+			XMLStateSerializer stateSerializer = new XMLStateSerializer(true);
+			stateSerializer.setProgressListener(progressListener);
+			written = stateSerializer.serialize(partial, state);
+		}
+		try {
+			if (written && !Thread.currentThread().isInterrupted()) {
+				Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+				return true;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		partial.delete();
+		return false;
 	}
 
 	/**
-	 * Imports the xml and sets the state of the model and panel
+	 * Reads a state from an xml, or from the binary format if the file has its extension,
+	 * then replays the journal of the file onto it, without changing the model. This can run
+	 * on any thread, and is cancelled by interrupting the thread.
+	 * @param file the file to restore from
+	 * @param progressListener the listener told how much of the file was read, or null
+	 * @return the state read, or null if the file can't be read or the restore was cancelled
+	 */
+	public static XMLState readState(File file, ProgressListener progressListener) {
+		XMLState state = new XMLState();
+		if (BinaryStateSerializer.isBinaryFile(file)) {
+			BinaryStateSerializer serializer = new BinaryStateSerializer();
+			serializer.setProgressListener(progressListener);
+			serializer.deserialize(file, state);
+		} else {
+			XMLStateSerializer stateSerializer = new XMLStateSerializer();
+			stateSerializer.setProgressListener(progressListener);
+			stateSerializer.deserialize(file, state);
+		}
+		if (state.getModelContainer() == null || Thread.currentThread().isInterrupted()) {
+			return null;
+		}
+		// the edits made since the file was saved, including before a crash
+		EditJournal.replay(EditJournal.journalFileOf(file), state);
+		return state;
+	}
+
+	/**
+	 * Imports the xml, or the binary format if the file has its extension, with the edits of
+	 * its journal, and sets the state of the model and panel. The model is left as it was if
+	 * the file can't be read.
 	 * @param file the location to save the xml to, including file name and extension
 	 */
 	public void restoreState(File file) {
-		XMLStateSerializer stateSerializer = new XMLStateSerializer();
-		stateSerializer.deserialize(file, xmlState);
+		XMLState state = readState(file, null);
+		if (state != null) {
+			applyState(state);
+		}
+	}
+
+	/**
+	 * Sets the state of the model and panel to a state that was read from a file
+	 * @param state the state read by readState
+	 */
+	public void applyState(XMLState state) {
+		awaitRoutingTables();
+		// the edits of the restored network belong to the journal of the file it came from
+		closeJournal();
+		xmlState = state;
 		ModelContainer newModelContainer = xmlState.getModelContainer();
 		this.topology = newModelContainer.getTopology();
 		this.chosenRoutingAlgorithm = newModelContainer.getChosenRoutingAlgorithm();
+		this.chosenRoutingAlgorithm.setPool(routingPool);
+		this.chosenRoutingAlgorithm.setLazyCacheSize(routingCacheSize);
+		if (seed != null) {
+			this.chosenRoutingAlgorithm.setSeed(seed);
+		}
 		this.messageGenerationRate = newModelContainer.getMessageGenerationRate();
 		this.messageCounter = newModelContainer.getMessageCounter();
 		this.stepCounter = newModelContainer.getStepCounter();
 		this.baseMessageCounter = messageCounter;
+		timeline.clear();
+		if (hasRoutingTables(topology)) {
+			// files of the old xml schema and binary files of single next hop tables keep the
+			// routing tables, binary files map them instead of reading them
+			chosenRoutingAlgorithm.routingTablesRestored();
+		} else {
+			// the other files have them built again in the background while the restored network is shown
+			buildRoutingTablesInBackground();
+		}
 		notifyView(this.topology, xmlState.getShapesContainer());
 	}
 
 	/**
-	 * Sets the boolean that states that the step back was clicked
+	 * Starts keeping the edits of the network in the journal of a file that holds the
+	 * current state, such as the file it was just restored from. The edits already in the
+	 * journal are kept.
+	 * @param file the saved network
+	 * @param sc the shapes of the panel, saved with the network when the journal is compacted
+	 */
+	public void openJournal(File file, ShapesContainer sc) {
+		closeJournal();
+		journal = EditJournal.open(EditJournal.journalFileOf(file), true);
+		if (journal != null) {
+			journalFile = file;
+			journalShapes = sc;
+			journalStale = false;
+		}
+	}
+
+	/**
+	 * Starts an empty journal for a file a copy of the network is being saved to, which
+	 * keeps the edits made after the copy was taken. Until endJournal is called, the edits
+	 * are also kept in the journal already open.
+	 * @param file the file the copy is saved to
+	 * @param sc the shapes of the panel
+	 */
+	public void beginJournal(File file, ShapesContainer sc) {
+		endJournal(false);
+		pendingJournal = EditJournal.open(pendingJournalFileOf(file), false);
+		if (pendingJournal != null) {
+			pendingFile = file;
+			pendingShapes = sc;
+			pendingStale = false;
+		}
+	}
+
+	/**
+	 * Ends the journal started by beginJournal. If the copy was saved, the journal replaces
+	 * the one of the file and is kept open, otherwise it is dropped.
+	 * @param saved true if the copy of the network was saved
+	 */
+	public void endJournal(boolean saved) {
+		if (pendingJournal == null) {
+			return;
+		}
+		pendingJournal.close();
+		pendingJournal = null;
+		File pending = pendingJournalFileOf(pendingFile);
+		if (saved) {
+			closeJournal();
+			try {
+				Files.move(pending.toPath(), EditJournal.journalFileOf(pendingFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+				openJournal(pendingFile, pendingShapes);
+				journalStale = pendingStale;
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		pending.delete();
+		pendingFile = null;
+		pendingShapes = null;
+	}
+
+	/**
+	 * Writes the edits kept in memory to the journal, which saves the network in time in the
+	 * number of edits since the last flush. If the network changed in a way the journal can't
+	 * hold since it was started, such as a step, the network is saved whole instead and the
+	 * journal started again.
+	 */
+	public void flushJournal() {
+		if (journal == null) {
+			return;
+		}
+		if (journalStale && pendingJournal == null) {
+			compactJournal();
+		} else {
+			journal.flush();
+		}
+	}
+
+	/**
+	 * Writes the edits kept in memory and stops keeping edits
+	 */
+	public void closeJournal() {
+		if (journal != null) {
+			journal.close();
+			journal = null;
+			journalFile = null;
+			journalShapes = null;
+		}
+	}
+
+	/**
+	 * @param file a saved network
+	 * @return true if the edits of the network are kept in the journal of the file
+	 */
+	public boolean isJournaling(File file) {
+		return journal != null && journalFile.getAbsoluteFile().equals(file.getAbsoluteFile());
+	}
+
+	/**
+	 * @return true if the network changed in a way the journal can't hold since the file was
+	 * last saved whole, such as a step, so that flushing the journal would not save it
+	 */
+	public boolean hasUnjournaledChanges() {
+		return journal != null && journalStale;
+	}
+
+	/**
+	 * @return the saved network whose journal keeps the edits, or null if edits are not kept
+	 */
+	public File getJournalFile() {
+		return journalFile;
+	}
+
+	/**
+	 * Sets the size of the journal above which the network is saved whole, and the journal started again
+	 * @param journalCompactionSize the most bytes of the journal
+	 */
+	public void setJournalCompactionSize(long journalCompactionSize) {
+		this.journalCompactionSize = journalCompactionSize;
+	}
+
+	/**
+	 * Adds an edit to the open journals, and compacts the journal once it is too large
+	 * @param edit the edit to add
+	 */
+	private void journal(Consumer<EditJournal> edit) {
+		if (journal != null) {
+			edit.accept(journal);
+		}
+		if (pendingJournal != null) {
+			edit.accept(pendingJournal);
+		}
+		if (journal != null && pendingJournal == null && journal.size() > journalCompactionSize) {
+			compactJournal();
+		}
+	}
+
+	/**
+	 * Marks the open journals as missing a change of the network, so that the network is
+	 * saved whole instead of flushing them
+	 */
+	private void markJournalsStale() {
+		journalStale = journal != null;
+		pendingStale = pendingJournal != null;
+	}
+
+	/**
+	 * Saves the network whole to the file of the journal, and starts the journal again
+	 */
+	private void compactJournal() {
+		File file = journalFile;
+		ShapesContainer sc = journalShapes;
+		XMLState state = new XMLState();
+		state.setModelContainer(new ModelContainer(topology, chosenRoutingAlgorithm,
+				messageGenerationRate, messageCounter, stepCounter));
+		state.setShapesContainer(sc);
+		beginJournal(file, sc);
+		endJournal(writeState(file, state, null));
+	}
+
+	/**
+	 * @param file a file a copy of the network is being saved to
+	 * @return the journal of the edits made since the copy was taken
+	 */
+	private static File pendingJournalFileOf(File file) {
+		File journalFile = EditJournal.journalFileOf(file);
+		return new File(journalFile.getParentFile(), journalFile.getName() + PARTIAL_FILE_SUFFIX);
+	}
+
+	/**
+	 * @param topology a network
+	 * @return true if every router of the network has a routing table
+	 */
+	private static boolean hasRoutingTables(NetworkTopology topology) {
+		for (Router router : topology.getRouters()) {
+			if (router.getRoutingTable() == null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds the routing tables of the network on the routing pool, or the common pool, while
+	 * the network is shown
+	 */
+	private void buildRoutingTablesInBackground() {
+		RoutingAlgorithm algorithm = chosenRoutingAlgorithm;
+		NetworkTopology restored = topology;
+		ForkJoinPool pool = routingPool != null ? routingPool : ForkJoinPool.commonPool();
+		routingTablesTask = pool.submit(() -> algorithm.forceSetRoutingTables(restored));
+	}
+
+	/**
+	 * Waits for the routing tables being built in the background after a restore, so that
+	 * the network is not changed or stepped while they are built
+	 */
+	private void awaitRoutingTables() {
+		if (routingTablesTask != null) {
+			try {
+				routingTablesTask.join();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+			routingTablesTask = null;
+		}
+	}
+
+	/**
+	 * @return true if the routing tables of a restored network are still being built in the background
 	 */
-	protected void setStepBackClicked(){
-		stepBackClicked = true;
+	public boolean isBuildingRoutingTables() {
+		return routingTablesTask != null && !routingTablesTask.isDone();
 	}
 
 	/**
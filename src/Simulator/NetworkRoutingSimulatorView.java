@@ -23,12 +23,15 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
+import javax.swing.JSlider;
 import javax.swing.JTextField;
 import javax.swing.UIManager;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.LineBorder;
+import javax.swing.event.ChangeListener;
 
 import Model.NetworkEvent;
 import Model.NetworkTopology;
@@ -54,6 +57,8 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 
 	private static final String AVERAGE_NUMBER_OF_HOPS_TITLE = "Average Hops";
 	private static final String TOTAL_PACKETS_TRANSMITTED_TITLE = "Packets Transmitted";
+	private static final String UNDO_HISTORY_TITLE = "Undo History";
+	private static final String TIMELINE_TITLE = "Timeline";
 	private static final String METRICS_TITLE = "Metrics";
 	private static final String CONNECTIONS_TITLE = "Connections";
 	private static final String ROUTERS_TITLE = "Routers";
@@ -72,6 +77,8 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 	private static final String REMOVE_CONNECTION_NAME = "Remove";
 	public static final String REMOVE_CONNECTION = "Remove Connection";
 	public static final String ADD_CONNECTION_NAME = "Add";
+	private static final String CONNECTION_WEIGHT_NAME = "Weight";
+	public static final String CONNECTION_WEIGHT = "Connection Weight";
 	private static final String ADD_ROUTER_NAME = "Add";
 	public static final String REMOVE_ROUTER = "Remove Router";
 	private static final String REMOVE_ROUTER_NAME = "Remove";
@@ -82,6 +89,7 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 	private static final int FRAME_DEFAULT_HEIGHT = 600;
 	private static final int VERTICAL_SCROLLBAR_INCREMENT = 16;
 	public static final String UNDO_NAME = "Undo";
+	public static final String CANCEL_FILE_NAME = "Cancel";
 
 	private NetworkRoutingSimulatorController controller;
 	private TopologyPanel centerTopologyPanelView;
@@ -89,6 +97,14 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 	private List<Image> frameIcons;
 	private JTextField totalPacketsMetricValue;
 	private JTextField averageHopsMetricValue;
+	private JTextField undoHistoryMetricValue;
+	private JSlider timeline;
+	// true while the timeline is set from the model, so that the change isn't taken as a seek
+	private boolean updatingTimeline;
+	private JPanel fileProgressPanel;
+	private JProgressBar fileProgress;
+	private JMenuItem restoreMenu;
+	private JMenuItem saveMenu;
 
 	JMenuItem undoMenu = new JMenuItem(UNDO_NAME);
 
@@ -116,6 +132,7 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 			createMenuBar();
 			createTopologyView();
 			createTopologyControls();
+			createTimeline();
 			centerTopologyPanelView.setController(controller);
 			setLocationRelativeTo(null);
 			setVisible(true);
@@ -130,8 +147,8 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 
 		JMenu fileMenu = new JMenu(FILE_MENU_NAME);
 
-		JMenuItem restoreMenu = new JMenuItem(RESTORE_MENU_NAME);
-		JMenuItem saveMenu = new JMenuItem(SAVE_MENU_NAME);
+		restoreMenu = new JMenuItem(RESTORE_MENU_NAME);
+		saveMenu = new JMenuItem(SAVE_MENU_NAME);
 		JMenuItem exitMenu = new JMenuItem(EXIT_MENU_NAME);
 		fileMenu.add(restoreMenu);
 		fileMenu.add(saveMenu);
@@ -272,6 +289,16 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 		removeConnection.addActionListener(controller);
 		topologyControls.add(removeConnection);
 
+		topologyControls.add(Box.createVerticalStrut(5));
+
+		JButton connectionWeight = new JButton(CONNECTION_WEIGHT_NAME);
+		connectionWeight.setActionCommand(CONNECTION_WEIGHT);
+		connectionWeight.setFocusPainted(false);
+		Font f7 = connectionWeight.getFont();
+		connectionWeight.setFont(f7.deriveFont(f7.getStyle() ^ Font.BOLD));
+		connectionWeight.addActionListener(controller);
+		topologyControls.add(connectionWeight);
+
 		topologyControls.add(Box.createVerticalStrut(40));
 
 		JLabel metricsTitle = new JLabel(METRICS_TITLE);
@@ -312,14 +339,126 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 		averageHopsMetricValue.setText("0.0"); // initial display value before getting an update from model
 		topologyControls.add(averageHopsMetricValue);
 
+		topologyControls.add(Box.createVerticalStrut(10));
+
+		JLabel undoHistoryMetricTitle = new JLabel(UNDO_HISTORY_TITLE);
+		undoHistoryMetricTitle.setFont(subHeaderFont);
+		topologyControls.add(undoHistoryMetricTitle);
+
+		topologyControls.add(Box.createVerticalStrut(5));
+
+		undoHistoryMetricValue = new JTextField();
+		undoHistoryMetricValue.setEditable(false);
+		undoHistoryMetricValue.setBackground(UIManager.getColor("TextField.background"));
+		undoHistoryMetricValue.setHorizontalAlignment(JTextField.CENTER);
+		undoHistoryMetricValue.setMaximumSize(maxTextFieldSize);
+		updateUndoHistoryMetricValue(0, 0); // initial display value before getting an update from model
+		topologyControls.add(undoHistoryMetricValue);
+
 		addConnection.setMaximumSize(maxButtonSize);
 		removeConnection.setMaximumSize(maxButtonSize);
+		connectionWeight.setMaximumSize(maxButtonSize);
 
 		topologyControls.setBorder(new CompoundBorder(new LineBorder(Color.WHITE), new EmptyBorder(10, 10, 10, 10)));
 
 		add(topologyControls, BorderLayout.EAST);
 	}
 
+	/**
+	 * Creates the slider at the bottom of the GUI that goes to any step that was run
+	 */
+	private void createTimeline() {
+		JPanel timelinePanel = new JPanel(new BorderLayout(10, 0));
+		timelinePanel.add(new JLabel(TIMELINE_TITLE), BorderLayout.WEST);
+
+		timeline = new JSlider(0, 0, 0);
+		timeline.setPaintLabels(false);
+		timeline.setEnabled(false); // enabled once the model has run a step
+		timelinePanel.add(timeline, BorderLayout.CENTER);
+
+		// shown next to the timeline while a file is saved or restored
+		fileProgressPanel = new JPanel(new BorderLayout(5, 0));
+		fileProgress = new JProgressBar(0, 100);
+		fileProgress.setStringPainted(true);
+		fileProgressPanel.add(fileProgress, BorderLayout.CENTER);
+		JButton cancelFile = new JButton(CANCEL_FILE_NAME);
+		cancelFile.setActionCommand(CANCEL_FILE_NAME);
+		cancelFile.addActionListener(controller);
+		fileProgressPanel.add(cancelFile, BorderLayout.EAST);
+		fileProgressPanel.setVisible(false);
+		timelinePanel.add(fileProgressPanel, BorderLayout.EAST);
+
+		timelinePanel.setBorder(new EmptyBorder(5, 10, 5, 10));
+		add(timelinePanel, BorderLayout.SOUTH);
+	}
+
+	/**
+	 * Sets the listener for the timeline, which is only told of the steps picked by the user
+	 * once the slider is let go
+	 * @param listenForTimeline the listener of the step picked on the timeline
+	 */
+	public void addTimelineListener(ChangeListener listenForTimeline) {
+		timeline.addChangeListener(e -> {
+			if (!updatingTimeline && !timeline.getValueIsAdjusting()) {
+				listenForTimeline.stateChanged(e);
+			}
+		});
+	}
+
+	/**
+	 * @return the step picked on the timeline
+	 */
+	public int getTimelineStep() {
+		return timeline.getValue();
+	}
+
+	/**
+	 * @param firstStep the first step the timeline can go to, or -1 if there is none
+	 * @param lastStep the last step the timeline can go to, or -1 if there is none
+	 * @param step the step the model is at
+	 */
+	private void updateTimeline(int firstStep, int lastStep, int step) {
+		updatingTimeline = true;
+		if (firstStep < 0) {
+			timeline.getModel().setRangeProperties(0, 0, 0, 0, false);
+		} else {
+			timeline.getModel().setRangeProperties(Math.max(firstStep, Math.min(step, lastStep)), 0, firstStep, lastStep, false);
+		}
+		timeline.setEnabled(firstStep >= 0 && lastStep > firstStep);
+		updatingTimeline = false;
+	}
+
+	/**
+	 * Shows the progress bar of a file being saved or restored, and disables saving and
+	 * restoring until it is hidden
+	 * @param task what is being done to the file, shown on the bar
+	 */
+	public void showFileProgress(String task) {
+		fileProgress.setValue(0);
+		fileProgress.setString(task);
+		fileProgressPanel.setVisible(true);
+		restoreMenu.setEnabled(false);
+		saveMenu.setEnabled(false);
+		revalidate();
+	}
+
+	/**
+	 * @param percent how much of the file was saved or restored, from 0 to 100
+	 */
+	public void setFileProgress(int percent) {
+		fileProgress.setValue(percent);
+	}
+
+	/**
+	 * Hides the progress bar once the file is saved or restored, or the save or restore was cancelled
+	 */
+	public void hideFileProgress() {
+		fileProgressPanel.setVisible(false);
+		restoreMenu.setEnabled(true);
+		saveMenu.setEnabled(true);
+		revalidate();
+	}
+
 	/**
 	 * Shows the user manual to the user, containing instructions for using the GUI
 	 */
@@ -412,6 +551,15 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 		averageHopsMetricValue.setText(Float.toString(value));
 	}
 
+	/**
+	 * @param heapBytes the bytes of step back history kept in memory
+	 * @param spillBytes the bytes of step back history written to disk
+	 */
+	private void updateUndoHistoryMetricValue(long heapBytes, long spillBytes) {
+		undoHistoryMetricValue.setText(String.format("%.1f MB in memory, %.1f MB on disk",
+				heapBytes / (1024.0 * 1024.0), spillBytes / (1024.0 * 1024.0)));
+	}
+
 	/**
 	 * This method is called whenever the observed object is changed. An
 	 * application calls an Observable object's
@@ -443,6 +591,8 @@ public class NetworkRoutingSimulatorView extends JFrame implements Observer {
 			}
 			updateTotalPacketsMetricValue(topology.getTotalPacketsTransmittedMetric());
 			updateAverageHopsMetricValue(topology.getAverageHopsMetric());
+			updateUndoHistoryMetricValue(ne.getUndoHeapBytes(), ne.getUndoSpillBytes());
+			updateTimeline(ne.getTimelineFirstStep(), ne.getTimelineLastStep(), ne.getStep());
 		}
 	}
 }
@@ -0,0 +1,274 @@
+package Simulator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import Model.Message;
+import Model.NetworkTopology;
+import Model.Router;
+import Model.RoutingTable;
+
+/**
+ * Forwards the messages of a step on the threads of a pool. The routers are split into
+ * partitions of consecutive routers. First every partition works out where its messages
+ * go, keeping the messages sent to each other partition in its own outbox. Once every
+ * partition is done, each partition delivers the messages sent to its routers, reading
+ * the outboxes in the order of the partitions they came from. A router therefore receives
+ * its messages in the same order as when the routers are gone through one by one, and
+ * the step gives the same result as the sequential one for any number of threads.
+ *
+ * Flooded messages are sent to a router only by the first router to get to it, which
+ * depends on the order of every router, so flooding steps are not forwarded here.
+ */
+class PartitionedForwarder {
+
+	// the number of partitions per thread of the pool, more partitions even out uneven routers
+	private static final int PARTITIONS_PER_THREAD = 4;
+
+	private final ForkJoinPool pool;
+
+	// the routers of the topology in the order they are gone through, kept until the topology changes
+	private NetworkTopology topology;
+	private long version;
+	private Router[] routers;
+	private int[] partitionStarts;
+	private int[] partitions;
+
+	// outboxes[from][to] holds the messages sent from partition from to partition to
+	private Outbox[][] outboxes;
+	private int[] packetsTransmitted;
+	private int[] messagesReachedDest;
+
+	/**
+	 * @param pool the pool the steps are run on
+	 */
+	PartitionedForwarder(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @return the pool the steps are run on
+	 */
+	ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Forwards every message stored in the routers of the topology to its next router
+	 * @param topology the network whose messages are forwarded
+	 * @param stamp a number identifying the step, greater than any given before
+	 */
+	void forward(NetworkTopology topology, int stamp) {
+		partition(topology);
+		int numberOfPartitions = partitionStarts.length - 1;
+		pool.invoke(new StepTask(stamp));
+		for (int p = 0; p < numberOfPartitions; p++) {
+			topology.incrementTotalPacketsTransmittedMetric(packetsTransmitted[p]);
+			topology.incrementNumMessagesReachedDest(messagesReachedDest[p]);
+		}
+	}
+
+	/**
+	 * Splits the routers of the topology into partitions, unless the topology did not change
+	 * since they were last split
+	 * @param topology the network whose messages are forwarded
+	 */
+	private void partition(NetworkTopology topology) {
+		if (this.topology == topology && version == topology.getVersion()) {
+			return;
+		}
+		this.topology = topology;
+		version = topology.getVersion();
+		routers = topology.getRouters().toArray(new Router[0]);
+
+		int numberOfPartitions = Math.max(1, Math.min(routers.length, pool.getParallelism() * PARTITIONS_PER_THREAD));
+		partitionStarts = new int[numberOfPartitions + 1];
+		partitions = new int[topology.getRouterIdCapacity()];
+		for (int p = 0; p < numberOfPartitions; p++) {
+			partitionStarts[p + 1] = (int) ((long) routers.length * (p + 1) / numberOfPartitions);
+			for (int i = partitionStarts[p]; i < partitionStarts[p + 1]; i++) {
+				partitions[routers[i].getId()] = p;
+			}
+		}
+		if (outboxes == null || outboxes.length != numberOfPartitions) {
+			outboxes = new Outbox[numberOfPartitions][numberOfPartitions];
+			for (Outbox[] row : outboxes) {
+				for (int q = 0; q < numberOfPartitions; q++) {
+					row[q] = new Outbox();
+				}
+			}
+			packetsTransmitted = new int[numberOfPartitions];
+			messagesReachedDest = new int[numberOfPartitions];
+		}
+	}
+
+	/**
+	 * Returns the partition that delivers the messages sent to a router. Routers that are no
+	 * longer in the topology are still given a partition, so that they are only used by one thread.
+	 * @param router the router a message is sent to
+	 * @return the partition of the router
+	 */
+	private int partitionOf(Router router) {
+		int id = router.getId();
+		return id >= 0 && id < partitions.length ? partitions[id] : 0;
+	}
+
+	/**
+	 * Runs the sending tasks of every partition, then the delivering tasks
+	 */
+	private class StepTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -2260455813360834466L;
+
+		private final int stamp;
+
+		/**
+		 * @param stamp a number identifying the step
+		 */
+		StepTask(int stamp) {
+			this.stamp = stamp;
+		}
+
+		@Override
+		protected void compute() {
+			int numberOfPartitions = partitionStarts.length - 1;
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>(numberOfPartitions);
+			for (int p = 0; p < numberOfPartitions; p++) {
+				tasks.add(new SendTask(p, stamp));
+			}
+			// invokeAll() only returns once every partition has sent its messages
+			invokeAll(tasks);
+
+			tasks.clear();
+			for (int p = 0; p < numberOfPartitions; p++) {
+				tasks.add(new DeliverTask(p));
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * Works out the next routers of the messages of one partition
+	 */
+	private class SendTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 3178474617383318020L;
+
+		private final int partition;
+		private final int stamp;
+
+		/**
+		 * @param partition the partition whose messages are sent
+		 * @param stamp a number identifying the step
+		 */
+		SendTask(int partition, int stamp) {
+			this.partition = partition;
+			this.stamp = stamp;
+		}
+
+		@Override
+		protected void compute() {
+			Outbox[] outbox = outboxes[partition];
+			int transmitted = 0;
+			int reachedDest = 0;
+			for (int r = partitionStarts[partition]; r < partitionStarts[partition + 1]; r++) {
+				Router router = routers[r];
+				RoutingTable routingTable = router.getRoutingTable();
+				List<Message> messages = router.getStoredMessages();
+				for (int m = 0; m < messages.size(); m++) {
+					Message message = messages.get(m);
+					Router destination = message.getDestination();
+
+					int nextRouterCount = routingTable.getNextHopCount(destination);
+					if (nextRouterCount != 0) {
+						// flooding leaves the same message stored in several routers, and the copies stay
+						// once another algorithm is chosen, so they may be sent from other partitions at
+						// the same time
+						synchronized (message) {
+							for (int i = 0; i < nextRouterCount; i++) {
+								Router nextRouter = routingTable.getNextHop(destination, i);
+								outbox[partitionOf(nextRouter)].add(nextRouter, message);
+								transmitted++;
+							}
+							if (message.markSent(stamp)) {
+								message.incrementSteps();
+							}
+						}
+					} else {
+						//message is at destination
+						reachedDest++;
+					}
+				}
+			}
+			packetsTransmitted[partition] = transmitted;
+			messagesReachedDest[partition] = reachedDest;
+		}
+	}
+
+	/**
+	 * Delivers the messages sent to the routers of one partition, and ends the step for them
+	 */
+	private class DeliverTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -6460937437066391208L;
+
+		private final int partition;
+
+		/**
+		 * @param partition the partition whose routers receive the messages
+		 */
+		DeliverTask(int partition) {
+			this.partition = partition;
+		}
+
+		@Override
+		protected void compute() {
+			for (Outbox[] row : outboxes) {
+				row[partition].deliver();
+			}
+			for (int r = partitionStarts[partition]; r < partitionStarts[partition + 1]; r++) {
+				routers[r].swapMessages();
+			}
+		}
+	}
+
+	/**
+	 * The messages sent from one partition to another during a step, with the router each one
+	 * is sent to. The arrays are kept from one step to the next.
+	 */
+	private static class Outbox {
+
+		private Router[] routers = new Router[16];
+		private Message[] messages = new Message[16];
+		private int size;
+
+		/**
+		 * @param router the router the message is sent to
+		 * @param message the message being sent
+		 */
+		void add(Router router, Message message) {
+			if (size == routers.length) {
+				routers = Arrays.copyOf(routers, size * 2);
+				messages = Arrays.copyOf(messages, size * 2);
+			}
+			routers[size] = router;
+			messages[size++] = message;
+		}
+
+		/**
+		 * Gives every message to the router it was sent to, and empties the outbox
+		 */
+		void deliver() {
+			for (int i = 0; i < size; i++) {
+				routers[i].receiveMessage(messages[i]);
+				routers[i] = null;
+				messages[i] = null;
+			}
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package Simulator;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import Model.Message;
+import Model.NetworkTopology;
+import Model.Router;
+
+/**
+ * What a step changes in the simulation, kept so that the step can be undone without a copy
+ * of the whole topology. A step moves every stored message, creates new ones and drops those
+ * that reached their destination, so the delta holds where each message was stored before the
+ * step, with the number of jumps it had taken, along with the metrics and counters of the model.
+ *
+ * Routers and messages are kept by id, so a delta can be undone on a copy of the topology it
+ * was recorded on, as long as no router was added or removed in between.
+ */
+class StepDelta implements Serializable {
+
+	private static final long serialVersionUID = -4038315985016467155L;
+
+	private final int stepCounter;
+	private final int messageCounter;
+	private final int totalPacketsTransmitted;
+	private final int numMessagesReachedDest;
+
+	// the messages stored before the step, a message stored in several routers is kept once
+	private final int[] messageIds;
+	private final int[] sourceIds;
+	private final int[] destinationIds;
+	private final int[] steps;
+	// the ids of the routers each flooded message passed through, null for other messages
+	private final int[][] passedThroughIds;
+
+	// the routers the messages were stored in, in the order they were stored, with the index
+	// of the message in the arrays above
+	private final int[] storedRouterIds;
+	private final int[] storedMessages;
+
+	/**
+	 * Records the state of the messages before a step
+	 * @param topology the network the step is run on
+	 * @param stepCounter the number of steps run before the step
+	 * @param messageCounter the number of messages created before the step
+	 */
+	StepDelta(NetworkTopology topology, int stepCounter, int messageCounter) {
+		this.stepCounter = stepCounter;
+		this.messageCounter = messageCounter;
+		totalPacketsTransmitted = topology.getTotalPacketsTransmittedMetric();
+		numMessagesReachedDest = topology.getNumMessagesReachedDest();
+
+		Set<Router> routers = topology.getRouters();
+		int stored = 0;
+		for (Router router : routers) {
+			stored += router.getStoredMessages().size();
+		}
+		storedRouterIds = new int[stored];
+		storedMessages = new int[stored];
+
+		// flooding stores the same message in several routers, each one is kept once
+		Map<Message, Integer> indices = new IdentityHashMap<Message, Integer>();
+		int[] ids = new int[stored];
+		int[] sources = new int[stored];
+		int[] destinations = new int[stored];
+		int[] jumps = new int[stored];
+		int[][] passedThrough = new int[stored][];
+		int position = 0;
+		for (Router router : routers) {
+			List<Message> messages = router.getStoredMessages();
+			for (int m = 0; m < messages.size(); m++) {
+				Message message = messages.get(m);
+				Integer index = indices.get(message);
+				if (index == null) {
+					index = indices.size();
+					indices.put(message, index);
+					ids[index] = message.getID();
+					sources[index] = idOf(message.getSource());
+					destinations[index] = idOf(message.getDestination());
+					jumps[index] = message.getSteps();
+					passedThrough[index] = message.getPassedThroughIds();
+				}
+				storedRouterIds[position] = router.getId();
+				storedMessages[position++] = index;
+			}
+		}
+		int count = indices.size();
+		messageIds = Arrays.copyOf(ids, count);
+		sourceIds = Arrays.copyOf(sources, count);
+		destinationIds = Arrays.copyOf(destinations, count);
+		steps = Arrays.copyOf(jumps, count);
+		passedThroughIds = Arrays.copyOf(passedThrough, count);
+	}
+
+	/**
+	 * @return the number of steps run before the step
+	 */
+	int getStepCounter() {
+		return stepCounter;
+	}
+
+	/**
+	 * @return the number of messages created before the step
+	 */
+	int getMessageCounter() {
+		return messageCounter;
+	}
+
+	int getTotalPacketsTransmitted() {
+		return totalPacketsTransmitted;
+	}
+
+	int getNumMessagesReachedDest() {
+		return numMessagesReachedDest;
+	}
+
+	/**
+	 * @return the ids of the messages stored before the step, each message once. The returned
+	 * array is shared and must not be modified, like the other arrays of the delta.
+	 */
+	int[] getMessageIds() {
+		return messageIds;
+	}
+
+	/**
+	 * @return the ids of the source routers of the messages, in the order of getMessageIds()
+	 */
+	int[] getSourceIds() {
+		return sourceIds;
+	}
+
+	/**
+	 * @return the ids of the destination routers of the messages, in the order of getMessageIds()
+	 */
+	int[] getDestinationIds() {
+		return destinationIds;
+	}
+
+	/**
+	 * @param index the index of a message in getMessageIds()
+	 * @return the ids of the routers the message passed through, or null if it isn't flooded
+	 */
+	int[] getPassedThroughIds(int index) {
+		return passedThroughIds[index];
+	}
+
+	/**
+	 * @return roughly the number of bytes the delta takes up in memory
+	 */
+	long getSize() {
+		// the object and array headers, then the four id arrays and the references to the
+		// routers passed through, and the two arrays of stored messages
+		long size = 32 + 7 * 16 + 4L * (5 * messageIds.length + 2 * storedRouterIds.length);
+		for (int[] ids : passedThroughIds) {
+			if (ids != null) {
+				size += 16 + 4L * ids.length;
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Puts the messages of the topology back where they were stored before the step, and sets
+	 * the metrics back to what they were. The messages are stored as new message objects.
+	 * @param topology the network the step was run on, or a copy of it
+	 */
+	void undo(NetworkTopology topology) {
+		topology.clearMessages();
+		Message[] messages = new Message[messageIds.length];
+		for (int i = 0; i < storedRouterIds.length; i++) {
+			Router router = topology.getRouter(storedRouterIds[i]);
+			int index = storedMessages[i];
+			if (messages[index] == null) {
+				messages[index] = restoreMessage(topology, index);
+			}
+			if (router != null) {
+				router.storeMessage(messages[index]);
+			}
+		}
+		topology.restoreMetrics(totalPacketsTransmitted, numMessagesReachedDest);
+	}
+
+	/**
+	 * @param topology the network the message is restored in
+	 * @param index the index of the message in the delta
+	 * @return a new message as it was before the step
+	 */
+	private Message restoreMessage(NetworkTopology topology, int index) {
+		Message message = new Message(messageIds[index], topology.getRouter(sourceIds[index]),
+				topology.getRouter(destinationIds[index]), steps[index]);
+		if (passedThroughIds[index] != null) {
+			for (int id : passedThroughIds[index]) {
+				message.addRouter(topology.getRouter(id));
+			}
+		}
+		return message;
+	}
+
+	/**
+	 * @param router a router, or null
+	 * @return the id of the router, or -1 if there is no router
+	 */
+	private static int idOf(Router router) {
+		return router == null ? -1 : router.getId();
+	}
+}
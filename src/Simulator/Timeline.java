@@ -0,0 +1,555 @@
+package Simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import Model.Message;
+import Model.NetworkTopology;
+import Model.Router;
+
+/**
+ * An index of the states of the simulation by step, so that the simulation can be shown as it
+ * was at any step that was run. Every keyframeInterval states, a keyframe holds every stored
+ * message. The states in between are frames that only hold what the step changed: the routers
+ * whose stored messages changed, with the messages they store after it, and the messages
+ * created by the step. A state is put back from the keyframe before it and the frames up to
+ * it, which takes the same time however long the simulation ran.
+ *
+ * The states refer to routers and messages by id, so the timeline starts again whenever a router
+ * or link changes. Stepping on from an earlier state drops the states that came after it. The
+ * timeline shares the byte budget of the step back history: it keeps what the history leaves
+ * of the budget, and drops its oldest states first.
+ */
+class Timeline {
+
+	static final int DEFAULT_KEYFRAME_INTERVAL = 32;
+	static final int DEFAULT_MAX_STATES = 10000;
+
+	// the history whose byte budget the timeline shares
+	private final UndoHistory history;
+	private int keyframeInterval;
+	private int maxStates;
+
+	// the topology the states were recorded on, and its version
+	private NetworkTopology topology;
+	private long version;
+	// the states in the order they were recorded, the first one is always a keyframe
+	private final List<Frame> frames;
+	// roughly the number of bytes the states take up in memory
+	private long bytes;
+	// the state the simulation is in
+	private int position;
+	// the messages stored in each router at that state, see placementOf()
+	private Map<Integer, int[]> placement;
+
+	/**
+	 * Creates an empty timeline with the default keyframe interval and size
+	 * @param history the step back history the byte budget is shared with
+	 */
+	Timeline(UndoHistory history) {
+		this.history = history;
+		frames = new ArrayList<Frame>();
+		keyframeInterval = DEFAULT_KEYFRAME_INTERVAL;
+		maxStates = DEFAULT_MAX_STATES;
+		position = -1;
+	}
+
+	/**
+	 * Sets the number of states between keyframes and how many states are kept, the timeline starts again
+	 * @param keyframeInterval the number of states from one keyframe to the next, at least 1
+	 * @param maxStates the most states kept, the oldest are dropped first
+	 */
+	void setSize(int keyframeInterval, int maxStates) {
+		this.keyframeInterval = Math.max(1, keyframeInterval);
+		this.maxStates = Math.max(this.keyframeInterval * 2, maxStates);
+		clear();
+	}
+
+	/**
+	 * Makes the current state of the simulation the one steps are recorded from. If it is one
+	 * of the recorded states, such as after step back, the timeline goes back to it, otherwise
+	 * the timeline starts again from it.
+	 * @param topology the network of the model
+	 * @param step the number of steps run
+	 * @param messageCounter the number of messages created
+	 */
+	void sync(NetworkTopology topology, int step, int messageCounter) {
+		if (isRecording(topology)) {
+			for (int p = frames.size() - 1; p >= 0; p--) {
+				if (frames.get(p).matches(step, messageCounter)) {
+					position = p;
+					// the next frame holds what changed since the messages as they are now
+					placement = placementOf(topology);
+					return;
+				}
+			}
+		}
+		start(topology, step, messageCounter);
+	}
+
+	/**
+	 * Records the state after a step, dropping the states after the one the step was run from
+	 * @param topology the network of the model
+	 * @param step the number of steps run
+	 * @param messageCounter the number of messages created
+	 * @param flooding true if the messages were flooded during the step
+	 */
+	void append(NetworkTopology topology, int step, int messageCounter, boolean flooding) {
+		if (!isRecording(topology) || position < 0) {
+			start(topology, step, messageCounter);
+			return;
+		}
+		int previousMessageCounter = frames.get(position).messageCounter;
+		drop(position + 1, frames.size());
+		Map<Integer, int[]> next = placementOf(topology);
+		Frame frame;
+		if (frames.size() % keyframeInterval == 0) {
+			frame = new Frame(step, messageCounter, new StepDelta(topology, step, messageCounter));
+		} else {
+			frame = new Frame(topology, step, messageCounter, previousMessageCounter, flooding, placement, next);
+		}
+		placement = next;
+		frames.add(frame);
+		bytes += frame.size;
+		position = frames.size() - 1;
+		// drop whole intervals so that the first state is still a keyframe, the current state is in the last one
+		while (frames.size() > keyframeInterval && (frames.size() > maxStates || bytes > getMaxBytes())) {
+			drop(0, keyframeInterval);
+			position -= keyframeInterval;
+		}
+	}
+
+	/**
+	 * Puts back the messages and metrics of the topology as they were at a recorded step
+	 * @param topology the network of the model
+	 * @param step the step to go to, the first or last recorded step if it is out of range. If several
+	 * states were recorded for the step, the last one is used.
+	 * @return true if the simulation went to another state, false if it was already at the step
+	 * or the states of the topology aren't recorded
+	 */
+	boolean seek(NetworkTopology topology, int step) {
+		if (!isRecording(topology) || frames.isEmpty()) {
+			return false;
+		}
+		int target = find(step);
+		if (target == position) {
+			return false;
+		}
+		restore(topology, target);
+		position = target;
+		placement = placementOf(topology);
+		return true;
+	}
+
+	/**
+	 * @return the first recorded step, or -1 if there is none
+	 */
+	int getFirstStep() {
+		return frames.isEmpty() ? -1 : frames.get(0).step;
+	}
+
+	/**
+	 * @return the last recorded step, or -1 if there is none
+	 */
+	int getLastStep() {
+		return frames.isEmpty() ? -1 : frames.get(frames.size() - 1).step;
+	}
+
+	/**
+	 * @return the step of the state the simulation is in, or -1 if there is none
+	 */
+	int getStep() {
+		return position < 0 ? -1 : frames.get(position).step;
+	}
+
+	/**
+	 * @return the number of messages created at the state the simulation is in
+	 */
+	int getMessageCounter() {
+		return position < 0 ? 0 : frames.get(position).messageCounter;
+	}
+
+	/**
+	 * @return roughly the number of bytes the recorded states take up in memory
+	 */
+	long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Drops every state
+	 */
+	void clear() {
+		frames.clear();
+		bytes = 0;
+		position = -1;
+		topology = null;
+		placement = null;
+	}
+
+	/**
+	 * @param topology the network of the model
+	 * @return true if the recorded states belong to the topology as it is now
+	 */
+	private boolean isRecording(NetworkTopology topology) {
+		return this.topology == topology && version == topology.getVersion();
+	}
+
+	/**
+	 * @return the most bytes the states can take up, which is what the step back history leaves of its budget
+	 */
+	private long getMaxBytes() {
+		return history.getMaxBytes() - history.getHeapBytes();
+	}
+
+	/**
+	 * Drops every state and records the current one as the first keyframe
+	 * @param topology the network of the model
+	 * @param step the number of steps run
+	 * @param messageCounter the number of messages created
+	 */
+	private void start(NetworkTopology topology, int step, int messageCounter) {
+		clear();
+		this.topology = topology;
+		version = topology.getVersion();
+		Frame frame = new Frame(step, messageCounter, new StepDelta(topology, step, messageCounter));
+		frames.add(frame);
+		bytes = frame.size;
+		position = 0;
+		placement = placementOf(topology);
+	}
+
+	/**
+	 * Drops a range of states
+	 * @param from the position of the first state dropped
+	 * @param to the position after the last state dropped
+	 */
+	private void drop(int from, int to) {
+		List<Frame> dropped = frames.subList(from, to);
+		for (Frame frame : dropped) {
+			bytes -= frame.size;
+		}
+		dropped.clear();
+	}
+
+	/**
+	 * @param step a step number
+	 * @return the position of the last state recorded at or before the step, or the first state
+	 */
+	private int find(int step) {
+		int low = 0;
+		int high = frames.size() - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (frames.get(middle).step <= step) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Puts back the messages and metrics of a recorded state, from the keyframe before it and
+	 * the changes of the frames up to it
+	 * @param topology the network of the model
+	 * @param target the position of the state
+	 */
+	private void restore(NetworkTopology topology, int target) {
+		int first = target - target % keyframeInterval;
+		StepDelta keyframe = frames.get(first).keyframe;
+		keyframe.undo(topology);
+		if (first == target) {
+			return;
+		}
+
+		// the source and destination of every message, and the routers the flooded messages passed
+		// through, from the keyframe and the frames after it
+		Map<Integer, int[]> endpoints = new HashMap<Integer, int[]>();
+		int[] ids = keyframe.getMessageIds();
+		for (int i = 0; i < ids.length; i++) {
+			endpoints.put(ids[i], new int[] { keyframe.getSourceIds()[i], keyframe.getDestinationIds()[i] });
+		}
+		Map<Integer, List<Integer>> passedThrough = new HashMap<Integer, List<Integer>>();
+		for (int i = 0; i < ids.length; i++) {
+			if (keyframe.getPassedThroughIds(i) != null) {
+				List<Integer> routerIds = new ArrayList<Integer>();
+				for (int routerId : keyframe.getPassedThroughIds(i)) {
+					routerIds.add(routerId);
+				}
+				passedThrough.put(ids[i], routerIds);
+			}
+		}
+
+		// the messages of each router, changed frame by frame from the keyframe on
+		Map<Integer, int[]> stored = placementOf(topology);
+		for (int p = first + 1; p <= target; p++) {
+			Frame next = frames.get(p);
+			for (int i = 0; i < next.createdIds.length; i++) {
+				endpoints.put(next.createdIds[i], new int[] { next.createdSources[i], next.createdDestinations[i] });
+			}
+			next.applyChanges(stored, next.flooding ? passedThrough : null);
+		}
+
+		topology.clearMessages();
+		Map<Integer, Message> messages = new HashMap<Integer, Message>();
+		for (Map.Entry<Integer, int[]> entry : stored.entrySet()) {
+			Router router = topology.getRouter(entry.getKey());
+			int[] routerMessages = entry.getValue();
+			for (int i = 0; i < routerMessages.length; i += 2) {
+				int id = routerMessages[i];
+				Message message = messages.get(id);
+				if (message == null) {
+					int[] ends = endpoints.get(id);
+					if (ends == null) {
+						continue;
+					}
+					message = new Message(id, topology.getRouter(ends[0]), topology.getRouter(ends[1]), routerMessages[i + 1]);
+					messages.put(id, message);
+					List<Integer> routerIds = passedThrough.get(id);
+					if (routerIds != null) {
+						for (int routerId : routerIds) {
+							message.addRouter(topology.getRouter(routerId));
+						}
+					}
+				}
+				if (router != null) {
+					router.storeMessage(message);
+				}
+			}
+		}
+		Frame frame = frames.get(target);
+		topology.restoreMetrics(frame.totalPacketsTransmitted, frame.numMessagesReachedDest);
+	}
+
+	/**
+	 * @param topology the network of the model
+	 * @return the messages stored in each router that stores any, by router id, as the id of
+	 * each message followed by its number of jumps, in the order they are stored
+	 */
+	private static Map<Integer, int[]> placementOf(NetworkTopology topology) {
+		Map<Integer, int[]> placement = new HashMap<Integer, int[]>();
+		for (Router router : topology.getRouters()) {
+			List<Message> messages = router.getStoredMessages();
+			if (messages.isEmpty()) {
+				continue;
+			}
+			int[] stored = new int[2 * messages.size()];
+			for (int m = 0; m < messages.size(); m++) {
+				stored[2 * m] = messages.get(m).getID();
+				stored[2 * m + 1] = messages.get(m).getSteps();
+			}
+			placement.put(router.getId(), stored);
+		}
+		return placement;
+	}
+
+	/**
+	 * A recorded state: a keyframe holding every message, or the routers whose messages changed
+	 * and the messages created since the state before
+	 */
+	private static class Frame {
+
+		private final int step;
+		private final int messageCounter;
+		private final int totalPacketsTransmitted;
+		private final int numMessagesReachedDest;
+		private final boolean flooding;
+		// roughly the number of bytes the frame takes up in memory
+		private final long size;
+
+		// every message, only for keyframes
+		private final StepDelta keyframe;
+
+		// the messages created since the state before, with the ids of their source and destination
+		private final int[] createdIds;
+		private final int[] createdSources;
+		private final int[] createdDestinations;
+
+		// for each router whose messages changed: the difference of its id with the router before,
+		// the number of messages it stores, then the difference of each message id with the one
+		// before and the number of jumps of the message, written as variable length numbers
+		private final byte[] changes;
+
+		/**
+		 * Creates a keyframe
+		 * @param step the number of steps run
+		 * @param messageCounter the number of messages created
+		 * @param keyframe every stored message
+		 */
+		Frame(int step, int messageCounter, StepDelta keyframe) {
+			this.step = step;
+			this.messageCounter = messageCounter;
+			this.keyframe = keyframe;
+			totalPacketsTransmitted = keyframe.getTotalPacketsTransmitted();
+			numMessagesReachedDest = keyframe.getNumMessagesReachedDest();
+			flooding = false;
+			createdIds = null;
+			createdSources = null;
+			createdDestinations = null;
+			changes = null;
+			size = 64 + keyframe.getSize();
+		}
+
+		/**
+		 * Records what a step changed
+		 * @param topology the network of the model
+		 * @param step the number of steps run
+		 * @param messageCounter the number of messages created
+		 * @param previousMessageCounter the number of messages created at the state before
+		 * @param flooding true if the messages were flooded during the step
+		 * @param before the messages of each router at the state before, see placementOf()
+		 * @param after the messages of each router after the step
+		 */
+		Frame(NetworkTopology topology, int step, int messageCounter, int previousMessageCounter, boolean flooding,
+				Map<Integer, int[]> before, Map<Integer, int[]> after) {
+			this.step = step;
+			this.messageCounter = messageCounter;
+			this.flooding = flooding;
+			keyframe = null;
+			totalPacketsTransmitted = topology.getTotalPacketsTransmittedMetric();
+			numMessagesReachedDest = topology.getNumMessagesReachedDest();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			int previousRouterId = 0;
+			for (Map.Entry<Integer, int[]> entry : after.entrySet()) {
+				if (!Arrays.equals(before.get(entry.getKey()), entry.getValue())) {
+					writeChange(out, entry.getKey() - previousRouterId, entry.getValue());
+					previousRouterId = entry.getKey();
+				}
+			}
+			// the routers that no longer store any message
+			for (Integer routerId : before.keySet()) {
+				if (!after.containsKey(routerId)) {
+					writeChange(out, routerId - previousRouterId, new int[0]);
+					previousRouterId = routerId;
+				}
+			}
+			changes = out.toByteArray();
+
+			// message ids are given out in order, so the new messages have the ids from the previous counter on
+			int newMessages = Math.max(0, messageCounter - previousMessageCounter);
+			int[] sources = new int[newMessages];
+			int[] destinations = new int[newMessages];
+			boolean[] found = new boolean[newMessages];
+			int foundCount = 0;
+			for (Router router : topology.getRouters()) {
+				for (Message message : router.getStoredMessages()) {
+					int offset = message.getID() - previousMessageCounter;
+					if (offset >= 0 && offset < newMessages && !found[offset]) {
+						found[offset] = true;
+						foundCount++;
+						sources[offset] = message.getSource() == null ? -1 : message.getSource().getId();
+						destinations[offset] = message.getDestination() == null ? -1 : message.getDestination().getId();
+					}
+				}
+			}
+			createdIds = new int[foundCount];
+			createdSources = new int[foundCount];
+			createdDestinations = new int[foundCount];
+			int c = 0;
+			for (int offset = 0; offset < newMessages; offset++) {
+				if (found[offset]) {
+					createdIds[c] = previousMessageCounter + offset;
+					createdSources[c] = sources[offset];
+					createdDestinations[c++] = destinations[offset];
+				}
+			}
+			size = 64 + 16 + changes.length + 3 * (16 + 4L * foundCount);
+		}
+
+		/**
+		 * @param step the number of steps run
+		 * @param messageCounter the number of messages created
+		 * @return true if the state was recorded at the step with the same number of messages
+		 */
+		boolean matches(int step, int messageCounter) {
+			return this.step == step && this.messageCounter == messageCounter;
+		}
+
+		/**
+		 * Changes the messages of the routers from the state before to this state
+		 * @param placement the messages of each router at the state before, see placementOf()
+		 * @param passedThrough the routers each message passed through, which the routers that
+		 * received messages are added to, or null if the messages were not flooded
+		 */
+		void applyChanges(Map<Integer, int[]> placement, Map<Integer, List<Integer>> passedThrough) {
+			ByteArrayInputStream in = new ByteArrayInputStream(changes);
+			int routerId = 0;
+			while (in.available() > 0) {
+				routerId += readVarint(in);
+				int[] stored = new int[2 * readVarint(in)];
+				int messageId = 0;
+				for (int i = 0; i < stored.length; i += 2) {
+					messageId += readVarint(in);
+					stored[i] = messageId;
+					stored[i + 1] = readVarint(in);
+					if (passedThrough != null) {
+						List<Integer> routerIds = passedThrough.get(messageId);
+						if (routerIds == null) {
+							routerIds = new ArrayList<Integer>();
+							passedThrough.put(messageId, routerIds);
+						}
+						routerIds.add(routerId);
+					}
+				}
+				if (stored.length == 0) {
+					placement.remove(routerId);
+				} else {
+					placement.put(routerId, stored);
+				}
+			}
+		}
+
+		/**
+		 * Writes the messages a router stores after the step
+		 * @param out the changes of the frame
+		 * @param routerIdDifference the id of the router less the id of the router written before
+		 * @param stored the id and number of jumps of each message
+		 */
+		private static void writeChange(ByteArrayOutputStream out, int routerIdDifference, int[] stored) {
+			writeVarint(out, routerIdDifference);
+			writeVarint(out, stored.length / 2);
+			int messageId = 0;
+			for (int i = 0; i < stored.length; i += 2) {
+				writeVarint(out, stored[i] - messageId);
+				messageId = stored[i];
+				writeVarint(out, stored[i + 1]);
+			}
+		}
+
+		/**
+		 * Writes a number in as few bytes as it needs, seven bits at a time. Numbers below zero
+		 * are interleaved with the others, so that small numbers of either sign take one byte.
+		 */
+		private static void writeVarint(ByteArrayOutputStream out, int value) {
+			int zigzag = (value << 1) ^ (value >> 31);
+			while ((zigzag & ~0x7F) != 0) {
+				out.write((zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+			out.write(zigzag);
+		}
+
+		/**
+		 * Reads a number written by writeVarint()
+		 */
+		private static int readVarint(ByteArrayInputStream in) {
+			int zigzag = 0;
+			int shift = 0;
+			int b;
+			do {
+				b = in.read();
+				zigzag |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return (zigzag >>> 1) ^ -(zigzag & 1);
+		}
+	}
+}
@@ -0,0 +1,257 @@
+package Simulator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import Routing.RoutingAlgorithm;
+
+/**
+ * The changes step back can undo, latest first. A single step is undone from its delta, which
+ * only holds the messages that were stored before it. Changes a delta can't describe, such as
+ * edits of the topology or a batch of steps, are undone from a keyframe: a full copy of the
+ * state before the change.
+ *
+ * The history kept in memory is held to a budget of bytes and of changes. Once it is over
+ * budget, the oldest changes are compressed and written to a spill file, and they are read
+ * back one at a time once step back has undone every change kept in memory. The spill file is
+ * a stack like the history: the changes written last are the latest ones, and the file is cut
+ * short as they are read back.
+ */
+class UndoHistory {
+
+	// the default budget of the history kept in memory
+	static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+	static final int DEFAULT_MAX_CHANGES = 10000;
+
+	// StepDelta and Keyframe entries, the latest first, with their sizes in the same order
+	private final Deque<Object> entries;
+	private final Deque<Long> sizes;
+	private long bytes;
+	private long maxBytes;
+	private int maxChanges;
+
+	// the spill file, created once a change is first written to it
+	private File spillFile;
+	private RandomAccessFile spill;
+	// where each change written to the spill file starts, the latest last, and the routing
+	// algorithm of the keyframes, which stays in memory
+	private final List<Long> spillOffsets;
+	private final List<RoutingAlgorithm> spillAlgorithms;
+	private long spillBytes;
+
+	/**
+	 * Creates an empty history with the default budget
+	 */
+	UndoHistory() {
+		entries = new ArrayDeque<Object>();
+		sizes = new ArrayDeque<Long>();
+		spillOffsets = new ArrayList<Long>();
+		spillAlgorithms = new ArrayList<RoutingAlgorithm>();
+		maxBytes = DEFAULT_MAX_BYTES;
+		maxChanges = DEFAULT_MAX_CHANGES;
+	}
+
+	/**
+	 * Sets how much of the history is kept in memory, the rest is written to the spill file
+	 * @param maxBytes the most bytes kept in memory, at least the latest change is always kept
+	 * @param maxChanges the most changes kept in memory, at least 1
+	 */
+	void setBudget(long maxBytes, int maxChanges) {
+		this.maxBytes = Math.max(0, maxBytes);
+		this.maxChanges = Math.max(1, maxChanges);
+		spillOverBudget();
+	}
+
+	/**
+	 * Adds a step that can be undone
+	 * @param delta the messages and counters before the step
+	 */
+	void pushStep(StepDelta delta) {
+		push(delta, delta.getSize());
+	}
+
+	/**
+	 * Adds a change that is undone by going back to a full copy of the state
+	 * @param keyframe a copy of the state before the change
+	 */
+	void pushKeyframe(Keyframe keyframe) {
+		push(keyframe, keyframe.getSize());
+	}
+
+	/**
+	 * Undoes the latest change, reading it back from the spill file if it isn't kept in memory
+	 * @param model the model to undo the change in
+	 * @return true if a change was undone, false if there is nothing to undo
+	 */
+	boolean undo(NetworkRoutingSimulatorModel model) {
+		Object entry;
+		if (!entries.isEmpty()) {
+			entry = entries.pop();
+			bytes -= sizes.pop();
+		} else {
+			entry = readSpilled();
+		}
+		if (entry instanceof StepDelta) {
+			model.undoStep((StepDelta) entry);
+		} else if (entry instanceof Keyframe) {
+			model.restoreKeyframe((Keyframe) entry);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of changes that can be undone, in memory and in the spill file
+	 */
+	int size() {
+		return entries.size() + spillOffsets.size();
+	}
+
+	/**
+	 * @return roughly the number of bytes of the history kept in memory
+	 */
+	long getHeapBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return the most bytes of the history kept in memory
+	 */
+	long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return the number of bytes of the history written to the spill file
+	 */
+	long getSpillBytes() {
+		return spillBytes;
+	}
+
+	/**
+	 * Forgets every change, in memory and in the spill file
+	 */
+	void clear() {
+		entries.clear();
+		sizes.clear();
+		bytes = 0;
+		spillOffsets.clear();
+		spillAlgorithms.clear();
+		truncateSpill(0);
+	}
+
+	/**
+	 * @param entry the change, a StepDelta or a Keyframe
+	 * @param size the number of bytes the change takes up in memory
+	 */
+	private void push(Object entry, long size) {
+		entries.push(entry);
+		sizes.push(size);
+		bytes += size;
+		spillOverBudget();
+	}
+
+	/**
+	 * Writes the oldest changes kept in memory to the spill file until the history is within budget
+	 */
+	private void spillOverBudget() {
+		while (entries.size() > 1 && (bytes > maxBytes || entries.size() > maxChanges)) {
+			Object entry = entries.removeLast();
+			bytes -= sizes.removeLast();
+			writeSpilled(entry);
+		}
+	}
+
+	/**
+	 * Compresses a change and writes it at the end of the spill file. If the file can't be
+	 * written, the change and those before it are dropped.
+	 * @param entry the change to write
+	 */
+	private void writeSpilled(Object entry) {
+		try {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(new DeflaterOutputStream(bos));
+			oos.writeObject(entry);
+			oos.close();
+			if (spill == null) {
+				spillFile = File.createTempFile("undo-history", ".spill");
+				spillFile.deleteOnExit();
+				spill = new RandomAccessFile(spillFile, "rw");
+			}
+			spill.seek(spillBytes);
+			spill.write(bos.toByteArray());
+			spillOffsets.add(spillBytes);
+			spillAlgorithms.add(entry instanceof Keyframe ? ((Keyframe) entry).getRoutingAlgorithm() : null);
+			spillBytes += bos.size();
+		} catch (IOException e) {
+			e.printStackTrace();
+			spillOffsets.clear();
+			spillAlgorithms.clear();
+			truncateSpill(0);
+		}
+	}
+
+	/**
+	 * Reads back the latest change written to the spill file, and cuts it from the file
+	 * @return the change, or null if the spill file is empty or can't be read
+	 */
+	private Object readSpilled() {
+		if (spillOffsets.isEmpty()) {
+			return null;
+		}
+		int last = spillOffsets.size() - 1;
+		long offset = spillOffsets.remove(last);
+		RoutingAlgorithm algorithm = spillAlgorithms.remove(last);
+		Object entry = null;
+		try {
+			byte[] data = new byte[(int) (spillBytes - offset)];
+			spill.seek(offset);
+			spill.readFully(data);
+			ObjectInputStream ois = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
+			entry = ois.readObject();
+			ois.close();
+			if (entry instanceof Keyframe) {
+				((Keyframe) entry).setRoutingAlgorithm(algorithm);
+			}
+		} catch (IOException | ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+		truncateSpill(offset);
+		return entry;
+	}
+
+	/**
+	 * Cuts the spill file short
+	 * @param length the number of bytes to keep
+	 */
+	private void truncateSpill(long length) {
+		spillBytes = length;
+		if (spill == null) {
+			return;
+		}
+		try {
+			if (length > 0) {
+				spill.setLength(length);
+			} else {
+				// the file is only kept while it holds changes
+				spill.close();
+				spill = null;
+				spillFile.delete();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
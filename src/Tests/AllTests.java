@@ -12,6 +12,6 @@ import org.junit.runners.Suite.SuiteClasses;
  */
 @RunWith(Suite.class)
 @SuiteClasses(
-		{ MessageTest.class, NetworkRoutingSimulatorModelTest.class, NetworkTopologyTest.class, 
-			RouterTest.class, TopologyMetricsTest.class, XMLTest.class })
+		{ EditJournalTest.class, MessageQueueTest.class, MessageTest.class, NetworkRoutingSimulatorModelTest.class, NetworkTopologyTest.class,
+			RouterTest.class, RoutingAlgorithmTest.class, TopologyMetricsTest.class, TrafficGeneratorTest.class, XMLTest.class })
 public class AllTests {}
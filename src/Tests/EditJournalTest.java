@@ -0,0 +1,292 @@
+package Tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Model.NetworkEvent;
+import Model.NetworkTopology;
+import Model.Router;
+import Simulator.NetworkRoutingSimulatorModel;
+import View.Connection;
+import View.Node;
+import View.ShapesContainer;
+import XML.BinaryStateSerializer;
+import XML.EditJournal;
+import XML.XMLState;
+
+/**
+ * Tests for the journal of the edits made to a saved network
+ */
+public class EditJournalTest {
+
+	private NetworkRoutingSimulatorModel model;
+	private ShapesContainer shapes;
+	private File saveFile;
+	private File journalFile;
+
+	/**
+	 * Creates a model of three routers in a line with a node for each router, and saves it
+	 */
+	@Before
+	public void setUp() {
+		model = new NetworkRoutingSimulatorModel();
+		List<Node> nodes = new ArrayList<Node>();
+		for (String name : new String[] { "A", "B", "C" }) {
+			model.addRouter(new Router(name));
+			Node node = new Node(nodes.size() * 100, 0);
+			node.setName(name);
+			nodes.add(node);
+		}
+		model.attachNeighbour("A", "B");
+		model.attachNeighbour("B", "C");
+		List<Connection> connections = new ArrayList<Connection>();
+		connections.add(new Connection(nodes.get(0), nodes.get(1)));
+		connections.add(new Connection(nodes.get(1), nodes.get(2)));
+		shapes = new ShapesContainer(nodes, connections);
+
+		saveFile = new File("JOURNALTEST-" + hashCode() + "." + BinaryStateSerializer.FILE_EXTENSION);
+		journalFile = EditJournal.journalFileOf(saveFile);
+		model.saveState(saveFile, shapes);
+	}
+
+	@After
+	public void tearDown() {
+		model.closeJournal();
+		saveFile.delete();
+		journalFile.delete();
+	}
+
+	/**
+	 * makes edits after the network was saved, flushes them without closing the journal as if the
+	 * simulator crashed, and checks restoring the saved file brings the edits back
+	 */
+	@Test
+	public void testRestoreReplaysJournal() {
+		model.openJournal(saveFile, shapes);
+		long savedLength = saveFile.length();
+		model.addRouter(new Router("D"), 300, 50);
+		model.attachNeighbour("C", "D", 2.5);
+		model.setLinkWeight("A", "B", 4);
+		model.deleteNeighbour("B", "C");
+		model.removeRouter("A");
+		model.setMessageGenerationRate(3);
+		model.flushJournal();
+
+		assertEquals("Saving the edits should not write the network again", savedLength, saveFile.length());
+		assertTrue("The journal should only hold the edits", journalFile.length() < 200);
+
+		XMLState state = NetworkRoutingSimulatorModel.readState(saveFile, null);
+		NetworkTopology topology = state.getModelContainer().getTopology();
+		assertNull(topology.getRouter("A"));
+		assertNotNull(topology.getRouter("D"));
+		assertEquals(2.5, topology.getLinkWeight("C", "D"), 0);
+		assertEquals(2.5, topology.getLinkWeight("D", "C"), 0);
+		assertTrue(Double.isNaN(topology.getLinkWeight("B", "C")));
+		assertEquals(3, state.getModelContainer().getMessageGenerationRate(), 0);
+
+		// the node of the new router is placed where it was added, with its connection
+		List<String> nodeNames = new ArrayList<String>();
+		Node nodeD = null;
+		for (Node node : state.getShapesContainer().getNodes()) {
+			nodeNames.add(node.getName());
+			if ("D".equals(node.getName())) {
+				nodeD = node;
+			}
+		}
+		assertFalse(nodeNames.contains("A"));
+		assertNotNull(nodeD);
+		assertEquals(300, nodeD.x, 0);
+		assertEquals(50, nodeD.y, 0);
+		assertEquals(1, state.getShapesContainer().getConnections().size());
+		assertEquals("D", state.getShapesContainer().getConnections().get(0).getNode2().getName());
+
+		// the restored model routes on the edited network
+		NetworkRoutingSimulatorModel restoredModel = new NetworkRoutingSimulatorModel();
+		NetworkTopology[] restored = new NetworkTopology[1];
+		restoredModel.addObserver((observable, event) -> restored[0] = ((NetworkEvent) event).getTopology());
+		restoredModel.restoreState(saveFile);
+		restoredModel.step();
+		for (Router router : restored[0].getRouters()) {
+			assertNotNull(router.getRoutingTable());
+		}
+	}
+
+	/**
+	 * runs steps after the network was saved, saves it again through the journal, and checks
+	 * the restored network has the counters and messages of the steps
+	 */
+	@Test
+	public void testStepsAreSavedWhole() {
+		NetworkTopology[] current = new NetworkTopology[1];
+		model.addObserver((observable, event) -> current[0] = ((NetworkEvent) event).getTopology());
+		model.openJournal(saveFile, shapes);
+		assertFalse(model.hasUnjournaledChanges());
+		model.step();
+		model.step();
+		model.runSteps(2);
+		assertTrue("Steps can't be kept in the journal", model.hasUnjournaledChanges());
+		model.flushJournal();
+		assertFalse(model.hasUnjournaledChanges());
+		assertEquals("The journal should be started again", 8, journalFile.length());
+
+		XMLState state = NetworkRoutingSimulatorModel.readState(saveFile, null);
+		assertEquals(4, state.getModelContainer().getStepCounter());
+		assertEquals(model.getMessageCount(), state.getModelContainer().getMessageCounter());
+		NetworkTopology topology = state.getModelContainer().getTopology();
+		assertEquals(current[0].getTotalPacketsTransmittedMetric(), topology.getTotalPacketsTransmittedMetric());
+		for (Router router : current[0].getRouters()) {
+			List<Integer> ids = new ArrayList<Integer>();
+			for (Message message : router.getStoredMessages()) {
+				ids.add(message.getID());
+			}
+			List<Integer> restoredIds = new ArrayList<Integer>();
+			for (Message message : topology.getRouter(router.getName()).getStoredMessages()) {
+				restoredIds.add(message.getID());
+			}
+			assertEquals(ids, restoredIds);
+		}
+
+		// an edit after the whole save is kept in the journal again, and the counters are left as they were
+		model.addRouter(new Router("D"), 300, 0);
+		model.flushJournal();
+		assertTrue(journalFile.length() > 8);
+		state = NetworkRoutingSimulatorModel.readState(saveFile, null);
+		assertNotNull(state.getModelContainer().getTopology().getRouter("D"));
+		assertEquals(4, state.getModelContainer().getStepCounter());
+	}
+
+	/**
+	 * moves a node after the network was saved, saves it again through the journal, and checks
+	 * the restored node is where it was moved to
+	 */
+	@Test
+	public void testMovedNodeIsJournaled() {
+		model.openJournal(saveFile, shapes);
+		long savedLength = saveFile.length();
+		Node nodeB = shapes.getNodes().get(1);
+		nodeB.x = 120;
+		nodeB.y = 80;
+		model.moveRouter("B", nodeB.x, nodeB.y);
+		assertFalse(model.hasUnjournaledChanges());
+		model.flushJournal();
+		assertEquals("Saving the move should not write the network again", savedLength, saveFile.length());
+
+		XMLState state = NetworkRoutingSimulatorModel.readState(saveFile, null);
+		for (Node node : state.getShapesContainer().getNodes()) {
+			if ("B".equals(node.getName())) {
+				assertEquals(120, node.x, 0);
+				assertEquals(80, node.y, 0);
+			} else {
+				assertEquals(0, node.y, 0);
+			}
+		}
+	}
+
+	/**
+	 * cuts the journal in the middle of a record, and checks the whole records are replayed and
+	 * that the journal can be added to again
+	 */
+	@Test
+	public void testTornRecordIsDropped() throws IOException {
+		EditJournal journal = EditJournal.open(journalFile, false);
+		journal.setBatchSize(1);
+		journal.addRouter("D", Float.NaN, Float.NaN);
+		journal.attach("C", "D", 1);
+		long whole = journalFile.length();
+		journal.addRouter("E", Float.NaN, Float.NaN);
+		journal.close();
+		try (RandomAccessFile file = new RandomAccessFile(journalFile, "rw")) {
+			file.setLength(file.length() - 3);
+		}
+
+		assertEquals(2, EditJournal.replay(journalFile, readSaved()));
+
+		journal = EditJournal.open(journalFile, true);
+		assertEquals("The cut record should be dropped", whole, journal.size());
+		journal.detach("C", "D");
+		journal.close();
+		XMLState state = readSaved();
+		assertEquals(3, EditJournal.replay(journalFile, state));
+		assertNotNull(state.getModelContainer().getTopology().getRouter("D"));
+		assertNull(state.getModelContainer().getTopology().getRouter("E"));
+		assertTrue(Double.isNaN(state.getModelContainer().getTopology().getLinkWeight("C", "D")));
+	}
+
+	/**
+	 * replays a journal twice, and checks the second replay leaves the network as the first did
+	 */
+	@Test
+	public void testReplayTwiceGivesSameNetwork() {
+		EditJournal journal = EditJournal.open(journalFile, false);
+		journal.addRouter("D", Float.NaN, Float.NaN);
+		journal.attach("C", "D", 2);
+		journal.removeRouter("D");
+		journal.addRouter("D", Float.NaN, Float.NaN);
+		journal.attach("A", "D", 3);
+		journal.detach("A", "B");
+		journal.close();
+
+		XMLState state = readSaved();
+		EditJournal.replay(journalFile, state);
+		String once = describe(state.getModelContainer().getTopology());
+		EditJournal.replay(journalFile, state);
+		assertEquals(once, describe(state.getModelContainer().getTopology()));
+		assertEquals("A-D 3.0 B-C 1.0 C-B 1.0 D-A 3.0 ", once);
+	}
+
+	/**
+	 * lets the journal grow past its compaction size, and checks the network is saved whole and
+	 * the journal started again
+	 */
+	@Test
+	public void testJournalIsCompacted() {
+		model.openJournal(saveFile, shapes);
+		model.setJournalCompactionSize(0);
+		model.addRouter(new Router("D"), 300, 0);
+
+		assertEquals("The journal should be started again", 8, journalFile.length());
+		XMLState state = new XMLState();
+		new BinaryStateSerializer().deserialize(saveFile, state);
+		assertNotNull("The saved file should hold the edit", state.getModelContainer().getTopology().getRouter("D"));
+		assertFalse(new File(journalFile.getPath() + ".part").exists());
+	}
+
+	/**
+	 * @return the state of the saved file, without the journal
+	 */
+	private XMLState readSaved() {
+		XMLState state = new XMLState();
+		new BinaryStateSerializer().deserialize(saveFile, state);
+		return state;
+	}
+
+	/**
+	 * @param topology a network
+	 * @return the links of the network with their weights, sorted
+	 */
+	private static String describe(NetworkTopology topology) {
+		List<String> links = new ArrayList<String>();
+		for (Router router : topology.getRouters()) {
+			for (Router neighbour : topology.getNeighbours(router.getName())) {
+				links.add(router.getName() + "-" + neighbour.getName() + " " + topology.getLinkWeight(router.getName(), neighbour.getName()) + " ");
+			}
+		}
+		Collections.sort(links);
+		StringBuilder description = new StringBuilder();
+		for (String link : links) {
+			description.append(link);
+		}
+		return description.toString();
+	}
+}
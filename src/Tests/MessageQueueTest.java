@@ -0,0 +1,88 @@
+package Tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.Message;
+import Model.MessageQueue;
+
+/**
+ * Tests for the queue of messages stored in a router.
+ */
+public class MessageQueueTest {
+
+	private MessageQueue queue;
+
+	@Before
+	public void setUp() throws Exception {
+		queue = new MessageQueue();
+	}
+
+	/**
+	 * Ensure removed messages leave the others in the order they were added
+	 */
+	@Test
+	public void testRemoveKeepsOrder() {
+		for (int i = 0; i < 5; i++) {
+			queue.add(new Message(i, null, null));
+		}
+		assertTrue("Message 2 should be removed", queue.remove(2));
+		assertFalse("Message 2 should already be removed", queue.remove(2));
+		assertTrue("Message 0 should be removed", queue.remove(0));
+		assertEquals("There should be 3 messages", 3, queue.size());
+		assertEquals("Message 1 should be first", 1, queue.get(0).getID());
+		assertEquals("Message 3 should be second", 3, queue.get(1).getID());
+		assertEquals("Message 4 should be last", 4, queue.get(2).getID());
+		assertFalse("Message 0 should not be in the queue", queue.contains(0));
+
+		queue.clear();
+		assertTrue("The queue should be empty", queue.isEmpty());
+		assertFalse("Message 4 should not be in the queue", queue.contains(4));
+	}
+
+	/**
+	 * Ensure the list view can't change the queue
+	 */
+	@Test
+	public void testListIsReadOnly() {
+		try {
+			queue.asList().add(new Message(0, null, null));
+			fail("Messages should not be added through the list");
+		} catch (UnsupportedOperationException e) {
+			assertTrue("The queue should be empty", queue.isEmpty());
+		}
+	}
+
+	/**
+	 * Ensure random adds and removes give the same messages as a list
+	 */
+	@Test
+	public void testMatchesList() {
+		Random random = new Random(12);
+		List<Message> expected = new ArrayList<Message>();
+		int nextId = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (expected.isEmpty() || random.nextInt(3) != 0) {
+				Message message = new Message(nextId++, null, null);
+				queue.add(message);
+				expected.add(message);
+			} else if (random.nextInt(50) == 0) {
+				queue.clear();
+				expected.clear();
+			} else {
+				Message message = expected.remove(random.nextInt(expected.size()));
+				assertTrue(queue.remove(message.getID()));
+			}
+			if (i % 1000 == 0) {
+				assertEquals(expected, queue.asList());
+			}
+		}
+		assertEquals(expected, queue.asList());
+	}
+}
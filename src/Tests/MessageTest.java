@@ -7,6 +7,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import Model.Message;
+import Model.NetworkTopology;
 import Model.Router;
 
 /**
@@ -91,4 +92,46 @@ public class MessageTest {
 		assertEquals("step once", 1, message.getSteps());
 	}
 
+	@Test
+	public void testMarkSent() {
+		assertTrue("first send in step 1", message.markSent(1));
+		assertFalse("already sent in step 1", message.markSent(1));
+		assertTrue("first send in step 2", message.markSent(2));
+	}
+
+	@Test
+	public void testAddRouter() {
+		assertFalse("a router outside a topology can't be added", message.addRouter(router1));
+		NetworkTopology topology = new NetworkTopology();
+		topology.addRouter(router1);
+		for (int i = 0; i < 100; i++) {
+			topology.addRouter(new Router("r" + i));
+		}
+		topology.addRouter(router2);
+		assertFalse("not passed through yet", message.hasPassedThrough(router2));
+		assertTrue("first time through router1", message.addRouter(router1));
+		assertTrue("first time through router2, past the first word of the set", message.addRouter(router2));
+		assertFalse("already passed through router2", message.addRouter(router2));
+		assertTrue("passed through router1", message.hasPassedThrough(router1));
+		assertFalse("not passed through r0", message.hasPassedThrough(topology.getRouter("r0")));
+	}
+
+	@Test
+	public void testRemovedRouterIdIsForgotten() {
+		NetworkTopology topology = new NetworkTopology();
+		topology.addRouter(router1);
+		topology.addRouter(router2);
+		router1.storeMessage(message);
+		message.addRouter(router1);
+		message.addRouter(router2);
+		int freedId = router2.getId();
+		topology.removeRouter(router2.getName());
+
+		Router router3 = new Router("router3");
+		topology.addRouter(router3);
+		assertEquals("the id of the removed router is given out again", freedId, router3.getId());
+		assertFalse("a new router with the freed id was not passed through", message.hasPassedThrough(router3));
+		assertTrue("still passed through router1", message.hasPassedThrough(router1));
+		assertTrue("the new router can be passed through", message.addRouter(router3));
+	}
 }
@@ -2,12 +2,36 @@ package Tests;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import Model.Message;
+import Model.NetworkEvent;
+import Model.NetworkTopology;
 import Model.Router;
+import Model.RoutingTable;
+import Routing.BreadthFirstSearchRoutingAlgorithm;
+import Routing.FloodingRoutingAlgorithm;
+import Routing.MappedRoutingTable;
+import Routing.RandomRoutingAlgorithm;
 import Simulator.NetworkRoutingSimulatorModel;
+import Traffic.UniformTraffic;
+import View.Connection;
+import View.Node;
+import View.ShapesContainer;
+import XML.BinaryStateSerializer;
+import XML.XMLState;
 
 /**
  * Tests for the acessor and mutator methods of the model (ex: adding routers, removing routers,
@@ -217,4 +241,615 @@ public class NetworkRoutingSimulatorModelTest {
 		model.stepBack();
 		assertEquals("There should be 0 messages", 0, model.getMessageCount());
 	}
+
+	/**
+	 * runs a batch of steps, checks the view is only notified once and that one undo goes back to before the batch
+	 */
+	@Test
+	public void testRunSteps() {
+		int[] notifications = new int[1];
+		model.addObserver((observable, event) -> notifications[0]++);
+		model.addRouter(new Router("a"));
+		notifications[0] = 0;
+
+		model.runSteps(50);
+		assertEquals("There should be 50 messages", 50, model.getMessageCount());
+		assertEquals("The view should be notified once", 1, notifications[0]);
+
+		model.runSteps(50, 10);
+		assertEquals("There should be 100 messages", 100, model.getMessageCount());
+		assertEquals("The view should be notified every 10 steps", 6, notifications[0]);
+
+		assertEquals("The steps should stop once the condition holds", 6,
+				model.runUntil(topology -> topology.getNumMessagesReachedDest() >= 105, 1000));
+
+		model.stepBack();
+		assertEquals("There should be 100 messages", 100, model.getMessageCount());
+	}
+
+	/**
+	 * runs the same seeded simulation with and without a step pool, and checks every router ends up with the same messages
+	 */
+	@Test
+	public void testStepPoolMatchesSequentialSteps() {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			NetworkRoutingSimulatorModel parallelModel = new NetworkRoutingSimulatorModel();
+			parallelModel.setStepPool(pool);
+			List<Router> sequentialRouters = addRing(model);
+			List<Router> parallelRouters = addRing(parallelModel);
+
+			model.setSeed(5);
+			parallelModel.setSeed(5);
+			model.setRoutingAlgorithm(new RandomRoutingAlgorithm());
+			parallelModel.setRoutingAlgorithm(new RandomRoutingAlgorithm());
+			model.runSteps(150);
+			parallelModel.runSteps(150);
+			assertSameMessages(sequentialRouters, parallelRouters);
+
+			model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+			parallelModel.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+			model.runSteps(50);
+			parallelModel.runSteps(50);
+			assertSameMessages(sequentialRouters, parallelRouters);
+			assertEquals("Both models should create the same messages", model.getMessageCount(), parallelModel.getMessageCount());
+
+			// the copies left by flooding are sent from several partitions once the tables are set
+			NetworkRoutingSimulatorModel floodedModel = new NetworkRoutingSimulatorModel();
+			NetworkRoutingSimulatorModel parallelFloodedModel = new NetworkRoutingSimulatorModel();
+			parallelFloodedModel.setStepPool(pool);
+			sequentialRouters = addRing(floodedModel);
+			parallelRouters = addRing(parallelFloodedModel);
+			floodedModel.setSeed(6);
+			parallelFloodedModel.setSeed(6);
+			floodedModel.setRoutingAlgorithm(new FloodingRoutingAlgorithm());
+			parallelFloodedModel.setRoutingAlgorithm(new FloodingRoutingAlgorithm());
+			floodedModel.runSteps(30);
+			parallelFloodedModel.runSteps(30);
+			Set<Message> distinct = Collections.newSetFromMap(new IdentityHashMap<Message, Boolean>());
+			int stored = 0;
+			for (Router router : parallelRouters) {
+				distinct.addAll(router.getStoredMessages());
+				stored += router.getStoredMessages().size();
+			}
+			assertTrue("Flooding should leave messages stored in several routers", stored > distinct.size());
+			floodedModel.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+			parallelFloodedModel.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+			for (int i = 0; i < 20; i++) {
+				floodedModel.step();
+				parallelFloodedModel.step();
+				assertSameMessages(sequentialRouters, parallelRouters);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * runs the same seeded simulation step by step and event driven, and checks every router holds the same messages
+	 */
+	@Test
+	public void testEventDrivenMatchesSteps() {
+		NetworkRoutingSimulatorModel eventModel = new NetworkRoutingSimulatorModel();
+		eventModel.setEventDriven(true);
+		List<Router> routers = addRing(model);
+		List<Router> eventRouters = addRing(eventModel);
+		model.setSeed(7);
+		eventModel.setSeed(7);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		eventModel.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+
+		for (int i = 0; i < 3; i++) {
+			model.runSteps(40);
+			eventModel.runSteps(40);
+			assertEquals("Both models should be at the same time", model.getSimulationTime(), eventModel.getSimulationTime(), 0.0);
+			for (int r = 0; r < routers.size(); r++) {
+				assertEquals("Router " + r + " should hold the same messages", ids(routers.get(r)), ids(eventRouters.get(r)));
+			}
+		}
+		assertEquals("Both models should create the same messages", model.getMessageCount(), eventModel.getMessageCount());
+	}
+
+	/**
+	 * checks that an event driven simulation skips the times where nothing happens, and takes the weight of a link as its delay
+	 */
+	@Test
+	public void testEventDrivenSkipsIdleTimes() {
+		model.setEventDriven(true);
+		model.addRouter(new Router("a"));
+		model.addRouter(new Router("b"));
+		model.attachNeighbour("a", "b", 5);
+		model.setMessageGenerationRate(1000);
+		model.setSeed(1); // the first message goes from one router to the other
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+
+		model.step();
+		assertEquals("The first message is created at the end of step 0", 1, model.getSimulationTime(), 0.0);
+		model.step();
+		assertEquals("The message is sent one unit of time after it was created", 2, model.getSimulationTime(), 0.0);
+		model.step();
+		assertEquals("The message arrives after going over the link", 7, model.getSimulationTime(), 0.0);
+		model.step();
+		assertEquals("The next message is created at the end of step 1000", 1001, model.getSimulationTime(), 0.0);
+		assertEquals("There should be 2 messages", 2, model.getMessageCount());
+	}
+
+	/**
+	 * Ensure a traffic generator creates its messages at every step, step by step and event driven
+	 */
+	@Test
+	public void testTrafficGenerator() {
+		addRing(model);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.setTrafficGenerator(new UniformTraffic(100));
+		model.step();
+		assertEquals("There should be 100 messages after the first step", 100, model.getMessageCount());
+		model.setMessageGenerationRate(1000);
+		model.step();
+		assertEquals("The generator should create messages whatever the rate", 200, model.getMessageCount());
+
+		NetworkRoutingSimulatorModel eventModel = new NetworkRoutingSimulatorModel();
+		eventModel.setEventDriven(true);
+		addRing(eventModel);
+		eventModel.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		eventModel.setTrafficGenerator(new UniformTraffic(100));
+		eventModel.step();
+		eventModel.step();
+		assertEquals("Event driven steps should create the same messages", 200, eventModel.getMessageCount());
+
+		model.setTrafficGenerator(null);
+		assertNull("The message generation rate should be used again", model.getTrafficGenerator());
+	}
+
+	/**
+	 * steps a seeded simulation, then steps back through every step and checks the messages and metrics are restored
+	 */
+	@Test
+	public void testStepBackUndoesEachStep() {
+		NetworkTopology[] topology = new NetworkTopology[1];
+		model.addObserver((observable, event) -> topology[0] = ((NetworkEvent) event).getTopology());
+		List<Router> routers = addRing(model);
+		model.setSeed(11);
+		model.setRoutingAlgorithm(new FloodingRoutingAlgorithm());
+
+		List<String> states = new ArrayList<String>();
+		for (int i = 0; i < 8; i++) {
+			if (i == 4) {
+				model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+			}
+			states.add(describe(routers) + topology[0].getTotalPacketsTransmittedMetric() + " " + model.getMessageCount());
+			model.step();
+		}
+		for (int i = 7; i >= 0; i--) {
+			model.stepBack();
+			assertEquals("Step " + i + " should be undone", states.get(i), describe(routers)
+					+ topology[0].getTotalPacketsTransmittedMetric() + " " + model.getMessageCount());
+		}
+	}
+
+	/**
+	 * saves a simulation in the compact xml and binary formats, and checks the restored network steps on as the saved one does
+	 */
+	@Test
+	public void testRestoreRebuildsRoutingTables() {
+		List<Router> routers = addRing(model);
+		model.setSeed(15);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.runSteps(5);
+		int messages = model.getMessageCount();
+
+		for (String extension : new String[] { "xml", BinaryStateSerializer.FILE_EXTENSION }) {
+			File file = new File("MODELTEST-" + hashCode() + "." + extension);
+			try {
+				model.saveState(file, new ShapesContainer(new ArrayList<Node>(), new ArrayList<Connection>()));
+				NetworkRoutingSimulatorModel restoredModel = new NetworkRoutingSimulatorModel();
+				NetworkTopology[] topology = new NetworkTopology[1];
+				restoredModel.addObserver((observable, event) -> topology[0] = ((NetworkEvent) event).getTopology());
+				restoredModel.restoreState(file);
+
+				List<Router> restored = new ArrayList<Router>();
+				for (Router router : routers) {
+					restored.add(topology[0].getRouter(router.getName()));
+				}
+				assertEquals("The messages should be restored from the " + extension + " file", describe(routers), describe(restored));
+				assertEquals(messages, restoredModel.getMessageCount());
+
+				restoredModel.step();
+				model.step();
+				assertEquals("The routing tables should be built again after restoring the " + extension + " file",
+						placement(routers, messages), placement(restored, messages));
+				model.stepBack();
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * restores single next hop tables from a binary file, and checks they are mapped and route like the saved ones
+	 */
+	@Test
+	public void testRestoreMapsRoutingTables() {
+		List<Router> routers = addRing(model);
+		model.setSeed(16);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.runSteps(4);
+		int messages = model.getMessageCount();
+
+		File file = new File("MODELTEST-" + hashCode() + "." + BinaryStateSerializer.FILE_EXTENSION);
+		try {
+			model.saveState(file, new ShapesContainer(new ArrayList<Node>(), new ArrayList<Connection>()));
+			NetworkRoutingSimulatorModel restoredModel = new NetworkRoutingSimulatorModel();
+			NetworkTopology[] topology = new NetworkTopology[1];
+			restoredModel.addObserver((observable, event) -> topology[0] = ((NetworkEvent) event).getTopology());
+			restoredModel.restoreState(file);
+			assertFalse("Mapped routing tables should not be built again", restoredModel.isBuildingRoutingTables());
+
+			List<Router> restored = new ArrayList<Router>();
+			for (Router router : routers) {
+				restored.add(topology[0].getRouter(router.getName()));
+			}
+			for (int i = 0; i < routers.size(); i++) {
+				RoutingTable routingTable = restored.get(i).getRoutingTable();
+				assertTrue(routingTable instanceof MappedRoutingTable);
+				for (int j = 0; j < routers.size(); j++) {
+					RoutingTable saved = routers.get(i).getRoutingTable();
+					assertEquals(saved.getNextHopCount(routers.get(j)), routingTable.getNextHopCount(restored.get(j)));
+					if (saved.getNextHopCount(routers.get(j)) > 0) {
+						assertEquals(saved.getNextHop(routers.get(j), 0).getName(), routingTable.getNextHop(restored.get(j), 0).getName());
+					}
+				}
+			}
+
+			List<String> before = placement(restored, messages);
+			restoredModel.step();
+			model.step();
+			assertEquals(placement(routers, messages), placement(restored, messages));
+			restoredModel.stepBack();
+			assertEquals(before, placement(restored, messages));
+
+			// the mapped tables are left out of the copy kept for step back, and built again once it is restored
+			restoredModel.step();
+			restoredModel.runSteps(2);
+			restoredModel.stepBack();
+			for (Router router : topology[0].getRouters()) {
+				assertFalse(router.getRoutingTable() instanceof MappedRoutingTable);
+			}
+			restoredModel.step();
+			for (Router router : routers) {
+				RoutingTable rebuilt = topology[0].getRouter(router.getName()).getRoutingTable();
+				assertNotNull(rebuilt);
+				for (Router destination : routers) {
+					assertEquals(router.getRoutingTable().getNextHopCount(destination),
+							rebuilt.getNextHopCount(topology[0].getRouter(destination.getName())));
+				}
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * saves a snapshot while the model keeps stepping, and checks the file holds the state of the snapshot
+	 * and that the progress goes up to the whole save
+	 */
+	@Test
+	public void testWriteSnapshotState() {
+		List<Router> routers = addRing(model);
+		model.setSeed(17);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.runSteps(3);
+		int messages = model.getMessageCount();
+		List<String> saved = placement(routers, messages);
+		XMLState snapshot = model.snapshotState(new ShapesContainer(new ArrayList<Node>(), new ArrayList<Connection>()));
+		model.step();
+
+		for (String extension : new String[] { "xml", BinaryStateSerializer.FILE_EXTENSION }) {
+			File file = new File("MODELTEST-" + hashCode() + "." + extension);
+			try {
+				long[] progress = { -1, 0 };
+				assertTrue(NetworkRoutingSimulatorModel.writeState(file, snapshot, (done, total) -> {
+					assertTrue("The progress should not go back", done >= progress[0]);
+					progress[0] = done;
+					progress[1] = total;
+				}));
+				assertEquals("The progress should reach the whole " + extension + " save", progress[1], progress[0]);
+
+				NetworkRoutingSimulatorModel restoredModel = new NetworkRoutingSimulatorModel();
+				NetworkTopology[] topology = new NetworkTopology[1];
+				restoredModel.addObserver((observable, event) -> topology[0] = ((NetworkEvent) event).getTopology());
+				restoredModel.applyState(NetworkRoutingSimulatorModel.readState(file, null));
+				List<Router> restored = new ArrayList<Router>();
+				for (Router router : routers) {
+					restored.add(topology[0].getRouter(router.getName()));
+				}
+				assertEquals(messages, restoredModel.getMessageCount());
+				assertEquals("The " + extension + " file should hold the state of the snapshot", saved, placement(restored, messages));
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * saves and restores on an interrupted thread, and checks the file and the model are left as they were
+	 */
+	@Test
+	public void testCancelledSaveAndRestore() throws IOException {
+		addRing(model);
+		model.runSteps(2);
+		XMLState snapshot = model.snapshotState(new ShapesContainer(new ArrayList<Node>(), new ArrayList<Connection>()));
+
+		for (String extension : new String[] { "xml", BinaryStateSerializer.FILE_EXTENSION }) {
+			File file = new File("MODELTEST-" + hashCode() + "." + extension);
+			try {
+				assertTrue(NetworkRoutingSimulatorModel.writeState(file, snapshot, null));
+				byte[] before = Files.readAllBytes(file.toPath());
+
+				Thread.currentThread().interrupt();
+				boolean saved;
+				XMLState restored;
+				try {
+					saved = NetworkRoutingSimulatorModel.writeState(file, new XMLState(), null);
+					saved |= NetworkRoutingSimulatorModel.writeState(file, snapshot, null);
+					restored = NetworkRoutingSimulatorModel.readState(file, null);
+				} finally {
+					Thread.interrupted();
+				}
+				assertFalse("A cancelled " + extension + " save should not replace the file", saved);
+				assertNull("A cancelled " + extension + " restore should not give a state", restored);
+				assertArrayEquals(before, Files.readAllBytes(file.toPath()));
+				assertFalse(new File(file.getPath() + ".part").exists());
+			} finally {
+				file.delete();
+			}
+		}
+	}
+
+	/**
+	 * keeps a single change of history in memory, and checks the older steps and keyframes are read back from disk
+	 */
+	@Test
+	public void testStepBackReadsSpilledHistory() {
+		NetworkTopology[] topology = new NetworkTopology[1];
+		model.addObserver((observable, event) -> topology[0] = ((NetworkEvent) event).getTopology());
+		List<Router> routers = addRing(model);
+		model.setSeed(12);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.setUndoBudget(0, 1);
+
+		List<String> states = new ArrayList<String>();
+		for (int i = 0; i < 6; i++) {
+			states.add(describe(routers) + model.getMessageCount());
+			if (i == 3) {
+				model.runSteps(5);
+			} else {
+				model.step();
+			}
+		}
+		assertTrue("The older changes should be on disk", model.getUndoSpillBytes() > 0);
+		assertTrue("Only the latest change should be in memory", model.getUndoHeapBytes() > 0);
+		for (int i = 5; i >= 0; i--) {
+			model.stepBack();
+			// a keyframe brings back a copy of the routers
+			List<Router> current = new ArrayList<Router>();
+			for (Router router : routers) {
+				current.add(topology[0].getRouter(router.getName()));
+			}
+			assertEquals("Change " + i + " should be undone", states.get(i), describe(current) + model.getMessageCount());
+		}
+		assertEquals("The history on disk should be read back", 0, model.getUndoSpillBytes());
+	}
+
+	/**
+	 * runs a seeded simulation, then seeks to steps before and after keyframes and checks the messages are put back
+	 */
+	@Test
+	public void testSeekToStep() {
+		List<Router> routers = addRing(model);
+		model.setSeed(13);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.setTimelineSize(8, 1000);
+
+		List<String> states = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			states.add(describe(routers) + model.getMessageCount());
+			model.step();
+		}
+		states.add(describe(routers) + model.getMessageCount());
+		assertEquals("The timeline should start before the first step", 0, model.getTimelineFirstStep());
+		assertEquals("The timeline should end at the last step", 40, model.getTimelineLastStep());
+
+		for (int step : new int[] { 0, 17, 8, 23, 29, 1 }) {
+			model.seekToStep(step);
+			assertEquals("The model should be at step " + step, step, model.getStepCounter());
+			assertEquals("Step " + step + " should be put back", states.get(step), describe(routers) + model.getMessageCount());
+		}
+		model.stepBack();
+		assertEquals("Step back should undo the seek", states.get(29), describe(routers) + model.getMessageCount());
+		model.seekToStep(35);
+		assertEquals("Step 35 should be put back", states.get(35), describe(routers) + model.getMessageCount());
+		model.seekToStep(100);
+		assertEquals("Seeking past the end should go to the last step", states.get(40), describe(routers) + model.getMessageCount());
+	}
+
+	/**
+	 * runs steps one at a time and in one go, and checks the timeline keeps within the budget
+	 * it shares with step back and leaves out the steps run in one go
+	 */
+	@Test
+	public void testTimelineIsBounded() {
+		List<Router> routers = addRing(model);
+		model.setSeed(18);
+		model.setRoutingAlgorithm(new BreadthFirstSearchRoutingAlgorithm());
+		model.setTimelineSize(4, 1000);
+		model.setUndoBudget(20000, 1000);
+		for (int i = 0; i < 100; i++) {
+			model.step();
+		}
+		assertTrue("The oldest steps should be dropped to keep within the budget", model.getTimelineFirstStep() > 0);
+		assertEquals(100, model.getTimelineLastStep());
+
+		model.runSteps(20);
+		assertEquals("Steps run in one go are not kept", -1, model.getTimelineLastStep());
+		String state = describe(routers) + model.getMessageCount();
+		model.step();
+		assertEquals("The timeline should start again from the next step", 120, model.getTimelineFirstStep());
+		model.seekToStep(120);
+		assertEquals(state, describe(routers) + model.getMessageCount());
+	}
+
+	/**
+	 * seeks back in a flooded simulation and steps on, checking the messages that were there move as they did the first time
+	 */
+	@Test
+	public void testSeekToStepKeepsFloodedRouters() {
+		List<Router> routers = addRing(model);
+		model.setSeed(14);
+		model.setRoutingAlgorithm(new FloodingRoutingAlgorithm());
+		model.setTimelineSize(4, 1000);
+
+		List<List<String>> states = new ArrayList<List<String>>();
+		for (int i = 0; i < 12; i++) {
+			model.step();
+			states.add(placement(routers, Integer.MAX_VALUE));
+		}
+		model.seekToStep(6);
+		int messages = model.getMessageCount();
+		model.step();
+		assertEquals("The flooded messages should not go back to routers they went through",
+				keepPlacement(states.get(6), messages), placement(routers, messages));
+	}
+
+	/**
+	 * Lists the router of every stored message with an id lower than the limit
+	 */
+	private List<String> placement(List<Router> routers, int limit) {
+		List<String> placement = new ArrayList<String>();
+		for (Router router : routers) {
+			for (Message message : router.getStoredMessages()) {
+				if (message.getID() < limit) {
+					placement.add(router.getName() + ":" + message.getID() + ":" + message.getSteps());
+				}
+			}
+		}
+		Collections.sort(placement);
+		return placement;
+	}
+
+	/**
+	 * Keeps the entries of a placement for messages with an id lower than the limit
+	 */
+	private List<String> keepPlacement(List<String> placement, int limit) {
+		List<String> kept = new ArrayList<String>();
+		for (String entry : placement) {
+			if (Integer.parseInt(entry.split(":")[1]) < limit) {
+				kept.add(entry);
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * changes the weight of a link after a step, and checks the view is told and step back puts the old weight back
+	 */
+	@Test
+	public void testStepBackUndoesLinkWeight() {
+		NetworkTopology[] topology = new NetworkTopology[1];
+		int[] notifications = new int[1];
+		model.addObserver((observable, event) -> {
+			topology[0] = ((NetworkEvent) event).getTopology();
+			notifications[0]++;
+		});
+		model.addRouter(new Router("a"));
+		model.addRouter(new Router("b"));
+		model.attachNeighbour("a", "b", 2);
+		model.step();
+		notifications[0] = 0;
+
+		assertTrue(model.setLinkWeight("a", "b", 5));
+		assertEquals("The view should be told of the new weight", 1, notifications[0]);
+		assertEquals(5.0, topology[0].getLinkWeight("a", "b"), 0.0);
+		model.stepBack();
+		assertEquals("Step back should put the old weight back", 2.0, topology[0].getLinkWeight("a", "b"), 0.0);
+		assertEquals(2.0, topology[0].getLinkWeight("b", "a"), 0.0);
+		assertEquals("There should still be 1 message", 1, model.getMessageCount());
+	}
+
+	/**
+	 * adds a router after a step, and checks step back undoes the edit before the step
+	 */
+	@Test
+	public void testStepBackUndoesEdits() {
+		model.addRouter(new Router("a"));
+		model.step();
+		model.addRouter(new Router("b"));
+		assertTrue("b should be added", model.containsRouter("b"));
+		model.stepBack();
+		assertFalse("b should be removed", model.containsRouter("b"));
+		assertEquals("There should still be 1 message", 1, model.getMessageCount());
+		model.stepBack();
+		assertEquals("There should be 0 messages", 0, model.getMessageCount());
+		assertTrue("a was added before the first step", model.containsRouter("a"));
+	}
+
+	/**
+	 * Lists the messages held by each router, with the number of jumps each one took
+	 */
+	private String describe(List<Router> routers) {
+		StringBuilder sb = new StringBuilder();
+		for (Router router : routers) {
+			for (Message message : router.getStoredMessages()) {
+				sb.append(message.getID()).append(':').append(message.getSteps()).append(' ');
+			}
+			sb.append('|');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Lists the ids of the messages held by a router, in increasing order
+	 */
+	private List<Integer> ids(Router router) {
+		List<Integer> ids = new ArrayList<Integer>();
+		for (Message message : router.getStoredMessages()) {
+			ids.add(message.getID());
+		}
+		Collections.sort(ids);
+		return ids;
+	}
+
+	/**
+	 * Adds a ring of 100 routers, with a link across the ring from every tenth router
+	 */
+	private List<Router> addRing(NetworkRoutingSimulatorModel model) {
+		List<Router> routers = new ArrayList<Router>();
+		for (int i = 0; i < 100; i++) {
+			Router router = new Router("r" + i);
+			model.addRouter(router);
+			routers.add(router);
+		}
+		for (int i = 0; i < 100; i++) {
+			model.attachNeighbour("r" + i, "r" + (i + 1) % 100);
+			if (i % 10 == 0) {
+				model.attachNeighbour("r" + i, "r" + (i + 50) % 100);
+			}
+		}
+		return routers;
+	}
+
+	/**
+	 * Checks that each pair of routers hold messages with the same ids, in the same order
+	 */
+	private void assertSameMessages(List<Router> expected, List<Router> actual) {
+		for (int i = 0; i < expected.size(); i++) {
+			List<Message> expectedMessages = expected.get(i).getStoredMessages();
+			List<Message> actualMessages = actual.get(i).getStoredMessages();
+			assertEquals("Router " + i + " should hold as many messages", expectedMessages.size(), actualMessages.size());
+			for (int j = 0; j < expectedMessages.size(); j++) {
+				assertEquals(expectedMessages.get(j).getID(), actualMessages.get(j).getID());
+				assertEquals(expectedMessages.get(j).getSteps(), actualMessages.get(j).getSteps());
+			}
+		}
+	}
 }
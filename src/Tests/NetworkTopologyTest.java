@@ -2,7 +2,7 @@ package Tests;
 
 import static org.junit.Assert.*;
 
-import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import org.junit.After;
@@ -12,6 +12,7 @@ import org.junit.Test;
 import Model.Message;
 import Model.NetworkTopology;
 import Model.Router;
+import Model.TopologySnapshot;
 
 /**
  * Tests for the NetworkTopology class (ex: adding routers, removing routers,
@@ -71,6 +72,25 @@ public class NetworkTopologyTest {
 		assertEquals("Router neighbour should be successfully set.", true, thisIsTrue);
 	}
 
+	@Test
+	public void testBulkInsertRemovesDuplicateLinks() {
+		Router sam = new Router("sam");
+		network2.addRouter(sam);
+		network2.beginBulkInsert();
+		assertTrue(network2.setRouterNeighbour("bob", "jim", 2));
+		assertTrue(network2.setRouterNeighbour("bob", "sam"));
+		assertTrue("Links are not checked for duplicates while bulk inserting", network2.setRouterNeighbour("bob", "jim", 5));
+		network2.setRouterNeighbour("jim", "bob");
+		network2.endBulkInsert();
+
+		assertEquals("The duplicate link should be removed.", 2, network2.getNeighbours("bob").size());
+		assertEquals("jim", network2.getNeighbours("bob").get(0).getName());
+		assertEquals("sam", network2.getNeighbours("bob").get(1).getName());
+		assertEquals("The first weight should be kept.", 2.0, network2.getLinkWeight("bob", "jim"), 0.0);
+		assertEquals(2, network2.getSnapshot().degree(router.getId()));
+		assertFalse("Duplicates are checked again after bulk inserting", network2.setRouterNeighbour("bob", "sam"));
+	}
+
 	@Test
 	public void testRemoveNeighbour() {
 		network2.setRouterNeighbour("bob", "jim");
@@ -82,7 +102,7 @@ public class NetworkTopologyTest {
 	public void testClearMessages() {
 		router.storeMessage(message);
 		network.clearMessages();
-		ArrayList<Message> messages = router.getStoredMessages();
+		List<Message> messages = router.getStoredMessages();
 		assertEquals("Messages on router should be empty after clearing messages", 0, messages.size());
 	}
 
@@ -91,6 +111,79 @@ public class NetworkTopologyTest {
 		assertEquals("Router toString() should be equal to the router's name.", router.getName(), router.toString());
 	}
 
+	@Test
+	public void testGetRouterById() {
+		assertEquals("Should get the 'jim' router by its id.", router2, network2.getRouter(router2.getId()));
+		assertEquals("Unknown ids should return null.", null, network2.getRouter(network2.getRouterIdCapacity()));
+	}
+
+	@Test
+	public void testRouterIdsStableAcrossEdits() {
+		Router router3 = new Router("tom");
+		network2.addRouter(router3);
+		int jimId = router2.getId();
+		int tomId = router3.getId();
+		network2.removeRouter("bob");
+		assertEquals("Removing a router should not change the ids of the others.", jimId, router2.getId());
+		assertEquals("Removing a router should not change the ids of the others.", tomId, router3.getId());
+
+		Router router4 = new Router("sam");
+		network2.addRouter(router4);
+		assertTrue("The id of a removed router should be reused.", router4.getId() < network2.getRouterIdCapacity());
+		assertEquals("There should be no gaps after reusing the id.", 3, network2.getRouterIdCapacity());
+		assertEquals("Should get the 'sam' router by name.", router4, network2.getRouter("sam"));
+	}
+
+	@Test
+	public void testSnapshot() {
+		network2.setRouterNeighbour("bob", "jim");
+		TopologySnapshot snapshot = network2.getSnapshot();
+		assertEquals("The snapshot should be reused while the topology is unchanged.", snapshot, network2.getSnapshot());
+		assertEquals("There should be 2 routers in the snapshot.", 2, snapshot.numberOfRouters());
+		assertEquals("'bob' should have 1 neighbour.", 1, snapshot.degree(router.getId()));
+		assertEquals("'jim' should have no neighbours.", 0, snapshot.degree(router2.getId()));
+		assertEquals("'bob' should have 'jim' as a neighbour.", router2.getId(),
+				snapshot.getNeighbourIds()[snapshot.getOffsets()[router.getId()]]);
+
+		network2.removeNeighbour("bob", "jim");
+		assertTrue("A new snapshot should be built after the topology changes.", snapshot != network2.getSnapshot());
+		assertEquals("'bob' should have no neighbours.", 0, network2.getSnapshot().degree(router.getId()));
+	}
+
+	@Test
+	public void testLinkWeights() {
+		Router router3 = new Router("tom");
+		network2.addRouter(router3);
+		network2.setRouterNeighbour("bob", "jim");
+		network2.setRouterNeighbour("bob", "tom", 2.5);
+		assertEquals("Links should have the default weight.", NetworkTopology.DEFAULT_LINK_WEIGHT, network2.getLinkWeight("bob", "jim"), 0.0);
+		assertEquals("The link to 'tom' should keep its weight.", 2.5, network2.getLinkWeight("bob", "tom"), 0.0);
+		assertTrue("Missing links should have no weight.", Double.isNaN(network2.getLinkWeight("jim", "bob")));
+		assertFalse("Weights should be positive.", network2.setLinkWeight("bob", "jim", 0));
+		assertTrue("The weight should be changed.", network2.setLinkWeight("bob", "jim", 4));
+
+		network2.removeNeighbour("bob", "jim");
+		assertEquals("The remaining link should keep its weight.", 2.5, network2.getLinkWeight("bob", "tom"), 0.0);
+		TopologySnapshot snapshot = network2.getSnapshot();
+		assertEquals("The snapshot should hold the weight of the link.", 2.5,
+				snapshot.getWeights()[snapshot.getOffsets()[router.getId()]], 0.0);
+	}
+
+	@Test
+	public void testSnapshotLinkWeights() {
+		Router router3 = new Router("tom");
+		network2.addRouter(router3);
+		// the neighbours are added in descending order of id, unlike the sorted rows searched
+		network2.setRouterNeighbour("bob", "tom", 2.5);
+		network2.setRouterNeighbour("bob", "jim", 4);
+		TopologySnapshot snapshot = network2.getSnapshot();
+		assertEquals("The row should keep the order of the neighbour list.", router3.getId(),
+				snapshot.getNeighbourIds()[snapshot.getOffsets()[router.getId()]]);
+		assertEquals(2.5, snapshot.getLinkWeight(router.getId(), router3.getId()), 0.0);
+		assertEquals(4, snapshot.getLinkWeight(router.getId(), router2.getId()), 0.0);
+		assertTrue("Missing links should have no weight.", Double.isNaN(snapshot.getLinkWeight(router2.getId(), router.getId())));
+	}
+
 	@Test
 	public void testNumberOfRouters() {
 		assertEquals("There should be 2 routers currently in the topology.", 2, network2.numberOfRouters());
@@ -81,6 +81,30 @@ public class RouterTest {
 		assertEquals("Message List size should be '0'", 0, router.getStoredMessages().size());
 	}
 
+	@Test
+	public void testSwapMessages() {
+		Message stored = new Message(0, null, null);
+		Message received = new Message(1, null, null);
+		router.storeMessage(stored);
+		router.receiveMessage(received);
+		assertEquals("Received messages should not be stored before the swap", 1, router.getStoredMessages().size());
+		assertEquals("Message should be '0'", stored, router.getStoredMessages().get(0));
+
+		router.swapMessages();
+		assertEquals("Message List size should be '1'", 1, router.getStoredMessages().size());
+		assertEquals("Message should be '1'", received, router.getStoredMessages().get(0));
+
+		router.swapMessages();
+		assertEquals("Message List size should be '0'", 0, router.getStoredMessages().size());
+	}
+
+	@Test
+	public void testEqualsAndHashCode() {
+		Router sameName = new Router(ROUTER_NAME);
+		assertEquals("Routers with the same name should be equal", router, sameName);
+		assertEquals("Equal routers should have the same hash code", router.hashCode(), sameName.hashCode());
+	}
+
 	@Test
 	public void testToString() {
 		assertEquals("Router Name should be '" + ROUTER_NAME + "'", ROUTER_NAME, router.toString());
@@ -0,0 +1,343 @@
+package Tests;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.NetworkTopology;
+import Model.Router;
+import Model.RoutingTable;
+import Routing.BreadthFirstSearchRoutingAlgorithm;
+import Routing.DepthFirstSearchRoutingAlgorithm;
+import Routing.DestinationTreeCache;
+import Routing.DijkstraRoutingAlgorithm;
+import Routing.LazyRoutingTable;
+import Routing.RoutingAlgorithm;
+
+/**
+ * Tests for the routing tables set by the routing algorithms.
+ */
+public class RoutingAlgorithmTest {
+
+	private static final int RING_SIZE = 200;
+
+	private NetworkTopology line;
+	private NetworkTopology ring;
+	private ForkJoinPool pool;
+
+	/**
+	 * Creates a line a - b - c - d with a disconnected router e, and a large ring
+	 * with a few chords
+	 * 
+	 * @throws Exception
+	 */
+	@Before
+	public void setUp() throws Exception {
+		line = new NetworkTopology();
+		for (String name : new String[] { "a", "b", "c", "d", "e" }) {
+			line.addRouter(new Router(name));
+		}
+		link(line, "a", "b");
+		link(line, "b", "c");
+		link(line, "c", "d");
+
+		ring = new NetworkTopology();
+		for (int i = 0; i < RING_SIZE; i++) {
+			ring.addRouter(new Router("r" + i));
+		}
+		for (int i = 0; i < RING_SIZE; i++) {
+			link(ring, "r" + i, "r" + (i + 1) % RING_SIZE);
+			if (i % 7 == 0) link(ring, "r" + i, "r" + (i * 3) % RING_SIZE);
+		}
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdown();
+	}
+
+	private void link(NetworkTopology topology, String a, String b) {
+		topology.setRouterNeighbour(a, b);
+		topology.setRouterNeighbour(b, a);
+	}
+
+	private Router nextHop(NetworkTopology topology, String from, String to) {
+		RoutingTable table = topology.getRouter(from).getRoutingTable();
+		Router destination = topology.getRouter(to);
+		return table.getNextHopCount(destination) == 0 ? null : table.getNextHop(destination, 0);
+	}
+
+	/**
+	 * Ensure the breadth first tables follow the line and skip unreachable routers
+	 */
+	@Test
+	public void testBreadthFirstTables() {
+		new BreadthFirstSearchRoutingAlgorithm().forceSetRoutingTables(line);
+		assertEquals(line.getRouter("b"), nextHop(line, "a", "d"));
+		assertEquals(line.getRouter("c"), nextHop(line, "d", "a"));
+		assertEquals(line.getRouter("d"), nextHop(line, "c", "d"));
+		assertNull(nextHop(line, "a", "a"));
+		assertNull(nextHop(line, "a", "e"));
+		assertNull(nextHop(line, "e", "a"));
+	}
+
+	/**
+	 * Ensure the depth first tables follow the line and skip unreachable routers
+	 */
+	@Test
+	public void testDepthFirstTables() {
+		new DepthFirstSearchRoutingAlgorithm().forceSetRoutingTables(line);
+		assertEquals(line.getRouter("b"), nextHop(line, "a", "d"));
+		assertEquals(line.getRouter("c"), nextHop(line, "d", "a"));
+		assertNull(nextHop(line, "b", "b"));
+		assertNull(nextHop(line, "a", "e"));
+	}
+
+	/**
+	 * Ensure building the tables on a pool gives the same tables as building them on one thread
+	 */
+	@Test
+	public void testParallelTablesMatchSequentialTables() {
+		RoutingAlgorithm[] algorithms = { new BreadthFirstSearchRoutingAlgorithm(), new DepthFirstSearchRoutingAlgorithm() };
+		for (RoutingAlgorithm algorithm : algorithms) {
+			algorithm.forceSetRoutingTables(ring);
+			Router[][] expected = new Router[RING_SIZE][RING_SIZE];
+			for (int i = 0; i < RING_SIZE; i++) {
+				for (int j = 0; j < RING_SIZE; j++) {
+					expected[i][j] = nextHop(ring, "r" + i, "r" + j);
+				}
+			}
+
+			algorithm.setPool(pool);
+			algorithm.forceSetRoutingTables(ring);
+			for (int i = 0; i < RING_SIZE; i++) {
+				for (int j = 0; j < RING_SIZE; j++) {
+					assertEquals(expected[i][j], nextHop(ring, "r" + i, "r" + j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Counts the routers a message goes through by following the next routers
+	 * from one router to another
+	 */
+	private int routeLength(NetworkTopology topology, String from, String to) {
+		Router destination = topology.getRouter(to);
+		Router current = topology.getRouter(from);
+		int length = 0;
+		while (!current.equals(destination)) {
+			current = current.getRoutingTable().getNextHop(destination, 0);
+			length++;
+			assertTrue(length <= RING_SIZE);
+		}
+		return length;
+	}
+
+	/**
+	 * Ensure the lazy breadth first tables give the same route lengths as the full tables,
+	 * also when the cache keeps a single destination
+	 */
+	@Test
+	public void testLazyTablesAreShortestRoutes() {
+		RoutingAlgorithm algorithm = new BreadthFirstSearchRoutingAlgorithm();
+		algorithm.forceSetRoutingTables(ring);
+		int[][] expected = new int[RING_SIZE][RING_SIZE];
+		for (int i = 0; i < RING_SIZE; i++) {
+			for (int j = 0; j < RING_SIZE; j++) {
+				expected[i][j] = routeLength(ring, "r" + i, "r" + j);
+			}
+		}
+
+		for (int cacheSize : new int[] { 1, RING_SIZE }) {
+			algorithm.setLazyCacheSize(cacheSize);
+			algorithm.forceSetRoutingTables(ring);
+			assertTrue(ring.getRouter("r0").getRoutingTable() instanceof LazyRoutingTable);
+			for (int i = 0; i < RING_SIZE; i++) {
+				for (int j = 0; j < RING_SIZE; j++) {
+					assertEquals(expected[i][j], routeLength(ring, "r" + i, "r" + j));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ensure lazy tables skip unreachable routers and keep no more trees than the cache size
+	 */
+	@Test
+	public void testLazyTablesCacheSize() {
+		RoutingAlgorithm algorithm = new BreadthFirstSearchRoutingAlgorithm();
+		algorithm.setLazyCacheSize(2);
+		algorithm.forceSetRoutingTables(line);
+		assertEquals(line.getRouter("b"), nextHop(line, "a", "d"));
+		assertEquals(line.getRouter("c"), nextHop(line, "d", "a"));
+		assertNull(nextHop(line, "a", "a"));
+		assertNull(nextHop(line, "a", "e"));
+		assertNull(nextHop(line, "e", "a"));
+		DestinationTreeCache cache = ((LazyRoutingTable) line.getRouter("a").getRoutingTable()).getCache();
+		assertEquals(2, cache.size());
+
+		// depth first routes depend on where the message started, so its tables are never lazy
+		algorithm = new DepthFirstSearchRoutingAlgorithm();
+		algorithm.setLazyCacheSize(2);
+		algorithm.forceSetRoutingTables(line);
+		assertFalse(line.getRouter("a").getRoutingTable() instanceof LazyRoutingTable);
+	}
+
+	/**
+	 * Ensure lazy tables looked up from several threads at once, with a cache much smaller than
+	 * the number of destinations, give the same routes as lazy tables that keep every tree
+	 */
+	@Test
+	public void testLazyTablesLookedUpInParallel() throws Exception {
+		RoutingAlgorithm algorithm = new BreadthFirstSearchRoutingAlgorithm();
+		algorithm.setLazyCacheSize(RING_SIZE);
+		algorithm.forceSetRoutingTables(ring);
+		Router[][] expected = new Router[RING_SIZE][RING_SIZE];
+		for (int i = 0; i < RING_SIZE; i++) {
+			for (int j = 0; j < RING_SIZE; j++) {
+				expected[i][j] = nextHop(ring, "r" + i, "r" + j);
+			}
+		}
+
+		algorithm.setLazyCacheSize(8);
+		algorithm.forceSetRoutingTables(ring);
+		AtomicInteger mismatches = new AtomicInteger();
+		pool.submit(() -> IntStream.range(0, RING_SIZE * 4).parallel().forEach(k -> {
+			// the threads go through the destinations in different orders, so trees are dropped and built again
+			int i = (k * 37) % RING_SIZE;
+			for (int j = 0; j < RING_SIZE; j++) {
+				int destination = (j + k) % RING_SIZE;
+				if (nextHop(ring, "r" + i, "r" + destination) != expected[i][destination]) {
+					mismatches.incrementAndGet();
+				}
+			}
+		})).get();
+		assertEquals(0, mismatches.get());
+		DestinationTreeCache cache = ((LazyRoutingTable) ring.getRouter("r0").getRoutingTable()).getCache();
+		assertTrue(cache.size() <= 8);
+	}
+
+	/**
+	 * Ensure the breadth first tables updated after each edit are the same as the tables set from scratch
+	 */
+	@Test
+	public void testUpdatedTablesMatchRebuiltTables() {
+		RoutingAlgorithm algorithm = new BreadthFirstSearchRoutingAlgorithm();
+		algorithm.forceSetRoutingTables(ring);
+
+		link(ring, "r10", "r100");
+		assertUpdatedTablesMatch(algorithm);
+		ring.removeNeighbour("r1", "r2");
+		ring.removeNeighbour("r2", "r1");
+		assertUpdatedTablesMatch(algorithm);
+		ring.setRouterNeighbour("r50", "r150");
+		assertUpdatedTablesMatch(algorithm);
+		ring.removeRouter("r7");
+		assertUpdatedTablesMatch(algorithm);
+		ring.addRouter(new Router("x"));
+		assertUpdatedTablesMatch(algorithm);
+		link(ring, "x", "r3");
+		assertUpdatedTablesMatch(algorithm);
+	}
+
+	/**
+	 * Updates the tables of the ring, then checks them against tables set from scratch
+	 */
+	private void assertUpdatedTablesMatch(RoutingAlgorithm algorithm) {
+		algorithm.updateRoutingTables(ring);
+		Router[] routers = ring.getRouters().toArray(new Router[0]);
+		Router[][] updated = new Router[routers.length][routers.length];
+		for (int i = 0; i < routers.length; i++) {
+			for (int j = 0; j < routers.length; j++) {
+				updated[i][j] = nextHop(ring, routers[i].getName(), routers[j].getName());
+			}
+		}
+		new BreadthFirstSearchRoutingAlgorithm().forceSetRoutingTables(ring);
+		for (int i = 0; i < routers.length; i++) {
+			for (int j = 0; j < routers.length; j++) {
+				assertEquals(nextHop(ring, routers[i].getName(), routers[j].getName()), updated[i][j]);
+			}
+		}
+	}
+
+	/**
+	 * Ensure a new algorithm of each listed kind is created by its name, and not shared with INSTANCES
+	 */
+	@Test
+	public void testNewInstanceByName() {
+		for (String name : RoutingAlgorithm.INSTANCES.keySet()) {
+			RoutingAlgorithm algorithm = RoutingAlgorithm.newInstance(name);
+			assertNotSame(RoutingAlgorithm.INSTANCES.get(name), algorithm);
+			assertEquals(RoutingAlgorithm.INSTANCES.get(name).getClass(), algorithm.getClass());
+			assertEquals(name, RoutingAlgorithm.getName(algorithm));
+		}
+		assertNull(RoutingAlgorithm.newInstance("not listed"));
+		assertNull(RoutingAlgorithm.newInstance(null));
+	}
+
+	/**
+	 * Ensure the Dijkstra tables go around a heavy link, and the lazy tables pick routes of the same weight
+	 */
+	@Test
+	public void testDijkstraTables() {
+		NetworkTopology square = new NetworkTopology();
+		for (String name : new String[] { "a", "b", "c", "d" }) {
+			square.addRouter(new Router(name));
+		}
+		square.setRouterNeighbour("a", "d", 10);
+		square.setRouterNeighbour("a", "b", 1);
+		square.setRouterNeighbour("b", "c", 1);
+		square.setRouterNeighbour("c", "d", 1);
+		RoutingAlgorithm algorithm = new DijkstraRoutingAlgorithm();
+		algorithm.forceSetRoutingTables(square);
+		assertEquals(square.getRouter("b"), nextHop(square, "a", "d"));
+		assertNull(nextHop(square, "d", "a"));
+
+		square.setLinkWeight("a", "d", 2);
+		algorithm.updateRoutingTables(square);
+		assertEquals(square.getRouter("d"), nextHop(square, "a", "d"));
+
+		for (int i = 0; i < RING_SIZE; i++) {
+			ring.setLinkWeight("r" + i, "r" + (i + 1) % RING_SIZE, 1 + i % 5);
+		}
+		algorithm.forceSetRoutingTables(ring);
+		double[][] expected = new double[RING_SIZE][RING_SIZE];
+		for (int i = 0; i < RING_SIZE; i++) {
+			for (int j = 0; j < RING_SIZE; j++) {
+				expected[i][j] = routeWeight(ring, "r" + i, "r" + j);
+			}
+		}
+		algorithm.setLazyCacheSize(8);
+		algorithm.forceSetRoutingTables(ring);
+		for (int i = 0; i < RING_SIZE; i++) {
+			for (int j = 0; j < RING_SIZE; j++) {
+				assertEquals(expected[i][j], routeWeight(ring, "r" + i, "r" + j), 1e-9);
+			}
+		}
+	}
+
+	/**
+	 * Adds up the weights of the links a message goes through from one router to another
+	 */
+	private double routeWeight(NetworkTopology topology, String from, String to) {
+		Router destination = topology.getRouter(to);
+		Router current = topology.getRouter(from);
+		double weight = 0;
+		int length = 0;
+		while (!current.equals(destination)) {
+			Router next = current.getRoutingTable().getNextHop(destination, 0);
+			weight += topology.getLinkWeight(current.getName(), next.getName());
+			current = next;
+			assertTrue(++length <= RING_SIZE);
+		}
+		return weight;
+	}
+}
@@ -0,0 +1,150 @@
+package Tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import Model.NetworkTopology;
+import Model.Router;
+import Model.TopologySnapshot;
+import Traffic.GravityTraffic;
+import Traffic.HotspotTraffic;
+import Traffic.PoissonTraffic;
+import Traffic.TrafficGenerator;
+import Traffic.TrafficSink;
+import Traffic.UniformTraffic;
+
+/**
+ * Tests for the generators of the messages created at each step.
+ */
+public class TrafficGeneratorTest {
+
+	private NetworkTopology topology;
+	private TopologySnapshot snapshot;
+
+	@Before
+	public void setUp() throws Exception {
+		topology = new NetworkTopology();
+		for (int i = 0; i < 10; i++) {
+			topology.addRouter(new Router("r" + i));
+		}
+		// r0 is linked to every other router, which gives it the largest degree
+		for (int i = 1; i < 10; i++) {
+			topology.setRouterNeighbour("r0", "r" + i);
+			topology.setRouterNeighbour("r" + i, "r0");
+		}
+		snapshot = topology.getSnapshot();
+	}
+
+	/**
+	 * Ensure uniform traffic creates the same number of messages at every step
+	 */
+	@Test
+	public void testUniformCount() {
+		List<int[]> messages = generate(new UniformTraffic(25), new Random(1), 4);
+		assertEquals("There should be 25 messages per step", 100, messages.size());
+		assertEquals("A negative count should create no messages", 0, generate(new UniformTraffic(-3), new Random(1), 1).size());
+	}
+
+	/**
+	 * Ensure the Poisson counts have the requested mean, below and above the switch of sampling method
+	 */
+	@Test
+	public void testPoissonMean() {
+		Random random = new Random(2);
+		for (double mean : new double[] { 0.5, 4, 30, 500 }) {
+			long total = 0;
+			int samples = 20000;
+			for (int i = 0; i < samples; i++) {
+				int count = PoissonTraffic.sample(mean, random);
+				assertTrue("A count can't be negative", count >= 0);
+				total += count;
+			}
+			// the standard error of the mean is sqrt(mean / samples)
+			assertEquals("The mean count should be " + mean, mean, (double) total / samples, 5 * Math.sqrt(mean / samples));
+		}
+		assertEquals("A mean of 0 should create no messages", 0, PoissonTraffic.sample(0, random));
+	}
+
+	/**
+	 * Ensure the hotspots receive their share of the messages
+	 */
+	@Test
+	public void testHotspotShare() {
+		List<int[]> messages = generate(new HotspotTraffic(1000, 0.5, "r3", "missing"), new Random(3), 10);
+		int hotspot = topology.getRouter("r3").getId();
+		int received = 0;
+		for (int[] message : messages) {
+			if (message[1] == hotspot) {
+				received++;
+			}
+		}
+		// half the messages plus a tenth of the others
+		assertEquals("The hotspot should receive 55% of the messages", 0.55, received / (double) messages.size(), 0.02);
+	}
+
+	/**
+	 * Ensure gravity traffic sends messages in proportion to the masses of the routers
+	 */
+	@Test
+	public void testGravityProportions() {
+		Map<String, Double> masses = new HashMap<String, Double>();
+		masses.put("r1", 3.0);
+		masses.put("r2", 0.0);
+		List<int[]> messages = generate(new GravityTraffic(1000, masses), new Random(4), 20);
+		int[] sent = new int[topology.getRouterIdCapacity()];
+		for (int[] message : messages) {
+			assertFalse("A router shouldn't send a message to itself", message[0] == message[1]);
+			sent[message[0]]++;
+		}
+		assertEquals("A router without mass shouldn't send messages", 0, sent[topology.getRouter("r2").getId()]);
+		// r1 has three times the mass of each of the eight routers of mass 1
+		assertEquals("r1 should send 3/11 of the messages", 3 / 11.0, sent[topology.getRouter("r1").getId()] / (double) messages.size(), 0.02);
+
+		// by degree, r0 has as many links as all the other routers together
+		messages = generate(new GravityTraffic(1000), new Random(5), 20);
+		int fromHub = 0;
+		for (int[] message : messages) {
+			if (message[0] == topology.getRouter("r0").getId()) {
+				fromHub++;
+			}
+		}
+		assertEquals("r0 should send half the messages", 0.5, fromHub / (double) messages.size(), 0.02);
+	}
+
+	/**
+	 * Ensure generators seeded the same way create the same messages
+	 */
+	@Test
+	public void testSeededDeterminism() {
+		TrafficGenerator[] generators = { new UniformTraffic(10), new PoissonTraffic(7), new HotspotTraffic(10, 0.3, "r5"), new GravityTraffic(10) };
+		for (TrafficGenerator generator : generators) {
+			List<int[]> first = generate(generator, new Random(6), 5);
+			List<int[]> second = generate(generator, new Random(6), 5);
+			assertEquals("The same number of messages should be created", first.size(), second.size());
+			for (int i = 0; i < first.size(); i++) {
+				assertArrayEquals("The same messages should be created", first.get(i), second.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Runs a generator for a number of steps
+	 * @return the source and destination ids of the messages created
+	 */
+	private List<int[]> generate(TrafficGenerator generator, Random random, int steps) {
+		final List<int[]> messages = new ArrayList<int[]>();
+		TrafficSink sink = (sourceId, destinationId) -> messages.add(new int[] { sourceId, destinationId });
+		for (int i = 0; i < steps; i++) {
+			generator.generate(snapshot, random, sink);
+		}
+		return messages;
+	}
+}
@@ -6,6 +6,9 @@ package Tests;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -18,10 +21,13 @@ import Model.Message;
 import Model.ModelContainer;
 import Model.NetworkTopology;
 import Model.Router;
+import Routing.BreadthFirstSearchRoutingAlgorithm;
 import Routing.RandomRoutingAlgorithm;
 import View.Connection;
 import View.Node;
 import View.ShapesContainer;
+import XML.BinaryStateSerializer;
+import XML.StreamingStateSerializer;
 import XML.XMLState;
 import XML.XMLStateSerializer;
 
@@ -37,6 +43,7 @@ public class XMLTest {
 	private ModelContainer modelContainer;
 	private ShapesContainer shapesContainer;
 	private File saveFile;
+	private File binaryFile;
 	
 	/**
 	 * Creates a basic topology and view shapes for serialization testing
@@ -53,7 +60,7 @@ public class XMLTest {
 		topology.addRouter(a);
 		topology.addRouter(b);
 		topology.setRouterNeighbour("A", "B");
-		topology.setRouterNeighbour("B", "A");
+		topology.setRouterNeighbour("B", "A", 3);
 		topology.incrementTotalPacketsTransmittedMetric();
 		this.modelContainer = new ModelContainer(topology, new RandomRoutingAlgorithm(), 1, 1, 1);
 		
@@ -74,6 +81,7 @@ public class XMLTest {
 		
 		this.serializer = new XMLStateSerializer();
 		this.saveFile = new File("XMLTEST-" + hashCode() + ".xml");
+		this.binaryFile = new File("XMLTEST-" + hashCode() + "." + BinaryStateSerializer.FILE_EXTENSION);
 	}
 	
 	/**
@@ -86,6 +94,9 @@ public class XMLTest {
 		if (saveFile != null) {
 			saveFile.delete();
 		}
+		if (binaryFile != null) {
+			binaryFile.delete();
+		}
 	}
 	
 	/**
@@ -117,6 +128,8 @@ public class XMLTest {
 		assertFalse(newTopology.getRouter("A").getStoredMessages().isEmpty());
 		assertTrue(newTopology.getNeighbours("A").get(0).getName().equals("B"));
 		assertTrue(newTopology.getNeighbours("B").get(0).getName().equals("A"));
+		assertEquals(1.0, newTopology.getLinkWeight("A", "B"), 0.0);
+		assertEquals(3.0, newTopology.getLinkWeight("B", "A"), 0.0);
 		
 		assertTrue(newModelContainer.getChosenRoutingAlgorithm() instanceof RandomRoutingAlgorithm);
 		assertEquals(1.0, newModelContainer.getMessageGenerationRate(), 0.0);
@@ -128,4 +141,136 @@ public class XMLTest {
 		
 	}
 	
+	/**
+	 * Ensure the compact schema restores the same data and leaves out the routing tables and drawing fields
+	 */
+	@Test
+	public void testCompactDeserialize() throws IOException {
+		new BreadthFirstSearchRoutingAlgorithm().setRoutingTables(modelContainer.getTopology());
+		serializer.serialize(saveFile, state);
+		new XMLStateSerializer(true).serialize(binaryFile, state);
+		String compact = new String(Files.readAllBytes(binaryFile.toPath()), StandardCharsets.UTF_8);
+		assertTrue(compact.contains("compact-state"));
+		assertFalse(compact.contains("routingTable"));
+		assertFalse(compact.contains("FILL_COLOR"));
+		assertTrue(binaryFile.length() * 4 < saveFile.length());
+
+		state = new XMLState();
+		serializer.deserialize(binaryFile, state);
+		ModelContainer newModelContainer = state.getModelContainer();
+		NetworkTopology newTopology = newModelContainer.getTopology();
+		assertEquals(1, newTopology.getTotalPacketsTransmittedMetric());
+		assertNull(newTopology.getRouter("A").getRoutingTable());
+		assertEquals(0, newTopology.getRouter("A").getStoredMessages().get(0).getID());
+		assertEquals(3.0, newTopology.getLinkWeight("B", "A"), 0.0);
+		assertTrue(newModelContainer.getChosenRoutingAlgorithm() instanceof RandomRoutingAlgorithm);
+		assertEquals(1, newModelContainer.getMessageCounter());
+		assertEquals(shapesContainer.getNodes(), state.getShapesContainer().getNodes());
+		assertEquals(shapesContainer.getConnections(), state.getShapesContainer().getConnections());
+		assertEquals(200, state.getShapesContainer().getNodes().get(1).y, 0.0);
+	}
+
+	/**
+	 * Ensure a file holding only a generated topology is streamed in, with its duplicate links dropped
+	 */
+	@Test
+	public void testStreamGeneratedTopology() throws IOException {
+		String xml = "<?xml version=\"1.0\"?>\n<topology>\n"
+				+ "<router name=\"A\"/><router name=\"B\"/><router name=\"C\"/>\n"
+				+ "<link from=\"A\" to=\"B\"/><link from=\"B\" to=\"A\" weight=\"3\"/><link from=\"A\" to=\"B\" weight=\"9\"/>\n"
+				+ "<link from=\"A\" to=\"C\"/><link from=\"A\" to=\"D\"/><unknown/>\n"
+				+ "<stored router=\"C\"><message id=\"7\" source=\"A\" destination=\"C\" steps=\"1\"/></stored>\n"
+				+ "</topology>\n";
+		Files.write(saveFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+		assertTrue(StreamingStateSerializer.isStreamable(saveFile));
+
+		state = new XMLState();
+		serializer.deserialize(saveFile, state);
+		NetworkTopology newTopology = state.getModelContainer().getTopology();
+		assertEquals(3, newTopology.numberOfRouters());
+		assertEquals(2, newTopology.getNeighbours("A").size());
+		assertEquals(1.0, newTopology.getLinkWeight("A", "B"), 0.0);
+		assertEquals(3.0, newTopology.getLinkWeight("B", "A"), 0.0);
+		assertEquals(7, newTopology.getRouter("C").getStoredMessages().get(0).getID());
+		assertEquals("New messages should be numbered after the ones read", 8, state.getModelContainer().getMessageCounter());
+		assertTrue(state.getShapesContainer().getNodes().isEmpty());
+	}
+
+	/**
+	 * Ensure the binary format restores the same data as the xml (model, shapes, etc)
+	 */
+	@Test
+	public void testBinaryDeserialize() {
+		Router a = modelContainer.getTopology().getRouter("A");
+		Router b = modelContainer.getTopology().getRouter("B");
+		Message flooded = new Message(1, b, a);
+		flooded.addRouter(b);
+		b.storeMessage(flooded);
+		a.storeMessage(flooded);
+		BinaryStateSerializer binarySerializer = new BinaryStateSerializer();
+		binarySerializer.serialize(binaryFile, state);
+		assertTrue(binaryFile.length() > 0);
+
+		state = new XMLState();
+		binarySerializer.deserialize(binaryFile, state);
+		ModelContainer newModelContainer = state.getModelContainer();
+		ShapesContainer newShapesContainer = state.getShapesContainer();
+
+		NetworkTopology newTopology = newModelContainer.getTopology();
+		assertEquals(1, newTopology.getTotalPacketsTransmittedMetric());
+		assertEquals("B", newTopology.getNeighbours("A").get(0).getName());
+		assertEquals("A", newTopology.getNeighbours("B").get(0).getName());
+		assertEquals(1.0, newTopology.getLinkWeight("A", "B"), 0.0);
+		assertEquals(3.0, newTopology.getLinkWeight("B", "A"), 0.0);
+
+		List<Message> storedInA = newTopology.getRouter("A").getStoredMessages();
+		assertEquals(2, storedInA.size());
+		assertEquals(0, storedInA.get(0).getID());
+		assertEquals("B", storedInA.get(0).getDestination().getName());
+		Message newFlooded = storedInA.get(1);
+		assertSame("A message stored in two routers should be read once", newFlooded,
+				newTopology.getRouter("B").getStoredMessages().get(0));
+		assertTrue(newFlooded.hasPassedThrough(newTopology.getRouter("B")));
+		assertFalse(newFlooded.hasPassedThrough(newTopology.getRouter("A")));
+
+		assertTrue(newModelContainer.getChosenRoutingAlgorithm() instanceof RandomRoutingAlgorithm);
+		assertEquals(1.0, newModelContainer.getMessageGenerationRate(), 0.0);
+		assertEquals(1, newModelContainer.getMessageCounter());
+		assertEquals(1, newModelContainer.getStepCounter());
+
+		assertEquals(shapesContainer.getNodes(), newShapesContainer.getNodes());
+		assertEquals(shapesContainer.getConnections(), newShapesContainer.getConnections());
+		assertEquals(200, newShapesContainer.getNodes().get(1).x, 0.0);
+	}
+
+	/**
+	 * Ensure a connection to a node that is not saved is left out of the binary format, and the rest is read back
+	 */
+	@Test
+	public void testBinarySkipsDanglingConnections() {
+		Node nodeC = new Node(300, 300);
+		nodeC.setName("C");
+		List<Connection> connections = new ArrayList<Connection>(shapesContainer.getConnections());
+		connections.add(new Connection(shapesContainer.getNodes().get(0), nodeC));
+		state.setShapesContainer(new ShapesContainer(shapesContainer.getNodes(), connections));
+		BinaryStateSerializer binarySerializer = new BinaryStateSerializer();
+		assertTrue(binarySerializer.serialize(binaryFile, state));
+
+		state = new XMLState();
+		binarySerializer.deserialize(binaryFile, state);
+		assertNotNull(state.getModelContainer());
+		assertEquals(shapesContainer.getConnections(), state.getShapesContainer().getConnections());
+	}
+
+	/**
+	 * Ensure a file that is not in the binary format leaves the state as it was
+	 */
+	@Test
+	public void testBinaryDeserializeRejectsOtherFiles() {
+		serializer.serialize(binaryFile, state);
+		XMLState newState = new XMLState();
+		new BinaryStateSerializer().deserialize(binaryFile, newState);
+		assertNull(newState.getModelContainer());
+	}
+
 }
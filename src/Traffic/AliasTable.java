@@ -0,0 +1,71 @@
+package Traffic;
+
+import java.util.Random;
+
+/**
+ * Draws indices in proportion to a set of weights in constant time, using the alias
+ * method (Vose). Each index gets a column holding the chance of keeping it, and the index
+ * the rest of the column is given to.
+ */
+class AliasTable {
+
+	private final double[] chances;
+	private final int[] aliases;
+
+	/**
+	 * Builds the table, taking time proportional to the number of weights
+	 * @param weights - the weights of the indices, none negative and not all zero
+	 */
+	AliasTable(double[] weights) {
+		int n = weights.length;
+		chances = new double[n];
+		aliases = new int[n];
+		double total = 0;
+		for (double weight : weights) {
+			total += weight;
+		}
+
+		// columns below the average are filled up from those above it
+		double[] scaled = new double[n];
+		int[] small = new int[n];
+		int[] large = new int[n];
+		int smallSize = 0;
+		int largeSize = 0;
+		for (int i = 0; i < n; i++) {
+			scaled[i] = weights[i] * n / total;
+			if (scaled[i] < 1) {
+				small[smallSize++] = i;
+			} else {
+				large[largeSize++] = i;
+			}
+		}
+		while (smallSize > 0 && largeSize > 0) {
+			int less = small[--smallSize];
+			int more = large[--largeSize];
+			chances[less] = scaled[less];
+			aliases[less] = more;
+			scaled[more] = (scaled[more] + scaled[less]) - 1;
+			if (scaled[more] < 1) {
+				small[smallSize++] = more;
+			} else {
+				large[largeSize++] = more;
+			}
+		}
+		// what is left is full up to rounding errors
+		while (largeSize > 0) {
+			chances[large[--largeSize]] = 1;
+		}
+		while (smallSize > 0) {
+			chances[small[--smallSize]] = 1;
+		}
+	}
+
+	/**
+	 * @param random - the random number generator to draw from
+	 * @return an index, drawn in proportion to its weight
+	 */
+	int sample(Random random) {
+		int column = random.nextInt(chances.length);
+		return random.nextDouble() < chances[column] ? column : aliases[column];
+	}
+}
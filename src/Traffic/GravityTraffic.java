@@ -0,0 +1,107 @@
+package Traffic;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import Model.TopologySnapshot;
+
+/**
+ * Creates the same number of messages at every step following a gravity model: the
+ * traffic between two routers is proportional to the product of their masses, so heavy
+ * routers send and receive more messages. The mass of a router is given by name, or is
+ * the number of its links. Sources and destinations are drawn from an alias table in
+ * constant time, and the table is only built again when the topology changes.
+ */
+public class GravityTraffic extends TrafficGenerator {
+
+	private static final long serialVersionUID = 6981646059264004577L;
+
+	// the number of draws of a destination different from the source before giving up
+	private static final int MAX_DRAWS = 16;
+
+	private final int messagesPerStep;
+	private final Map<String, Double> masses;
+
+	// the alias table over the routers of the snapshot it was last built for
+	private transient TopologySnapshot tableSnapshot;
+	private transient AliasTable table;
+
+	/**
+	 * Creates traffic where the mass of a router is the number of its links
+	 * @param messagesPerStep - the number of messages created at every step, no messages are created if it is negative
+	 */
+	public GravityTraffic(int messagesPerStep) {
+		this(messagesPerStep, null);
+	}
+
+	/**
+	 * Creates traffic where the masses of the routers are given by name
+	 * @param messagesPerStep - the number of messages created at every step, no messages are created if it is negative
+	 * @param masses - the masses of the routers by name, routers not in the map have a mass of 1, negative masses count as 0
+	 */
+	public GravityTraffic(int messagesPerStep, Map<String, Double> masses) {
+		this.messagesPerStep = Math.max(0, messagesPerStep);
+		this.masses = masses == null ? null : new HashMap<String, Double>(masses);
+	}
+
+	/**
+	 * @return the number of messages created at every step
+	 */
+	public int getMessagesPerStep() {
+		return messagesPerStep;
+	}
+
+	@Override
+	public void generate(TopologySnapshot snapshot, Random random, TrafficSink sink) {
+		AliasTable routers = getTable(snapshot);
+		int[] routerIds = snapshot.getRouterIds();
+		for (int i = 0; i < messagesPerStep; i++) {
+			if (routers == null) {
+				// every mass is 0, which leaves no router heavier than another
+				sink.send(uniformRouter(snapshot, random), uniformRouter(snapshot, random));
+				continue;
+			}
+			int source = routers.sample(random);
+			int destination = routers.sample(random);
+			// a router doesn't send messages to itself, unless it is the only one with mass
+			for (int draws = 1; destination == source && draws < MAX_DRAWS; draws++) {
+				destination = routers.sample(random);
+			}
+			sink.send(routerIds[source], routerIds[destination]);
+		}
+	}
+
+	/**
+	 * Builds the alias table again if the topology changed since it was last built
+	 * @param snapshot - the frozen adjacency of the network
+	 * @return the table over the indices of the router ids, or null if every mass is 0
+	 */
+	private AliasTable getTable(TopologySnapshot snapshot) {
+		if (tableSnapshot != snapshot) {
+			int[] routerIds = snapshot.getRouterIds();
+			double[] weights = new double[routerIds.length];
+			double total = 0;
+			for (int i = 0; i < routerIds.length; i++) {
+				weights[i] = Math.max(0, getMass(snapshot, routerIds[i]));
+				total += weights[i];
+			}
+			table = total > 0 ? new AliasTable(weights) : null;
+			tableSnapshot = snapshot;
+		}
+		return table;
+	}
+
+	/**
+	 * @param snapshot - the frozen adjacency of the network
+	 * @param id - the id of a router
+	 * @return the mass of the router
+	 */
+	private double getMass(TopologySnapshot snapshot, int id) {
+		if (masses == null) {
+			return snapshot.degree(id);
+		}
+		Double mass = masses.get(snapshot.getRouter(id).getName());
+		return mass == null ? 1 : mass;
+	}
+}
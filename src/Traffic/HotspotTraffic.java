@@ -0,0 +1,84 @@
+package Traffic;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.Random;
+
+import Model.Router;
+import Model.TopologySnapshot;
+
+/**
+ * Creates the same number of messages at every step, a share of which are sent to a few
+ * hotspot routers, such as servers that most of the network talks to. The other messages
+ * are sent to routers that are all equally likely, and the sources are all equally likely.
+ */
+public class HotspotTraffic extends TrafficGenerator {
+
+	private static final long serialVersionUID = -2172300417497046722L;
+
+	private final int messagesPerStep;
+	private final double hotspotShare;
+	private final Set<String> hotspotNames;
+
+	// the ids of the hotspots in the snapshot they were last looked up in
+	private transient TopologySnapshot hotspotSnapshot;
+	private transient int[] hotspotIds;
+
+	/**
+	 * @param messagesPerStep - the number of messages created at every step, no messages are created if it is negative
+	 * @param hotspotShare - the share of the messages sent to the hotspots, between 0 and 1
+	 * @param hotspotNames - the names of the hotspot routers, names of routers not in the topology are left out
+	 */
+	public HotspotTraffic(int messagesPerStep, double hotspotShare, String... hotspotNames) {
+		this.messagesPerStep = Math.max(0, messagesPerStep);
+		this.hotspotShare = Math.min(1, Math.max(0, hotspotShare));
+		this.hotspotNames = new HashSet<String>(Arrays.asList(hotspotNames));
+	}
+
+	/**
+	 * @return the number of messages created at every step
+	 */
+	public int getMessagesPerStep() {
+		return messagesPerStep;
+	}
+
+	/**
+	 * @return the share of the messages sent to the hotspots
+	 */
+	public double getHotspotShare() {
+		return hotspotShare;
+	}
+
+	@Override
+	public void generate(TopologySnapshot snapshot, Random random, TrafficSink sink) {
+		int[] hotspots = getHotspotIds(snapshot);
+		for (int i = 0; i < messagesPerStep; i++) {
+			int source = uniformRouter(snapshot, random);
+			int destination = hotspots.length > 0 && random.nextDouble() < hotspotShare
+					? hotspots[random.nextInt(hotspots.length)] : uniformRouter(snapshot, random);
+			sink.send(source, destination);
+		}
+	}
+
+	/**
+	 * Looks up the ids of the hotspots again if the topology changed since they were last looked up
+	 * @param snapshot - the frozen adjacency of the network
+	 * @return the ids of the hotspots in the topology
+	 */
+	private int[] getHotspotIds(TopologySnapshot snapshot) {
+		if (hotspotSnapshot != snapshot) {
+			int[] ids = new int[hotspotNames.size()];
+			int count = 0;
+			for (int id : snapshot.getRouterIds()) {
+				Router router = snapshot.getRouter(id);
+				if (hotspotNames.contains(router.getName())) {
+					ids[count++] = id;
+				}
+			}
+			hotspotIds = Arrays.copyOf(ids, count);
+			hotspotSnapshot = snapshot;
+		}
+		return hotspotIds;
+	}
+}
@@ -0,0 +1,113 @@
+package Traffic;
+
+import java.util.Random;
+
+import Model.TopologySnapshot;
+
+/**
+ * Creates messages that arrive independently of each other, so the number of messages
+ * created at a step follows a Poisson distribution. The routers are all equally likely.
+ */
+public class PoissonTraffic extends TrafficGenerator {
+
+	private static final long serialVersionUID = 8165406549127766201L;
+
+	// below this mean the number of messages is drawn by multiplying uniform numbers,
+	// which takes time proportional to the mean, above it a rejection method is used
+	private static final double MULTIPLICATION_LIMIT = 10;
+
+	// the logarithms of the factorials up to 9
+	private static final double[] LOG_FACTORIALS = new double[10];
+	static {
+		for (int k = 1; k < LOG_FACTORIALS.length; k++) {
+			LOG_FACTORIALS[k] = LOG_FACTORIALS[k - 1] + Math.log(k);
+		}
+	}
+
+	private final double meanMessagesPerStep;
+
+	/**
+	 * @param meanMessagesPerStep - the average number of messages created at a step, no messages are created if it is not positive
+	 */
+	public PoissonTraffic(double meanMessagesPerStep) {
+		this.meanMessagesPerStep = meanMessagesPerStep > 0 ? meanMessagesPerStep : 0;
+	}
+
+	/**
+	 * @return the average number of messages created at a step
+	 */
+	public double getMeanMessagesPerStep() {
+		return meanMessagesPerStep;
+	}
+
+	@Override
+	public void generate(TopologySnapshot snapshot, Random random, TrafficSink sink) {
+		int messages = sample(meanMessagesPerStep, random);
+		for (int i = 0; i < messages; i++) {
+			sink.send(uniformRouter(snapshot, random), uniformRouter(snapshot, random));
+		}
+	}
+
+	/**
+	 * Draws a number from a Poisson distribution
+	 * @param mean - the mean of the distribution
+	 * @param random - the random number generator to draw from
+	 * @return the number drawn
+	 */
+	public static int sample(double mean, Random random) {
+		if (mean <= 0) {
+			return 0;
+		}
+		if (mean < MULTIPLICATION_LIMIT) {
+			// the number of uniform numbers multiplied before going under e^-mean, less one
+			double limit = Math.exp(-mean);
+			double product = random.nextDouble();
+			int count = 0;
+			while (product > limit) {
+				product *= random.nextDouble();
+				count++;
+			}
+			return count;
+		}
+
+		// transformed rejection with squeeze (Hormann, 1993), which takes about the same
+		// time for any mean
+		double sqrtMean = Math.sqrt(mean);
+		double logMean = Math.log(mean);
+		double b = 0.931 + 2.53 * sqrtMean;
+		double a = -0.059 + 0.02483 * b;
+		double inverseAlpha = 1.1239 + 1.1328 / (b - 3.4);
+		double vr = 0.9277 - 3.6224 / (b - 2);
+		while (true) {
+			double u = random.nextDouble() - 0.5;
+			double v = random.nextDouble();
+			double us = 0.5 - Math.abs(u);
+			double k = Math.floor((2 * a / us + b) * u + mean + 0.43);
+			if (us >= 0.07 && v <= vr) {
+				return (int) k;
+			}
+			if (k < 0 || (us < 0.013 && v > us)) {
+				continue;
+			}
+			if (Math.log(v) + Math.log(inverseAlpha) - Math.log(a / (us * us) + b) <= -mean + k * logMean - logFactorial((int) k)) {
+				return (int) k;
+			}
+		}
+	}
+
+	/**
+	 * @param k - a number that is not negative
+	 * @return the logarithm of the factorial of k
+	 */
+	private static double logFactorial(int k) {
+		if (k < LOG_FACTORIALS.length) {
+			return LOG_FACTORIALS[k];
+		}
+		// Stirling's series
+		double x = k;
+		double inverse = 1 / x;
+		double inverseSquared = inverse * inverse;
+		return (x + 0.5) * Math.log(x) - x + 0.5 * Math.log(2 * Math.PI)
+				+ inverse * (1.0 / 12 - inverseSquared * (1.0 / 360 - inverseSquared / 1260));
+	}
+}
@@ -0,0 +1,36 @@
+package Traffic;
+
+import java.io.Serializable;
+import java.util.Random;
+
+import Model.TopologySnapshot;
+
+/**
+ * A TrafficGenerator decides how many messages are created at each step of the simulation,
+ * and between which routers. The routers are drawn from the ids of a topology snapshot, so
+ * picking a router takes the same time however large the topology is. Every random choice
+ * is drawn from the generator passed in, so a seeded simulation creates the same messages.
+ */
+public abstract class TrafficGenerator implements Serializable {
+
+	private static final long serialVersionUID = 2935113790420815874L;
+
+	/**
+	 * Creates the messages of one step
+	 * @param snapshot - the frozen adjacency of the network, with at least one router
+	 * @param random - the random number generator to draw from
+	 * @param sink - where the messages are sent
+	 */
+	public abstract void generate(TopologySnapshot snapshot, Random random, TrafficSink sink);
+
+	/**
+	 * Picks a router with every router equally likely
+	 * @param snapshot - the frozen adjacency of the network
+	 * @param random - the random number generator to draw from
+	 * @return the id of the router
+	 */
+	protected static int uniformRouter(TopologySnapshot snapshot, Random random) {
+		int[] routerIds = snapshot.getRouterIds();
+		return routerIds[random.nextInt(routerIds.length)];
+	}
+}
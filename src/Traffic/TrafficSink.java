@@ -0,0 +1,15 @@
+package Traffic;
+
+/**
+ * Receives the messages a traffic generator creates, as the ids of their source and
+ * destination routers.
+ */
+public interface TrafficSink {
+
+	/**
+	 * Creates a message
+	 * @param sourceId - the id of the router the message starts at
+	 * @param destinationId - the id of the router the message is sent to
+	 */
+	void send(int sourceId, int destinationId);
+}
@@ -0,0 +1,36 @@
+package Traffic;
+
+import java.util.Random;
+
+import Model.TopologySnapshot;
+
+/**
+ * Creates the same number of messages at every step, between routers that are all equally likely.
+ */
+public class UniformTraffic extends TrafficGenerator {
+
+	private static final long serialVersionUID = -4514883286000612962L;
+
+	private final int messagesPerStep;
+
+	/**
+	 * @param messagesPerStep - the number of messages created at every step, no messages are created if it is negative
+	 */
+	public UniformTraffic(int messagesPerStep) {
+		this.messagesPerStep = Math.max(0, messagesPerStep);
+	}
+
+	/**
+	 * @return the number of messages created at every step
+	 */
+	public int getMessagesPerStep() {
+		return messagesPerStep;
+	}
+
+	@Override
+	public void generate(TopologySnapshot snapshot, Random random, TrafficSink sink) {
+		for (int i = 0; i < messagesPerStep; i++) {
+			sink.send(uniformRouter(snapshot, random), uniformRouter(snapshot, random));
+		}
+	}
+}
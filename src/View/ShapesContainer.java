@@ -1,6 +1,9 @@
 package View;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A shapes container class to simply hold the node and connection
@@ -40,4 +43,29 @@ public class ShapesContainer {
 		return connections;
 	}
 
+	/**
+	 * Copies the names and coordinates of the shapes, so that they can be saved while the
+	 * shapes on the screen are moved or edited
+	 * @return a container of new nodes, and of new connections between the new nodes
+	 */
+	public ShapesContainer copy() {
+		List<Node> nodesCopy = new ArrayList<Node>(nodes.size());
+		Map<Node, Node> copies = new IdentityHashMap<Node, Node>();
+		for (Node node : nodes) {
+			Node copy = new Node(node.x, node.y, node.width);
+			copy.setName(node.getName());
+			nodesCopy.add(copy);
+			copies.put(node, copy);
+		}
+		List<Connection> connectionsCopy = new ArrayList<Connection>(connections.size());
+		for (Connection connection : connections) {
+			Node node1 = copies.get(connection.getNode1());
+			Node node2 = copies.get(connection.getNode2());
+			// connections to nodes that are not in the container keep the nodes they had
+			connectionsCopy.add(new Connection(node1 != null ? node1 : connection.getNode1(),
+					node2 != null ? node2 : connection.getNode2()));
+		}
+		return new ShapesContainer(nodesCopy, connectionsCopy);
+	}
+
 }
@@ -45,6 +45,7 @@ public class TopologyPanel extends JPanel implements MouseListener, MouseMotionL
 
 	private Node newConnectionNode1;
 	private boolean isAddingConnection;
+	private boolean isMovingNode;
 	private BufferedImage background; 
 
 	/**
@@ -297,9 +298,17 @@ public class TopologyPanel extends JPanel implements MouseListener, MouseMotionL
 	/**
 	 * Handles the mouse being released on the panel. Checks to see if the user released the mouse
 	 * on another shape if a connection was being added, and adds a new connection if that was the case.
+	 * If a node was being moved, the controller is told where it was left.
 	 */
 	@Override
 	public void mouseReleased(MouseEvent e) {
+		if (isMovingNode) {
+			isMovingNode = false;
+			if (selected instanceof Node) {
+				Node n = (Node) selected;
+				controller.handleMoveRouter(n.getName(), n.x, n.y);
+			}
+		}
 		if(isAddingConnection) {
 			if(nodeSelectedUpdate(e)) {
 				Node newConnectionNode2 = (Node) selected;
@@ -327,6 +336,7 @@ public class TopologyPanel extends JPanel implements MouseListener, MouseMotionL
 			Node n = (Node) selected;
 			n.x = e.getX() - n.getDiameter()/2;
 			n.y = e.getY() - n.getDiameter()/2;
+			isMovingNode = true;
 			setCursor(Cursor.getPredefinedCursor(Cursor.MOVE_CURSOR));
 			repaint();
 		}
@@ -0,0 +1,684 @@
+package XML;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import Model.Message;
+import Model.ModelContainer;
+import Model.NetworkTopology;
+import Model.Router;
+import Model.RoutingTable;
+import Model.TopologySnapshot;
+import Routing.MappedRoutingTable;
+import Routing.NextHopRoutingTable;
+import Routing.RoutingAlgorithm;
+import View.Connection;
+import View.Node;
+import View.ShapesContainer;
+
+/**
+ * Saves and restores the state of the Model and the Shapes of the view in a compact binary
+ * file, for topologies too large to be saved as xml. Only what can't be worked out again is
+ * written: the routing tables are built again by the routing algorithm once the state is
+ * restored, and the routers a flooded message went through are kept as router numbers.
+ *
+ * The file is made of, in order:
+ * a header with the magic number and the version of the layout,
+ * the model fields (routing algorithm name, rate, counters and metrics),
+ * the router name table,
+ * the adjacency block (the offset of the links of each router, then the neighbour of each link and its weight),
+ * the messages, then the messages stored in each router,
+ * the nodes of the view with their coordinates, then the connections between them,
+ * and since version 2, the next hop tables.
+ * Routers are written as their number in the name table, every number is a big-endian int.
+ *
+ * The next hop tables are only written when every router forwards a message to at most one
+ * router. They are a square block of router numbers, one row per router and one column per
+ * destination, starting at a multiple of 8 bytes. The block is not read when the file is
+ * restored, it is mapped and each router gets a MappedRoutingTable reading its row, so the
+ * operating system loads the pages of the tables as they are used.
+ *
+ * The file is read and written through a channel, so a save or restore running on a thread
+ * that is interrupted stops at the next block of the file.
+ */
+public class BinaryStateSerializer {
+
+	public static final String FILE_EXTENSION = "nrs";
+
+	// "NRSB", the first four bytes of every file
+	private static final int MAGIC = 0x4E525342;
+	private static final int VERSION = 2;
+	private static final int BUFFER_SIZE = 1 << 16;
+	// the alignment of the next hop tables in the file
+	private static final int TABLE_ALIGNMENT = 8;
+	// the largest part of the next hop tables mapped as one buffer
+	private static final long MAX_MAPPED_BYTES = 1 << 30;
+	// the number written for a router that is not in the name table
+	private static final int NO_ROUTER = -1;
+
+	private ProgressListener progressListener;
+
+	/**
+	 * @param file a file to save to or restore from
+	 * @return true if the file has the extension of the binary format
+	 */
+	public static boolean isBinaryFile(File file) {
+		return file.getName().toLowerCase().endsWith("." + FILE_EXTENSION);
+	}
+
+	/**
+	 * @param progressListener the listener told how much of the file was read or written, or null
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Creates a binary file containing the current state of the model and panel
+	 * @param file the file instance to save content to
+	 * @param xmlState the state to be saved
+	 * @return true if the whole state was written
+	 */
+	public boolean serialize(File file, XMLState xmlState) {
+		if (xmlState != null && xmlState.getModelContainer() != null && xmlState.getShapesContainer() != null) {
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ChannelWriter out = new ChannelWriter(channel);
+				out.putInt(MAGIC);
+				out.putInt(VERSION);
+				write(out, xmlState.getModelContainer(), xmlState.getShapesContainer());
+				out.flush();
+				return true;
+			} catch (IOException e) {
+				// a cancelled save is not an error
+				if (!Thread.currentThread().isInterrupted()) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Initializes the model and the GUI panel states with the given binary file. The state
+	 * is left as it was if the file can't be read.
+	 * @param file the binary file
+	 * @param xmlState the state to be restored
+	 */
+	public void deserialize(File file, XMLState xmlState) {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ChannelReader in = new ChannelReader(channel, progressListener);
+			if (in.getInt() != MAGIC) {
+				throw new IOException(file + " is not a saved network");
+			}
+			int version = in.getInt();
+			if (version < 1 || version > VERSION) {
+				throw new IOException(file + " was saved with unknown version " + version);
+			}
+			read(in, version, xmlState);
+		} catch (IOException e) {
+			// a cancelled restore is not an error
+			if (!Thread.currentThread().isInterrupted()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Writes every section after the header
+	 * @param out the file being written
+	 * @param modelContainer the state of the model
+	 * @param shapesContainer the shapes of the view
+	 * @throws IOException if the file can't be written
+	 */
+	private void write(ChannelWriter out, ModelContainer modelContainer, ShapesContainer shapesContainer) throws IOException {
+		NetworkTopology topology = modelContainer.getTopology();
+		out.putString(RoutingAlgorithm.getName(modelContainer.getChosenRoutingAlgorithm()));
+		out.putFloat(modelContainer.getMessageGenerationRate());
+		out.putInt(modelContainer.getMessageCounter());
+		out.putInt(modelContainer.getStepCounter());
+		out.putInt(topology.getTotalPacketsTransmittedMetric());
+		out.putInt(topology.getNumMessagesReachedDest());
+
+		// router name table, in the order the topology goes through its routers
+		List<Router> routers = new ArrayList<Router>(topology.getRouters());
+		int[] indices = new int[topology.getRouterIdCapacity()];
+		out.putInt(routers.size());
+		for (int i = 0; i < routers.size(); i++) {
+			indices[routers.get(i).getId()] = i;
+			out.putString(routers.get(i).getName());
+		}
+
+		// adjacency block, read from the snapshot which already holds the links by router id
+		TopologySnapshot snapshot = topology.getSnapshot();
+		int[] offsets = snapshot.getOffsets();
+		int[] neighbourIds = snapshot.getNeighbourIds();
+		double[] weights = snapshot.getWeights();
+		int links = 0;
+		for (Router router : routers) {
+			out.putInt(links);
+			links += snapshot.degree(router.getId());
+		}
+		out.putInt(links);
+		for (Router router : routers) {
+			for (int j = offsets[router.getId()]; j < offsets[router.getId() + 1]; j++) {
+				out.putInt(indices[neighbourIds[j]]);
+			}
+		}
+		for (Router router : routers) {
+			for (int j = offsets[router.getId()]; j < offsets[router.getId() + 1]; j++) {
+				out.putDouble(weights[j]);
+			}
+		}
+
+		// messages, each one written once even if flooding left it in several routers
+		Map<Message, Integer> messageIndices = new IdentityHashMap<Message, Integer>();
+		List<Message> messages = new ArrayList<Message>();
+		for (Router router : routers) {
+			for (Message message : router.getStoredMessages()) {
+				if (!messageIndices.containsKey(message)) {
+					messageIndices.put(message, messages.size());
+					messages.add(message);
+				}
+			}
+		}
+		out.putInt(messages.size());
+		for (Message message : messages) {
+			out.putInt(message.getID());
+			out.putInt(indexOf(topology, indices, message.getSource()));
+			out.putInt(indexOf(topology, indices, message.getDestination()));
+			out.putInt(message.getSteps());
+			out.putInt(indexOf(topology, indices, message.getPreviousDestination()));
+			int[] passedThroughIds = message.getPassedThroughIds();
+			if (passedThroughIds == null) {
+				out.putInt(-1);
+			} else {
+				out.putInt(passedThroughIds.length);
+				for (int id : passedThroughIds) {
+					out.putInt(indexOf(topology, indices, topology.getRouter(id)));
+				}
+			}
+		}
+		// progress goes through the routers once for the messages, and once more for the tables
+		long total = tablesWritten(routers) ? 2L * routers.size() : routers.size();
+		long done = 0;
+		for (Router router : routers) {
+			progress(done++, total);
+			List<Message> stored = router.getStoredMessages();
+			out.putInt(stored.size());
+			for (Message message : stored) {
+				out.putInt(messageIndices.get(message));
+			}
+		}
+
+		// nodes of the view, then the connections as pairs of node numbers
+		List<Node> nodes = shapesContainer.getNodes();
+		Map<Node, Integer> nodeIndices = new IdentityHashMap<Node, Integer>();
+		out.putInt(nodes.size());
+		for (Node node : nodes) {
+			nodeIndices.put(node, nodeIndices.size());
+			out.putString(node.getName());
+			out.putFloat(node.x);
+			out.putFloat(node.y);
+			out.putFloat(node.width);
+		}
+		// connections to a node that is not saved can't be read back, so they are left out
+		List<Connection> connections = shapesContainer.getConnections();
+		int[] ends = new int[2 * connections.size()];
+		int saved = 0;
+		for (Connection connection : connections) {
+			int node1 = nodeIndexOf(nodes, nodeIndices, connection.getNode1());
+			int node2 = nodeIndexOf(nodes, nodeIndices, connection.getNode2());
+			if (node1 >= 0 && node2 >= 0) {
+				ends[saved++] = node1;
+				ends[saved++] = node2;
+			}
+		}
+		out.putInt(saved / 2);
+		for (int i = 0; i < saved; i++) {
+			out.putInt(ends[i]);
+		}
+
+		writeRoutingTables(out, topology, routers, indices, done, total);
+		progress(total, total);
+	}
+
+	/**
+	 * @param routers the routers of the name table
+	 * @return true if the next hop tables are written, which is when every router forwards
+	 * a message to at most one router
+	 */
+	private static boolean tablesWritten(List<Router> routers) {
+		for (Router router : routers) {
+			RoutingTable routingTable = router.getRoutingTable();
+			if (!(routingTable instanceof NextHopRoutingTable || routingTable instanceof MappedRoutingTable)) {
+				return false;
+			}
+		}
+		return !routers.isEmpty();
+	}
+
+	/**
+	 * Writes the number of rows of the next hop tables, then the tables if they are written
+	 * @param out the file being written
+	 * @param topology the network being saved
+	 * @param routers the routers of the name table
+	 * @param indices the number of each router in the name table, by router id
+	 * @param done the progress of the save before the tables
+	 * @param total the progress of the whole save
+	 * @throws IOException if the file can't be written
+	 */
+	private void writeRoutingTables(ChannelWriter out, NetworkTopology topology, List<Router> routers, int[] indices,
+			long done, long total) throws IOException {
+		if (!tablesWritten(routers)) {
+			out.putInt(0);
+			return;
+		}
+		out.putInt(routers.size());
+		out.pad(TABLE_ALIGNMENT);
+		for (Router router : routers) {
+			progress(done++, total);
+			RoutingTable routingTable = router.getRoutingTable();
+			for (Router destination : routers) {
+				out.putInt(routingTable.getNextHopCount(destination) == 0 ? NO_ROUTER
+						: indexOf(topology, indices, routingTable.getNextHop(destination, 0)));
+			}
+		}
+	}
+
+	/**
+	 * Reads every section after the header into the state
+	 * @param in the file being read
+	 * @param version the version of the layout of the file
+	 * @param xmlState the state to be restored
+	 * @throws IOException if the file can't be read
+	 */
+	private void read(ChannelReader in, int version, XMLState xmlState) throws IOException {
+		RoutingAlgorithm algorithm = createAlgorithm(in.getString());
+		float messageGenerationRate = in.getFloat();
+		int messageCounter = in.getInt();
+		int stepCounter = in.getInt();
+		int totalPacketsTransmitted = in.getInt();
+		int numMessagesReachedDest = in.getInt();
+
+		NetworkTopology topology = new NetworkTopology();
+		Router[] routers = new Router[in.getCount()];
+		for (int i = 0; i < routers.length; i++) {
+			routers[i] = new Router(in.getString());
+			topology.addRouter(routers[i]);
+		}
+
+		int[] offsets = new int[routers.length + 1];
+		for (int i = 0; i <= routers.length; i++) {
+			offsets[i] = in.getInt();
+		}
+		int[] neighbours = new int[offsets[routers.length]];
+		for (int j = 0; j < neighbours.length; j++) {
+			neighbours[j] = in.getInt();
+		}
+		// the links of a saved topology hold no duplicates, which the bulk insert removes anyway
+		topology.beginBulkInsert();
+		for (int i = 0; i < routers.length; i++) {
+			for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+				topology.setRouterNeighbour(routers[i].getName(), routerAt(routers, neighbours[j]).getName(), in.getDouble());
+			}
+		}
+		topology.endBulkInsert();
+		topology.restoreMetrics(totalPacketsTransmitted, numMessagesReachedDest);
+		topology.calculateAverageHopsMetric();
+
+		Message[] messages = new Message[in.getCount()];
+		for (int m = 0; m < messages.length; m++) {
+			int id = in.getInt();
+			int source = in.getInt();
+			int destination = in.getInt();
+			int steps = in.getInt();
+			int previous = in.getInt();
+			int passedThrough = in.getInt();
+			// a message whose source or destination was removed from the network is dropped
+			Message message = null;
+			if (source != NO_ROUTER && destination != NO_ROUTER) {
+				message = new Message(id, routerAt(routers, source), routerAt(routers, destination), steps);
+				if (previous != NO_ROUTER) {
+					message.setPreviousDestination(routerAt(routers, previous));
+				}
+			}
+			for (int i = 0; i < passedThrough; i++) {
+				int router = in.getInt();
+				if (message != null && router != NO_ROUTER) {
+					message.addRouter(routerAt(routers, router));
+				}
+			}
+			messages[m] = message;
+		}
+		for (Router router : routers) {
+			int stored = in.getCount();
+			for (int i = 0; i < stored; i++) {
+				int m = in.getInt();
+				if (m < 0 || m >= messages.length) {
+					throw new IOException("Message " + m + " is not in the file");
+				}
+				if (messages[m] != null) {
+					router.storeMessage(messages[m]);
+				}
+			}
+		}
+
+		List<Node> nodes = new ArrayList<Node>();
+		int numberOfNodes = in.getCount();
+		for (int i = 0; i < numberOfNodes; i++) {
+			String name = in.getString();
+			float x = in.getFloat();
+			float y = in.getFloat();
+			Node node = new Node(x, y, in.getFloat());
+			node.setName(name);
+			Router router = name == null ? null : topology.getRouter(name);
+			if (router != null) {
+				node.setMessages(new ArrayList<Message>(router.getStoredMessages()));
+			}
+			nodes.add(node);
+		}
+		List<Connection> connections = new ArrayList<Connection>();
+		int numberOfConnections = in.getCount();
+		for (int i = 0; i < numberOfConnections; i++) {
+			int node1 = in.getInt();
+			int node2 = in.getInt();
+			if (node1 < 0 || node1 >= nodes.size() || node2 < 0 || node2 >= nodes.size()) {
+				throw new IOException("Connection " + i + " is between nodes that are not in the file");
+			}
+			connections.add(new Connection(nodes.get(node1), nodes.get(node2)));
+		}
+		if (version >= 2) {
+			mapRoutingTables(in, routers);
+		}
+
+		xmlState.setModelContainer(new ModelContainer(topology, algorithm, messageGenerationRate, messageCounter, stepCounter));
+		xmlState.setShapesContainer(new ShapesContainer(nodes, connections));
+	}
+
+	/**
+	 * Maps the next hop tables, if the file has them, and gives each router a table reading
+	 * its row. The routers were added to an empty topology in the order of the name table,
+	 * so the number of a router in the name table is also its id.
+	 * @param in the file being read, positioned after the connections
+	 * @param routers the routers of the name table
+	 * @throws IOException if the tables can't be mapped
+	 */
+	private void mapRoutingTables(ChannelReader in, Router[] routers) throws IOException {
+		int rows = in.getCount();
+		if (rows == 0) {
+			return;
+		}
+		if (rows != routers.length) {
+			throw new IOException("The next hop tables have " + rows + " rows for " + routers.length + " routers");
+		}
+		long start = (in.position() + TABLE_ALIGNMENT - 1) / TABLE_ALIGNMENT * TABLE_ALIGNMENT;
+		long rowBytes = 4L * rows;
+		if (in.size() < start + rowBytes * rows) {
+			throw new IOException("The file ends before the next hop tables do");
+		}
+		int rowsPerBuffer = (int) Math.max(1, Math.min(rows, MAX_MAPPED_BYTES / rowBytes));
+		for (int first = 0; first < rows; first += rowsPerBuffer) {
+			int count = Math.min(rowsPerBuffer, rows - first);
+			IntBuffer mapped = in.map(start + first * rowBytes, count * rowBytes).asIntBuffer();
+			for (int row = 0; row < count; row++) {
+				mapped.limit((row + 1) * rows).position(row * rows);
+				routers[first + row].setRoutingTable(new MappedRoutingTable(routers, mapped.slice()));
+				mapped.clear();
+			}
+		}
+	}
+
+	/**
+	 * @param topology the network being saved
+	 * @param indices the number of each router in the name table, by router id
+	 * @param router a router
+	 * @return the number of the router in the name table, or NO_ROUTER if it is not in the topology
+	 */
+	private static int indexOf(NetworkTopology topology, int[] indices, Router router) {
+		if (router == null || router.getId() < 0 || router.getId() >= indices.length || topology.getRouter(router.getId()) != router) {
+			return NO_ROUTER;
+		}
+		return indices[router.getId()];
+	}
+
+	/**
+	 * @param routers the routers of the name table
+	 * @param index the number of a router in the name table
+	 * @return the router
+	 * @throws IOException if the number is not in the name table
+	 */
+	private static Router routerAt(Router[] routers, int index) throws IOException {
+		if (index < 0 || index >= routers.length) {
+			throw new IOException("Router " + index + " is not in the name table");
+		}
+		return routers[index];
+	}
+
+	/**
+	 * @param nodes the nodes being saved
+	 * @param nodeIndices the number of each node
+	 * @param node a node at one end of a connection
+	 * @return the number of the node, found by name if the connection holds another copy of it,
+	 * or -1 if the node is not saved
+	 */
+	private static int nodeIndexOf(List<Node> nodes, Map<Node, Integer> nodeIndices, Node node) {
+		Integer index = nodeIndices.get(node);
+		return index != null ? index : nodes.indexOf(node);
+	}
+
+	/**
+	 * Tells the listener, if there is one, how much of the state was written
+	 */
+	private void progress(long done, long total) {
+		if (progressListener != null) {
+			progressListener.progressChanged(done, total);
+		}
+	}
+
+	/**
+	 * Creates a new instance of a listed routing algorithm
+	 * @param name the name the algorithm is listed under
+	 * @return the new algorithm
+	 * @throws IOException if no algorithm is listed under the name
+	 */
+	private static RoutingAlgorithm createAlgorithm(String name) throws IOException {
+		RoutingAlgorithm algorithm = RoutingAlgorithm.newInstance(name);
+		if (algorithm == null) {
+			throw new IOException("Unknown routing algorithm " + name);
+		}
+		return algorithm;
+	}
+
+	/**
+	 * Writes numbers and strings to a channel through a buffer
+	 */
+	private static class ChannelWriter {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+		ChannelWriter(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void putInt(int value) throws IOException {
+			ensure(4);
+			buffer.putInt(value);
+		}
+
+		void putFloat(float value) throws IOException {
+			ensure(4);
+			buffer.putFloat(value);
+		}
+
+		void putDouble(double value) throws IOException {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		/**
+		 * Writes the length of the string in UTF-8 bytes followed by the bytes, or -1 for null
+		 */
+		void putString(String value) throws IOException {
+			if (value == null) {
+				putInt(-1);
+				return;
+			}
+			byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			for (int written = 0; written < bytes.length;) {
+				ensure(1);
+				int length = Math.min(buffer.remaining(), bytes.length - written);
+				buffer.put(bytes, written, length);
+				written += length;
+			}
+		}
+
+		/**
+		 * Writes zero bytes until the position in the file is a multiple of the alignment
+		 */
+		void pad(int alignment) throws IOException {
+			long position = channel.position() + buffer.position();
+			for (long i = position; i % alignment != 0; i++) {
+				ensure(1);
+				buffer.put((byte) 0);
+			}
+		}
+
+		/**
+		 * Writes out the buffer if it has less than the given number of bytes left
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Reads numbers and strings from a channel through a buffer
+	 */
+	private static class ChannelReader {
+
+		private final FileChannel channel;
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		private final ProgressListener listener;
+
+		/**
+		 * @param channel the channel of the file
+		 * @param listener the listener told how much of the file was read, or null
+		 */
+		ChannelReader(FileChannel channel, ProgressListener listener) {
+			this.channel = channel;
+			this.listener = listener;
+			buffer.flip();
+		}
+
+		int getInt() throws IOException {
+			ensure(4);
+			return buffer.getInt();
+		}
+
+		/**
+		 * Reads the number of entries of a section
+		 */
+		int getCount() throws IOException {
+			int count = getInt();
+			if (count < 0) {
+				throw new IOException("Negative count " + count);
+			}
+			return count;
+		}
+
+		float getFloat() throws IOException {
+			ensure(4);
+			return buffer.getFloat();
+		}
+
+		double getDouble() throws IOException {
+			ensure(8);
+			return buffer.getDouble();
+		}
+
+		String getString() throws IOException {
+			int length = getInt();
+			if (length < 0) {
+				return null;
+			}
+			if (length > channel.size()) {
+				throw new IOException("String of " + length + " bytes is longer than the file");
+			}
+			byte[] bytes = new byte[length];
+			for (int read = 0; read < length;) {
+				ensure(1);
+				int count = Math.min(buffer.remaining(), length - read);
+				buffer.get(bytes, read, count);
+				read += count;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+
+		/**
+		 * @return the position in the file of the next byte to be read
+		 */
+		long position() throws IOException {
+			return channel.position() - buffer.remaining();
+		}
+
+		/**
+		 * @return the size of the file
+		 */
+		long size() throws IOException {
+			return channel.size();
+		}
+
+		/**
+		 * Maps part of the file into memory, the mapping stays valid once the channel is closed
+		 * @param position the position in the file of the first byte mapped
+		 * @param length the number of bytes mapped
+		 * @return the mapped bytes
+		 */
+		MappedByteBuffer map(long position, long length) throws IOException {
+			return channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		}
+
+		/**
+		 * Reads from the channel until the buffer holds at least the given number of bytes
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() >= bytes) {
+				return;
+			}
+			buffer.compact();
+			while (buffer.position() < bytes) {
+				if (channel.read(buffer) < 0) {
+					throw new EOFException("The file ends before the state does");
+				}
+			}
+			buffer.flip();
+			if (listener != null) {
+				listener.progressChanged(channel.position(), channel.size());
+			}
+		}
+	}
+}
@@ -0,0 +1,509 @@
+package XML;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import Model.ModelContainer;
+import Model.NetworkTopology;
+import Model.Router;
+import View.Connection;
+import View.Node;
+import View.ShapesContainer;
+
+/**
+ * An append-only log of the edits made to a network since it was saved, kept in a file next
+ * to the saved file. Saving after an edit only writes the edit to the journal instead of the
+ * whole network, and restoring the saved file replays the journal onto it, which also
+ * recovers the edits made before the simulator was closed without saving or crashed.
+ *
+ * The journal starts with the magic number and the version of the layout, followed by one
+ * record per edit: the length of the edit, the edit, then the CRC-32 of the edit. An edit is
+ * a code followed by the names of the routers and the numbers it changes. Records are kept in
+ * memory and written in batches, and reading stops at the first record that was not written
+ * whole, so a crash in the middle of a batch only loses the edits of that batch.
+ *
+ * Each edit is written as the state it leaves the network in (a router being there or not, a
+ * link being there with a weight or not), so replaying edits that the saved file already holds
+ * leaves the network as it was.
+ */
+public class EditJournal {
+
+	public static final String FILE_SUFFIX = ".journal";
+
+	// "NRSJ", the first four bytes of every journal
+	private static final int MAGIC = 0x4E52534A;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 8;
+	// a length, then a CRC-32, around each edit
+	private static final int RECORD_OVERHEAD = 8;
+	private static final int DEFAULT_BATCH_SIZE = 64;
+
+	private static final byte ADD_ROUTER = 1;
+	private static final byte REMOVE_ROUTER = 2;
+	private static final byte ATTACH = 3;
+	private static final byte DETACH = 4;
+	private static final byte MESSAGE_GENERATION_RATE = 5;
+	private static final byte MOVE_ROUTER = 6;
+
+	private final FileChannel channel;
+	private final ByteArrayOutputStream batch;
+	private final DataOutputStream batchOut;
+	private final ByteArrayOutputStream edit;
+	private final DataOutputStream editOut;
+	private final CRC32 crc;
+	private int batchSize;
+	private int batchedEdits;
+
+	/**
+	 * @param channel the channel of the journal, positioned after the last whole record
+	 */
+	private EditJournal(FileChannel channel) {
+		this.channel = channel;
+		batch = new ByteArrayOutputStream();
+		batchOut = new DataOutputStream(batch);
+		edit = new ByteArrayOutputStream();
+		editOut = new DataOutputStream(edit);
+		crc = new CRC32();
+		batchSize = DEFAULT_BATCH_SIZE;
+	}
+
+	/**
+	 * @param file a saved network
+	 * @return the journal of the edits made to the network since it was saved
+	 */
+	public static File journalFileOf(File file) {
+		return new File(file.getAbsoluteFile().getParentFile(), file.getName() + FILE_SUFFIX);
+	}
+
+	/**
+	 * Opens a journal to write edits to
+	 * @param file the journal
+	 * @param append true to keep the edits already in the journal, false to start an empty journal
+	 * @return the journal, or null if it can't be opened
+	 */
+	public static EditJournal open(File file, boolean append) {
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			// a journal left by a crash may end with part of a record, which is dropped so
+			// that the edits added after it can be read
+			long end = append ? validLength(channel) : 0;
+			if (end < HEADER_SIZE) {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				header.putInt(MAGIC).putInt(VERSION).flip();
+				channel.truncate(0);
+				channel.position(0);
+				while (header.hasRemaining()) {
+					channel.write(header);
+				}
+				end = HEADER_SIZE;
+			}
+			channel.truncate(end);
+			channel.position(end);
+			return new EditJournal(channel);
+		} catch (IOException e) {
+			e.printStackTrace();
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException closeException) {
+					closeException.printStackTrace();
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Sets the number of edits kept in memory before they are written to the journal
+	 * @param batchSize the number of edits in a batch, 1 to write every edit as it is made
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	/**
+	 * Records a router being added
+	 * @param name the name of the router
+	 * @param x the x coordinate of the node of the router, or NaN if it has no node
+	 * @param y the y coordinate of the node of the router, or NaN if it has no node
+	 */
+	public void addRouter(String name, float x, float y) {
+		try {
+			editOut.writeByte(ADD_ROUTER);
+			editOut.writeUTF(name);
+			editOut.writeFloat(x);
+			editOut.writeFloat(y);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records the node of a router being moved on the panel
+	 * @param name the name of the router
+	 * @param x the new x coordinate of the node
+	 * @param y the new y coordinate of the node
+	 */
+	public void moveRouter(String name, float x, float y) {
+		try {
+			editOut.writeByte(MOVE_ROUTER);
+			editOut.writeUTF(name);
+			editOut.writeFloat(x);
+			editOut.writeFloat(y);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records a router being removed, with its links
+	 * @param name the name of the router
+	 */
+	public void removeRouter(String name) {
+		try {
+			editOut.writeByte(REMOVE_ROUTER);
+			editOut.writeUTF(name);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records a link in both directions being added or given a new weight
+	 * @param routerName the name of the first router
+	 * @param neighbourName the name of the second router
+	 * @param weight the weight of the link
+	 */
+	public void attach(String routerName, String neighbourName, double weight) {
+		try {
+			editOut.writeByte(ATTACH);
+			editOut.writeUTF(routerName);
+			editOut.writeUTF(neighbourName);
+			editOut.writeDouble(weight);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records the link between two routers being removed in both directions
+	 * @param routerName the name of the first router
+	 * @param neighbourName the name of the second router
+	 */
+	public void detach(String routerName, String neighbourName) {
+		try {
+			editOut.writeByte(DETACH);
+			editOut.writeUTF(routerName);
+			editOut.writeUTF(neighbourName);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Records a new message generation rate
+	 * @param messageGenerationRate the rate
+	 */
+	public void setMessageGenerationRate(float messageGenerationRate) {
+		try {
+			editOut.writeByte(MESSAGE_GENERATION_RATE);
+			editOut.writeFloat(messageGenerationRate);
+			endEdit();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Adds the edit written so far to the batch as a record, and writes out the batch once it is full
+	 * @throws IOException if the batch can't be written
+	 */
+	private void endEdit() throws IOException {
+		crc.reset();
+		crc.update(edit.toByteArray(), 0, edit.size());
+		batchOut.writeInt(edit.size());
+		edit.writeTo(batchOut);
+		batchOut.writeInt((int) crc.getValue());
+		edit.reset();
+		if (++batchedEdits >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the edits kept in memory to the journal
+	 */
+	public void flush() {
+		if (batch.size() == 0) {
+			return;
+		}
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		batch.reset();
+		batchedEdits = 0;
+	}
+
+	/**
+	 * @return the number of bytes of the journal, with the edits not written yet
+	 */
+	public long size() {
+		try {
+			return channel.position() + batch.size();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return batch.size();
+		}
+	}
+
+	/**
+	 * Writes the edits kept in memory and closes the journal
+	 */
+	public void close() {
+		flush();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Replays the edits of a journal onto a state read from the saved file the journal is
+	 * next to. Edits that can't be made, such as links to routers that are not in the
+	 * network, are skipped.
+	 * @param file the journal
+	 * @param xmlState the state read from the saved file
+	 * @return the number of edits replayed, 0 if there is no journal or it can't be read
+	 */
+	public static int replay(File file, XMLState xmlState) {
+		ModelContainer modelContainer = xmlState.getModelContainer();
+		if (!file.isFile() || modelContainer == null) {
+			return 0;
+		}
+		if (xmlState.getShapesContainer() == null) {
+			xmlState.setShapesContainer(new ShapesContainer(new ArrayList<Node>(), new ArrayList<Connection>()));
+		}
+		int replayed = 0;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			for (byte[] record : readRecords(channel)) {
+				DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+				apply(in, modelContainer, xmlState.getShapesContainer());
+				replayed++;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		if (replayed > 0) {
+			// routing tables read with the network don't know of the edits, they are built again
+			for (Router router : modelContainer.getTopology().getRouters()) {
+				router.setRoutingTable(null);
+			}
+		}
+		return replayed;
+	}
+
+	/**
+	 * Makes one edit of the journal
+	 * @param in the edit
+	 * @param modelContainer the state of the model being edited
+	 * @param shapesContainer the shapes of the view being edited
+	 * @throws IOException if the edit can't be read
+	 */
+	private static void apply(DataInputStream in, ModelContainer modelContainer, ShapesContainer shapesContainer) throws IOException {
+		NetworkTopology topology = modelContainer.getTopology();
+		byte code = in.readByte();
+		if (code == ADD_ROUTER) {
+			String name = in.readUTF();
+			float x = in.readFloat();
+			float y = in.readFloat();
+			topology.addRouter(new Router(name));
+			if (findNode(shapesContainer, name) == null && !Float.isNaN(x) && !Float.isNaN(y)) {
+				Node node = new Node(x, y);
+				node.setName(name);
+				shapesContainer.getNodes().add(node);
+			}
+		} else if (code == REMOVE_ROUTER) {
+			String name = in.readUTF();
+			topology.removeRouter(name);
+			Node node = findNode(shapesContainer, name);
+			if (node != null) {
+				shapesContainer.getNodes().remove(node);
+				removeConnections(shapesContainer, node, null);
+			}
+		} else if (code == ATTACH) {
+			String routerName = in.readUTF();
+			String neighbourName = in.readUTF();
+			double weight = in.readDouble();
+			if (!topology.setLinkWeight(routerName, neighbourName, weight)) {
+				topology.setRouterNeighbour(routerName, neighbourName, weight);
+			}
+			if (!topology.setLinkWeight(neighbourName, routerName, weight)) {
+				topology.setRouterNeighbour(neighbourName, routerName, weight);
+			}
+			Node node1 = findNode(shapesContainer, routerName);
+			Node node2 = findNode(shapesContainer, neighbourName);
+			if (node1 != null && node2 != null && findConnection(shapesContainer, node1, node2) == null) {
+				shapesContainer.getConnections().add(new Connection(node1, node2));
+			}
+		} else if (code == DETACH) {
+			String routerName = in.readUTF();
+			String neighbourName = in.readUTF();
+			topology.removeNeighbour(routerName, neighbourName);
+			topology.removeNeighbour(neighbourName, routerName);
+			Node node1 = findNode(shapesContainer, routerName);
+			Node node2 = findNode(shapesContainer, neighbourName);
+			if (node1 != null && node2 != null) {
+				removeConnections(shapesContainer, node1, node2);
+			}
+		} else if (code == MESSAGE_GENERATION_RATE) {
+			float messageGenerationRate = in.readFloat();
+			if (messageGenerationRate > 0) {
+				modelContainer.setMessageGenerationRate(messageGenerationRate);
+			}
+		} else if (code == MOVE_ROUTER) {
+			String name = in.readUTF();
+			float x = in.readFloat();
+			float y = in.readFloat();
+			Node node = findNode(shapesContainer, name);
+			if (node != null) {
+				node.x = x;
+				node.y = y;
+			}
+		}
+		// edits of a later version that are not known are skipped
+	}
+
+	private static Node findNode(ShapesContainer shapesContainer, String name) {
+		for (Node node : shapesContainer.getNodes()) {
+			if (name.equals(node.getName())) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	private static Connection findConnection(ShapesContainer shapesContainer, Node node1, Node node2) {
+		for (Connection connection : shapesContainer.getConnections()) {
+			if ((connection.getNode1() == node1 && connection.getNode2() == node2)
+					|| (connection.getNode1() == node2 && connection.getNode2() == node1)) {
+				return connection;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the connections of a node, or the connections between two nodes
+	 * @param shapesContainer the shapes of the view
+	 * @param node1 the node whose connections are removed
+	 * @param node2 the other node of the connections removed, or null to remove every connection of the first node
+	 */
+	private static void removeConnections(ShapesContainer shapesContainer, Node node1, Node node2) {
+		Iterator<Connection> connections = shapesContainer.getConnections().iterator();
+		while (connections.hasNext()) {
+			Connection connection = connections.next();
+			Node other = connection.getNode1() == node1 ? connection.getNode2()
+					: connection.getNode2() == node1 ? connection.getNode1() : null;
+			if (other != null && (node2 == null || other == node2)) {
+				connections.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param channel the channel of a journal
+	 * @return the number of bytes of the journal up to the end of the last whole record, or 0
+	 * if the file is not a journal
+	 * @throws IOException if the journal can't be read
+	 */
+	private static long validLength(FileChannel channel) throws IOException {
+		if (!isJournal(channel)) {
+			return 0;
+		}
+		long length = HEADER_SIZE;
+		for (byte[] record : readRecords(channel)) {
+			length += record.length + RECORD_OVERHEAD;
+		}
+		return length;
+	}
+
+	/**
+	 * @param channel the channel of a file
+	 * @return true if the file starts with the header of a journal
+	 * @throws IOException if the file can't be read
+	 */
+	private static boolean isJournal(FileChannel channel) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		while (header.hasRemaining()) {
+			if (channel.read(header, header.position()) < 0) {
+				break;
+			}
+		}
+		header.flip();
+		return header.remaining() == HEADER_SIZE && header.getInt() == MAGIC && header.getInt() == VERSION;
+	}
+
+	/**
+	 * Reads the whole records of a journal, stopping at the end of the file or at the first
+	 * record that was cut off or doesn't match its CRC-32
+	 * @param channel the channel of the journal
+	 * @return the edits of the records, or no edits if the file is not a journal
+	 * @throws IOException if the journal can't be read
+	 */
+	private static List<byte[]> readRecords(FileChannel channel) throws IOException {
+		List<byte[]> records = new ArrayList<byte[]>();
+		if (!isJournal(channel)) {
+			return records;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(HEADER_SIZE))));
+		long remaining = channel.size() - HEADER_SIZE;
+		CRC32 crc = new CRC32();
+		try {
+			while (remaining >= RECORD_OVERHEAD) {
+				int length = in.readInt();
+				if (length <= 0 || length > remaining - RECORD_OVERHEAD) {
+					break;
+				}
+				byte[] record = new byte[length];
+				in.readFully(record);
+				crc.reset();
+				crc.update(record, 0, length);
+				if (in.readInt() != (int) crc.getValue()) {
+					break;
+				}
+				records.add(record);
+				remaining -= length + RECORD_OVERHEAD;
+			}
+		} catch (EOFException e) {
+			// the last record was cut off
+		}
+		return records;
+	}
+}
@@ -0,0 +1,59 @@
+package XML;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the bytes read from a file and tells a listener how many were read out of the size
+ * of the file. It should be placed under any buffering so that it is told of whole blocks.
+ */
+class ProgressInputStream extends FilterInputStream {
+
+	private final ProgressListener listener;
+	private final long total;
+	private long done;
+
+	/**
+	 * @param in the stream of the file
+	 * @param total the size of the file
+	 * @param listener the listener told of the bytes read, or null
+	 */
+	ProgressInputStream(InputStream in, long total, ProgressListener listener) {
+		super(in);
+		this.total = total;
+		this.listener = listener;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b >= 0) {
+			progress(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int count = super.read(b, off, len);
+		if (count > 0) {
+			progress(count);
+		}
+		return count;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long count = super.skip(n);
+		progress(count);
+		return count;
+	}
+
+	private void progress(long count) {
+		done += count;
+		if (listener != null) {
+			listener.progressChanged(Math.min(done, total), total);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package XML;
+
+/**
+ * Told how much of a file has been read or written, for instance to show a progress bar
+ * while a large network is saved or restored. A save or restore is cancelled by interrupting
+ * the thread running it, which stops at the next read or write of the file.
+ */
+public interface ProgressListener {
+
+	/**
+	 * Called as the file is read or written, from the thread reading or writing it
+	 * @param done the part of the work done so far
+	 * @param total the whole of the work, in the same unit
+	 */
+	void progressChanged(long done, long total);
+}
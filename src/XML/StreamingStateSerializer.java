@@ -0,0 +1,504 @@
+package XML;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import Model.Message;
+import Model.ModelContainer;
+import Model.NetworkTopology;
+import Model.Router;
+import Model.TopologySnapshot;
+import Routing.RandomRoutingAlgorithm;
+import Routing.RoutingAlgorithm;
+import View.Connection;
+import View.Node;
+import View.ShapesContainer;
+
+/**
+ * Reads and writes the compact xml schema one element at a time with the StAX API, so that
+ * only the network being read or written is held in memory, whatever the size of the file.
+ * Only what can't be worked out again is kept: the routing tables are built again once the
+ * state is restored, and the nodes are kept as their coordinates.
+ *
+ * A file of the schema is made of:
+ * <pre>
+ * &lt;compact-state routing-algorithm="..." message-generation-rate="1.0" message-counter="2" step-counter="5"&gt;
+ *   &lt;topology packets-transmitted="4" messages-reached-destination="1"&gt;
+ *     &lt;router name="A"/&gt;
+ *     &lt;link from="A" to="B" weight="1.0"/&gt;
+ *     &lt;stored router="A"&gt;
+ *       &lt;message id="1" source="A" destination="B" steps="0"&gt;
+ *         &lt;passed-through router="A"/&gt;
+ *       &lt;/message&gt;
+ *     &lt;/stored&gt;
+ *   &lt;/topology&gt;
+ *   &lt;node name="A" x="100.0" y="100.0" diameter="60.0"/&gt;
+ *   &lt;connection from="A" to="B"/&gt;
+ * &lt;/compact-state&gt;
+ * </pre>
+ * A file holding only a topology element, such as a generated network, can be read as well.
+ * Routers are referred to by name, and every router comes before the links and messages
+ * referring to it. A message left in several routers by flooding is written in each of them,
+ * and read back as one message. Elements and attributes that are not known are skipped.
+ *
+ * The file is opened as a channel, so a save or restore running on a thread that is
+ * interrupted stops at the next block of the file.
+ */
+public class StreamingStateSerializer {
+
+	private static final String COMPACT_STATE = "compact-state";
+	private static final String VERSION = "version";
+	private static final String SCHEMA_VERSION = "1";
+	private static final String ROUTING_ALGORITHM = "routing-algorithm";
+	private static final String MESSAGE_GENERATION_RATE = "message-generation-rate";
+	private static final String MESSAGE_COUNTER = "message-counter";
+	private static final String STEP_COUNTER = "step-counter";
+	private static final String TOPOLOGY = "topology";
+	private static final String PACKETS_TRANSMITTED = "packets-transmitted";
+	private static final String MESSAGES_REACHED_DESTINATION = "messages-reached-destination";
+	private static final String ROUTER = "router";
+	private static final String NAME = "name";
+	private static final String LINK = "link";
+	private static final String FROM = "from";
+	private static final String TO = "to";
+	private static final String WEIGHT = "weight";
+	private static final String STORED = "stored";
+	private static final String MESSAGE = "message";
+	private static final String ID = "id";
+	private static final String SOURCE = "source";
+	private static final String DESTINATION = "destination";
+	private static final String STEPS = "steps";
+	private static final String PREVIOUS_DESTINATION = "previous-destination";
+	private static final String PASSED_THROUGH = "passed-through";
+	private static final String NODE = "node";
+	private static final String X = "x";
+	private static final String Y = "y";
+	private static final String DIAMETER = "diameter";
+	private static final String CONNECTION = "connection";
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private ProgressListener progressListener;
+
+	/**
+	 * @param progressListener the listener told how much of the file was read or written, or null
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
+	}
+
+	/**
+	 * Checks if a file starts with an element of this schema, without reading the rest of it
+	 * @param file an xml file
+	 * @return true if the root element is a compact state or a topology
+	 */
+	public static boolean isStreamable(File file) {
+		try (InputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE)) {
+			XMLStreamReader reader = createInputFactory().createXMLStreamReader(in);
+			try {
+				reader.nextTag();
+				return COMPACT_STATE.equals(reader.getLocalName()) || TOPOLOGY.equals(reader.getLocalName());
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the current state of the model and panel in the compact schema
+	 * @param file the file instance to save content to
+	 * @param xmlState the state to be saved
+	 * @return true if the whole state was written
+	 */
+	public boolean serialize(File file, XMLState xmlState) {
+		if (xmlState != null && xmlState.getModelContainer() != null && xmlState.getShapesContainer() != null) {
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file.toPath()), BUFFER_SIZE)) {
+				XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+				writer.writeStartDocument("UTF-8", "1.0");
+				write(writer, xmlState.getModelContainer(), xmlState.getShapesContainer());
+				writer.writeCharacters("\n");
+				writer.writeEndDocument();
+				writer.close();
+				return true;
+			} catch (IOException | XMLStreamException e) {
+				// a cancelled save is not an error
+				if (!Thread.currentThread().isInterrupted()) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a file of the compact schema, or holding only a topology, into the state. The
+	 * state is left as it was if the file can't be read.
+	 * @param file the xml file
+	 * @param xmlState the state to be restored
+	 */
+	public void deserialize(File file, XMLState xmlState) {
+		try (InputStream in = new BufferedInputStream(new ProgressInputStream(Files.newInputStream(file.toPath()),
+				file.length(), progressListener), BUFFER_SIZE)) {
+			XMLStreamReader reader = createInputFactory().createXMLStreamReader(in);
+			try {
+				read(reader, xmlState);
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			// a cancelled restore is not an error
+			if (!Thread.currentThread().isInterrupted()) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return a factory of readers which don't load external entities
+	 */
+	private static XMLInputFactory createInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		return factory;
+	}
+
+	/**
+	 * Writes the compact-state element
+	 * @param writer the writer of the file
+	 * @param modelContainer the state of the model
+	 * @param shapesContainer the shapes of the view
+	 * @throws XMLStreamException if the file can't be written
+	 */
+	private void write(XMLStreamWriter writer, ModelContainer modelContainer, ShapesContainer shapesContainer) throws XMLStreamException {
+		writer.writeCharacters("\n");
+		writer.writeStartElement(COMPACT_STATE);
+		writer.writeAttribute(VERSION, SCHEMA_VERSION);
+		String algorithmName = RoutingAlgorithm.getName(modelContainer.getChosenRoutingAlgorithm());
+		if (algorithmName != null) {
+			writer.writeAttribute(ROUTING_ALGORITHM, algorithmName);
+		}
+		writer.writeAttribute(MESSAGE_GENERATION_RATE, Float.toString(modelContainer.getMessageGenerationRate()));
+		writer.writeAttribute(MESSAGE_COUNTER, Integer.toString(modelContainer.getMessageCounter()));
+		writer.writeAttribute(STEP_COUNTER, Integer.toString(modelContainer.getStepCounter()));
+
+		writeTopology(writer, modelContainer.getTopology());
+		for (Node node : shapesContainer.getNodes()) {
+			startEmptyElement(writer, 1, NODE);
+			if (node.getName() != null) {
+				writer.writeAttribute(NAME, node.getName());
+			}
+			writer.writeAttribute(X, Float.toString(node.x));
+			writer.writeAttribute(Y, Float.toString(node.y));
+			writer.writeAttribute(DIAMETER, Float.toString(node.width));
+		}
+		for (Connection connection : shapesContainer.getConnections()) {
+			startEmptyElement(writer, 1, CONNECTION);
+			writer.writeAttribute(FROM, connection.getNode1().getName());
+			writer.writeAttribute(TO, connection.getNode2().getName());
+		}
+		writer.writeCharacters("\n");
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Writes the topology element, with the routers first, then the links and the stored messages
+	 * @param writer the writer of the file
+	 * @param topology the network to write
+	 * @throws XMLStreamException if the file can't be written
+	 */
+	private void writeTopology(XMLStreamWriter writer, NetworkTopology topology) throws XMLStreamException {
+		startElement(writer, 1, TOPOLOGY);
+		writer.writeAttribute(PACKETS_TRANSMITTED, Integer.toString(topology.getTotalPacketsTransmittedMetric()));
+		writer.writeAttribute(MESSAGES_REACHED_DESTINATION, Integer.toString(topology.getNumMessagesReachedDest()));
+		for (Router router : topology.getRouters()) {
+			startEmptyElement(writer, 2, ROUTER);
+			writer.writeAttribute(NAME, router.getName());
+		}
+		// the links are read from the snapshot, which holds the weight next to each neighbour
+		TopologySnapshot snapshot = topology.getSnapshot();
+		int[] offsets = snapshot.getOffsets();
+		int[] neighbourIds = snapshot.getNeighbourIds();
+		double[] weights = snapshot.getWeights();
+		// progress goes through the routers twice, once for the links and once for the messages
+		long total = 2L * topology.getRouters().size();
+		long done = 0;
+		for (Router router : topology.getRouters()) {
+			progress(done++, total);
+			for (int j = offsets[router.getId()]; j < offsets[router.getId() + 1]; j++) {
+				startEmptyElement(writer, 2, LINK);
+				writer.writeAttribute(FROM, router.getName());
+				writer.writeAttribute(TO, snapshot.getRouter(neighbourIds[j]).getName());
+				writer.writeAttribute(WEIGHT, Double.toString(weights[j]));
+			}
+		}
+		for (Router router : topology.getRouters()) {
+			progress(done++, total);
+			if (router.getStoredMessages().isEmpty()) {
+				continue;
+			}
+			startElement(writer, 2, STORED);
+			writer.writeAttribute(ROUTER, router.getName());
+			for (Message message : router.getStoredMessages()) {
+				writeMessage(writer, topology, message);
+			}
+			endElement(writer, 2);
+		}
+		endElement(writer, 1);
+		progress(total, total);
+	}
+
+	/**
+	 * Tells the listener, if there is one, how much of the state was written
+	 */
+	private void progress(long done, long total) {
+		if (progressListener != null) {
+			progressListener.progressChanged(done, total);
+		}
+	}
+
+	/**
+	 * Writes a message element
+	 * @param writer the writer of the file
+	 * @param topology the network the message is in
+	 * @param message the message to write
+	 * @throws XMLStreamException if the file can't be written
+	 */
+	private void writeMessage(XMLStreamWriter writer, NetworkTopology topology, Message message) throws XMLStreamException {
+		int[] passedThroughIds = message.getPassedThroughIds();
+		if (passedThroughIds == null) {
+			startEmptyElement(writer, 3, MESSAGE);
+		} else {
+			startElement(writer, 3, MESSAGE);
+		}
+		writer.writeAttribute(ID, Integer.toString(message.getID()));
+		writer.writeAttribute(SOURCE, message.getSource().getName());
+		writer.writeAttribute(DESTINATION, message.getDestination().getName());
+		writer.writeAttribute(STEPS, Integer.toString(message.getSteps()));
+		if (message.getPreviousDestination() != null) {
+			writer.writeAttribute(PREVIOUS_DESTINATION, message.getPreviousDestination().getName());
+		}
+		if (passedThroughIds != null) {
+			for (int id : passedThroughIds) {
+				Router router = topology.getRouter(id);
+				if (router != null) {
+					startEmptyElement(writer, 4, PASSED_THROUGH);
+					writer.writeAttribute(ROUTER, router.getName());
+				}
+			}
+			endElement(writer, 3);
+		}
+	}
+
+	private static void startElement(XMLStreamWriter writer, int depth, String name) throws XMLStreamException {
+		indent(writer, depth);
+		writer.writeStartElement(name);
+	}
+
+	private static void startEmptyElement(XMLStreamWriter writer, int depth, String name) throws XMLStreamException {
+		indent(writer, depth);
+		writer.writeEmptyElement(name);
+	}
+
+	private static void endElement(XMLStreamWriter writer, int depth) throws XMLStreamException {
+		indent(writer, depth);
+		writer.writeEndElement();
+	}
+
+	/**
+	 * Starts a new line indented to the depth of the element written next
+	 */
+	private static void indent(XMLStreamWriter writer, int depth) throws XMLStreamException {
+		writer.writeCharacters("\n");
+		for (int i = 0; i < depth; i++) {
+			writer.writeCharacters("  ");
+		}
+	}
+
+	/**
+	 * Reads the file element by element, adding each router, link and message to the
+	 * topology as it is read
+	 * @param reader the reader of the file
+	 * @param xmlState the state to be restored
+	 * @throws XMLStreamException if the file is not well formed xml
+	 */
+	private void read(XMLStreamReader reader, XMLState xmlState) throws XMLStreamException {
+		RoutingAlgorithm algorithm = null;
+		float messageGenerationRate = 1;
+		int messageCounter = -1;
+		int stepCounter = 0;
+		NetworkTopology topology = new NetworkTopology();
+		int packetsTransmitted = 0;
+		int messagesReachedDestination = 0;
+		// the messages read so far by id, so that a message stored in several routers is read once
+		Map<Integer, Message> messages = new HashMap<Integer, Message>();
+		int nextMessageId = 0;
+		Router storingRouter = null;
+		Message message = null;
+		List<Node> nodes = new ArrayList<Node>();
+		Map<String, Node> nodesByName = new HashMap<String, Node>();
+		List<Connection> connections = new ArrayList<Connection>();
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.END_ELEMENT && TOPOLOGY.equals(reader.getLocalName())) {
+				topology.endBulkInsert();
+				continue;
+			}
+			if (event != XMLStreamConstants.START_ELEMENT) {
+				continue;
+			}
+			switch (reader.getLocalName()) {
+			case COMPACT_STATE:
+				algorithm = RoutingAlgorithm.newInstance(reader.getAttributeValue(null, ROUTING_ALGORITHM));
+				messageGenerationRate = parseFloat(reader.getAttributeValue(null, MESSAGE_GENERATION_RATE), 1);
+				messageCounter = parseInt(reader.getAttributeValue(null, MESSAGE_COUNTER), -1);
+				stepCounter = parseInt(reader.getAttributeValue(null, STEP_COUNTER), 0);
+				break;
+			case TOPOLOGY:
+				packetsTransmitted = parseInt(reader.getAttributeValue(null, PACKETS_TRANSMITTED), 0);
+				messagesReachedDestination = parseInt(reader.getAttributeValue(null, MESSAGES_REACHED_DESTINATION), 0);
+				topology.beginBulkInsert();
+				break;
+			case ROUTER:
+				String name = reader.getAttributeValue(null, NAME);
+				if (name != null) {
+					topology.addRouter(new Router(name));
+				}
+				break;
+			case LINK:
+				topology.setRouterNeighbour(reader.getAttributeValue(null, FROM), reader.getAttributeValue(null, TO),
+						parseDouble(reader.getAttributeValue(null, WEIGHT), NetworkTopology.DEFAULT_LINK_WEIGHT));
+				break;
+			case STORED:
+				storingRouter = topology.getRouter(reader.getAttributeValue(null, ROUTER));
+				break;
+			case MESSAGE:
+				message = readMessage(reader, topology, messages);
+				if (message != null) {
+					nextMessageId = Math.max(nextMessageId, message.getID() + 1);
+					if (storingRouter != null) {
+						storingRouter.storeMessage(message);
+					}
+				}
+				break;
+			case PASSED_THROUGH:
+				if (message != null) {
+					message.addRouter(topology.getRouter(reader.getAttributeValue(null, ROUTER)));
+				}
+				break;
+			case NODE:
+				Node node = new Node(parseFloat(reader.getAttributeValue(null, X), 0), parseFloat(reader.getAttributeValue(null, Y), 0),
+						parseFloat(reader.getAttributeValue(null, DIAMETER), Node.DEFAULT_DIAMETER));
+				node.setName(reader.getAttributeValue(null, NAME));
+				nodes.add(node);
+				nodesByName.put(node.getName(), node);
+				break;
+			case CONNECTION:
+				Node node1 = nodesByName.get(reader.getAttributeValue(null, FROM));
+				Node node2 = nodesByName.get(reader.getAttributeValue(null, TO));
+				if (node1 != null && node2 != null) {
+					connections.add(new Connection(node1, node2));
+				}
+				break;
+			default:
+				break;
+			}
+		}
+		// in case the topology element was not closed
+		topology.endBulkInsert();
+		topology.restoreMetrics(packetsTransmitted, messagesReachedDestination);
+		topology.calculateAverageHopsMetric();
+
+		for (Node node : nodes) {
+			Router router = node.getName() == null ? null : topology.getRouter(node.getName());
+			if (router != null) {
+				node.setMessages(new ArrayList<Message>(router.getStoredMessages()));
+			}
+		}
+		if (algorithm == null) {
+			algorithm = new RandomRoutingAlgorithm();
+		}
+		// a generated topology has no counters, new messages are then numbered after the ones read
+		if (messageCounter < 0) {
+			messageCounter = nextMessageId;
+		}
+		xmlState.setModelContainer(new ModelContainer(topology, algorithm, messageGenerationRate, messageCounter, stepCounter));
+		xmlState.setShapesContainer(new ShapesContainer(nodes, connections));
+	}
+
+	/**
+	 * Reads the attributes of a message element, or finds the message if it was already read in another router
+	 * @param reader the reader positioned on the message element
+	 * @param topology the topology being read
+	 * @param messages the messages read so far, by id
+	 * @return the message, or null if its source or destination is not in the topology
+	 */
+	private Message readMessage(XMLStreamReader reader, NetworkTopology topology, Map<Integer, Message> messages) {
+		int id = parseInt(reader.getAttributeValue(null, ID), 0);
+		Message message = messages.get(id);
+		if (message != null) {
+			return message;
+		}
+		Router source = topology.getRouter(reader.getAttributeValue(null, SOURCE));
+		Router destination = topology.getRouter(reader.getAttributeValue(null, DESTINATION));
+		if (source == null || destination == null) {
+			return null;
+		}
+		message = new Message(id, source, destination, parseInt(reader.getAttributeValue(null, STEPS), 0));
+		String previousDestination = reader.getAttributeValue(null, PREVIOUS_DESTINATION);
+		if (previousDestination != null) {
+			message.setPreviousDestination(topology.getRouter(previousDestination));
+		}
+		messages.put(id, message);
+		return message;
+	}
+
+	/**
+	 * @param value the value of a number attribute
+	 * @param defaultValue the number used if the attribute is missing or not a number
+	 * @return the number
+	 */
+	private static int parseInt(String value, int defaultValue) {
+		try {
+			return value == null ? defaultValue : Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static float parseFloat(String value, float defaultValue) {
+		try {
+			return value == null ? defaultValue : Float.parseFloat(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+
+	private static double parseDouble(String value, double defaultValue) {
+		try {
+			return value == null ? defaultValue : Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return defaultValue;
+		}
+	}
+}
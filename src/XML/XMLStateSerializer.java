@@ -1,16 +1,21 @@
 package XML;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.nio.file.Files;
 
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.StreamException;
 import com.thoughtworks.xstream.io.xml.PrettyPrintWriter;
 import com.thoughtworks.xstream.io.xml.StaxDriver;
 
+import Model.Message;
+
 /**
  * Serializes the Model and the TopologyPanel to be saved and restored at any 
  * state.
@@ -18,46 +23,90 @@ import com.thoughtworks.xstream.io.xml.StaxDriver;
 public class XMLStateSerializer {
 
 	private XStream xstream;
+	private boolean compact;
+	private ProgressListener progressListener;
 
 	/**
-	 * State Serializer constructor
+	 * State Serializer constructor, which saves every field of the state
 	 */
 	public XMLStateSerializer() {	
+		this(false);
+	}
+
+	/**
+	 * State Serializer constructor. Either schema can be read whatever the schema saved.
+	 * @param compact true to save in the compact schema of StreamingStateSerializer, which only
+	 * keeps the names, links, coordinates, messages and counters, and leaves out the routing tables
+	 */
+	public XMLStateSerializer(boolean compact) {
+		this.compact = compact;
 		xstream = new XStream(new StaxDriver());
 		xstream.setMode(XStream.ID_REFERENCES);
+		// states saved when messages kept a set of routers are read without it
+		xstream.omitField(Message.class, "routersPassedThrough");
+	}
+
+	/**
+	 * @param progressListener the listener told how much of the file was read or written, or null
+	 */
+	public void setProgressListener(ProgressListener progressListener) {
+		this.progressListener = progressListener;
 	}
 
 	/**
 	 * Creates an xml file containing the current state of the model and panel
 	 * @param file the file instance to save content to
+	 * @return true if the whole state was written
 	 */
-	public void serialize(File file, XMLState xmlState) {
-		if (xmlState != null && xmlState.getModelContainer() != null && xmlState.getShapesContainer() != null) {
+	public boolean serialize(File file, XMLState xmlState) {
+		if (compact) {
+			return createStreamingSerializer().serialize(file, xmlState);
+		} else if (xmlState != null && xmlState.getModelContainer() != null && xmlState.getShapesContainer() != null) {
 			try {
 				FileOutputStream fos = new FileOutputStream(file.getAbsolutePath());
 				BufferedOutputStream bos = new BufferedOutputStream(fos);
 				xstream.marshal(xmlState, new PrettyPrintWriter(new OutputStreamWriter(bos)));
 				bos.close();
+				return true;
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
 		}
+		return false;
 	}
 
 	/**
-	 * Initializes the model and the GUI panel states with the given xml 
+	 * Initializes the model and the GUI panel states with the given xml. Files of the compact
+	 * schema, or holding only a topology, are streamed in element by element.
 	 * @param file the file of the xml
 	 */
 	public void deserialize(File file, XMLState xmlState) {
+		if (StreamingStateSerializer.isStreamable(file)) {
+			createStreamingSerializer().deserialize(file, xmlState);
+			return;
+		}
 		XMLState newState = null;
 		try {
-			FileReader fr = new FileReader(file.getAbsolutePath());
-			newState = (XMLState) xstream.fromXML(fr);
+			BufferedReader br = new BufferedReader(new InputStreamReader(new ProgressInputStream(
+					Files.newInputStream(file.toPath()), file.length(), progressListener)));
+			newState = (XMLState) xstream.fromXML(br);
 			xmlState.setModelContainer(newState.getModelContainer());
 			xmlState.setShapesContainer(newState.getShapesContainer());
-			fr.close();
-		} catch (IOException e) {
-			e.printStackTrace();
+			br.close();
+		} catch (IOException | StreamException e) {
+			// a cancelled restore is not an error
+			if (!Thread.currentThread().isInterrupted()) {
+				e.printStackTrace();
+			}
 		}
 	}
+
+	/**
+	 * @return a serializer of the compact schema telling the same listener of its progress
+	 */
+	private StreamingStateSerializer createStreamingSerializer() {
+		StreamingStateSerializer serializer = new StreamingStateSerializer();
+		serializer.setProgressListener(progressListener);
+		return serializer;
+	}
 }